@@ -0,0 +1,62 @@
+package com.codedchai.chip8;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/*
+A whole batch of headless sessions of the same ROM. The score is in instructions per second across the batch, compare the
+parallelism params to see how it scales with cores
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@State( Scope.Thread )
+public class BatchBenchmark {
+
+	private static final int SESSIONS = 1000;
+	private static final int FRAMES = 60;
+
+	@Param( { "BRIX", "TETRIS" } )
+	public String rom;
+
+	@Param( { "1", "2", "4", "8" } )
+	public int parallelism;
+
+	private ByteBuffer romBytes;
+	private HeadlessBatch batch;
+
+	@Setup( Level.Trial )
+	public void loadRom() throws Exception {
+		romBytes = ByteBuffer.wrap( BenchmarkPrograms.readRom( rom ) );
+	}
+
+	@Setup( Level.Invocation )
+	public void powerOn() {
+		batch = new HeadlessBatch( parallelism );
+		batch.addAll( romBytes, SESSIONS, FRAMES, null );
+	}
+
+	@TearDown( Level.Invocation )
+	public void shutdown() {
+		batch.shutdown();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation( SESSIONS * FRAMES * (Emulator.CPU_FREQUENCY / Emulator.TIMER_FREQUENCY) )
+	public HeadlessBatch run() throws Exception {
+		batch.run();
+		return batch;
+	}
+
+}
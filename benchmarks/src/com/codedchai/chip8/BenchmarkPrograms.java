@@ -0,0 +1,70 @@
+package com.codedchai.chip8;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/*
+Programs and ROMs shared by the benchmarks. Every synthetic program loops forever, so it can be run for any number of cycles
+ */
+final class BenchmarkPrograms {
+
+	/* Where the bundled ROMs live, the jmh task passes this in */
+	static final Path ROM_DIRECTORY = Paths.get( System.getProperty( "chip8.roms", "../core/assets/roms" ) );
+
+	private BenchmarkPrograms() {
+	}
+
+	/*
+	A loop made up of a single opcode family, one per branch of the old executeOpcode switch
+	 */
+	static byte[] opcodeFamily( String family ) {
+		switch ( family ) {
+			case "alu":
+				return program( 0x6001, 0x6102, 0x8014, 0x8125, 0x8016, 0x810E, 0x8213, 0x8231, 0x8322, 0x7005, 0x1200 );
+			case "skip":
+				/* None of these skips are taken, so every iteration runs the same path */
+				return program( 0x6005, 0x3006, 0x4005, 0x5010, 0x9000, 0x3106, 0x1200 );
+			case "flow":
+				return program( 0x2206, 0x2206, 0x1200, 0x00EE );
+			case "memory":
+				/* Writes land at 0x300 and up, well clear of the code */
+				return program( 0xA300, 0x6005, 0xF01E, 0xF033, 0xF255, 0xF265, 0xF029, 0x1200 );
+			case "timer":
+				return program( 0x603C, 0xF015, 0xF118, 0xF207, 0xF107, 0x1200 );
+			case "draw":
+				return program( 0x00E0, 0xA000, 0xD015, 0xD235, 0xD4F5, 0x1200 );
+			default:
+				throw new IllegalArgumentException( "Unknown opcode family: " + family );
+		}
+	}
+
+	static ExecutionEngine engine( String engine ) {
+		switch ( engine ) {
+			case "interpreter":
+				return new InterpreterEngine();
+			case "block":
+				return new BlockCompilingEngine();
+			default:
+				throw new IllegalArgumentException( "Unknown engine: " + engine );
+		}
+	}
+
+	static Path romPath( String rom ) {
+		return ROM_DIRECTORY.resolve( rom );
+	}
+
+	static byte[] readRom( String rom ) throws Exception {
+		return Files.readAllBytes( romPath( rom ) );
+	}
+
+	private static byte[] program( int... opcodes ) {
+		byte[] program = new byte[opcodes.length * 2];
+		for ( int i = 0; i < opcodes.length; i++ ) {
+			program[i * 2] = (byte) (opcodes[i] >> 8);
+			program[i * 2 + 1] = (byte) opcodes[i];
+		}
+		return program;
+	}
+
+}
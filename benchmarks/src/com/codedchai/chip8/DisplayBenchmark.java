@@ -0,0 +1,78 @@
+package com.codedchai.chip8;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+Sprite drawing, both through the Dxyn handler and straight onto the frame buffer. Dxyn takes its coordinates from the opcode,
+which can't reach the edges of the display, so the wrapping cases go through FrameBuffer.drawSpriteRow
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@State( Scope.Thread )
+public class DisplayBenchmark {
+
+	@Param( { "1", "5", "15" } )
+	public int spriteHeight;
+
+	/* Where the sprite goes, aligned (0, 0), unaligned (13, 7) or wrapping over both edges (60, 28) */
+	@Param( { "aligned", "unaligned", "wrapping" } )
+	public String placement;
+
+	private Emulator emulator;
+	private Instruction drawInstruction;
+	private FrameBuffer frameBuffer;
+	private byte[] sprite;
+	private int x, y;
+
+	@Setup
+	public void setup() {
+		switch ( placement ) {
+			case "aligned":
+				x = 0;
+				y = 0;
+				break;
+			case "unaligned":
+				x = 13;
+				y = 7;
+				break;
+			default:
+				x = 60;
+				y = 28;
+		}
+
+		/* Sprite data straight out of the font, I stays at 0 */
+		emulator = new Emulator();
+		drawInstruction = new Instruction( 0xD000 | ((x & 0xF) << 8) | ((y & 0xF) << 4) | spriteHeight, Operation.DRW_VX_VY_N );
+
+		frameBuffer = new FrameBuffer();
+		sprite = new byte[spriteHeight];
+		for ( int row = 0; row < spriteHeight; row++ ) {
+			sprite[row] = emulator.readMemory( row );
+		}
+	}
+
+	@Benchmark
+	public int displayVxVyN() {
+		emulator.displayVxVyN( drawInstruction );
+		return emulator.getRegister( 0xF );
+	}
+
+	@Benchmark
+	public boolean drawSpriteRows() {
+		boolean collision = false;
+		for ( int row = 0; row < spriteHeight; row++ ) {
+			collision |= frameBuffer.drawSpriteRow( x, y + row, sprite[row] );
+		}
+		return collision;
+	}
+
+}
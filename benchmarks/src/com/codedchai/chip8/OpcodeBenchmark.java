@@ -0,0 +1,46 @@
+package com.codedchai.chip8;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+Instructions per second for each opcode family, through emulateCycle/executeOpcode or the block compiler.
+The score is in instructions per second, so divide by a million for MIPS
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@State( Scope.Thread )
+public class OpcodeBenchmark {
+
+	private static final int CYCLES = 10000;
+
+	@Param( { "alu", "skip", "flow", "memory", "timer", "draw" } )
+	public String family;
+
+	@Param( { "interpreter", "block" } )
+	public String engine;
+
+	private Emulator emulator;
+
+	@Setup
+	public void setup() {
+		emulator = new Emulator( BenchmarkPrograms.opcodeFamily( family ) );
+		emulator.setExecutionEngine( BenchmarkPrograms.engine( engine ) );
+	}
+
+	@Benchmark
+	@OperationsPerInvocation( CYCLES )
+	public void executeOpcodes() throws Exception {
+		emulator.step( CYCLES );
+	}
+
+}
@@ -0,0 +1,52 @@
+package com.codedchai.chip8;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/*
+Getting a ROM off the disk and into a fresh machine
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@State( Scope.Thread )
+public class RomLoadBenchmark {
+
+	@Param( { "PONG", "TETRIS", "BLITZ", "INVADERS" } )
+	public String rom;
+
+	private Path romPath;
+	private byte[] romBytes;
+
+	@Setup
+	public void setup() throws Exception {
+		romPath = BenchmarkPrograms.romPath( rom );
+		romBytes = BenchmarkPrograms.readRom( rom );
+	}
+
+	@Benchmark
+	public Object loadROM() throws Exception {
+		return ROM.loadROM( romPath );
+	}
+
+	@Benchmark
+	public Emulator loadROMIntoEmulator() throws Exception {
+		Emulator emulator = new Emulator();
+		ROM.loadROM( emulator, romPath );
+		return emulator;
+	}
+
+	@Benchmark
+	public Emulator createEmulator() {
+		return new Emulator( romBytes );
+	}
+
+}
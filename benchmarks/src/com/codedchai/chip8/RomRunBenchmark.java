@@ -0,0 +1,53 @@
+package com.codedchai.chip8;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+Whole bundled ROMs run from power on for a fixed number of cycles. The score is in instructions per second
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@State( Scope.Thread )
+public class RomRunBenchmark {
+
+	private static final int CYCLES = 100000;
+
+	@Param( { "15PUZZLE", "BLITZ", "BRIX", "INVADERS", "PONG", "TETRIS" } )
+	public String rom;
+
+	@Param( { "interpreter", "block" } )
+	public String engine;
+
+	private byte[] romBytes;
+	private Emulator emulator;
+
+	@Setup( Level.Trial )
+	public void loadRom() throws Exception {
+		romBytes = BenchmarkPrograms.readRom( rom );
+	}
+
+	@Setup( Level.Invocation )
+	public void powerOn() {
+		emulator = new Emulator( romBytes );
+		emulator.setExecutionEngine( BenchmarkPrograms.engine( engine ) );
+	}
+
+	@Benchmark
+	@OperationsPerInvocation( CYCLES )
+	public Emulator run() throws Exception {
+		emulator.step( CYCLES );
+		return emulator;
+	}
+
+}
@@ -0,0 +1,738 @@
+package com.codedchai.chip8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+Turns a basic block of decoded instructions into its own JVM class. Register and arithmetic opcodes are written out as
+bytecode that works straight on the emulator's register and memory arrays, anything else (the terminator that ends the
+block, clearing the screen, random numbers) calls the same handler the interpreter would. Once a block is a single method
+HotSpot can compile and optimize the whole thing at once.
+
+The classes are written by hand in the Java 5 class file format, which doesn't need stack map frames, and are defined into
+this package so the generated code can reach the package-private emulator fields. When the JVM supports hidden classes we
+use those so blocks that are thrown away can be unloaded again, otherwise they are defined as ordinary classes.
+ */
+final class BlockCompiler {
+
+	private static final String EMULATOR = "com/codedchai/chip8/Emulator";
+	private static final String INSTRUCTION = "com/codedchai/chip8/Instruction";
+	private static final String OPERATION = "com/codedchai/chip8/Operation";
+	private static final String COMPILED_BLOCK = "com/codedchai/chip8/CompiledBlock";
+	private static final String INSTRUCTIONS_FIELD_TYPE = "[L" + INSTRUCTION + ";";
+
+	/* Class file version 49 (Java 5) is the newest one that the old type inferencing verifier accepts without stack maps */
+	private static final int CLASS_FILE_MAJOR_VERSION = 49;
+
+	private static final int ACC_PUBLIC = 0x0001;
+	private static final int ACC_PRIVATE = 0x0002;
+	private static final int ACC_FINAL = 0x0010;
+	private static final int ACC_SUPER = 0x0020;
+
+	/* The opcodes we emit */
+	private static final int ICONST_0 = 0x03;
+	private static final int BIPUSH = 0x10;
+	private static final int SIPUSH = 0x11;
+	private static final int LDC_W = 0x13;
+	private static final int ILOAD = 0x15;
+	private static final int ALOAD = 0x19;
+	private static final int ALOAD_0 = 0x2A;
+	private static final int ALOAD_1 = 0x2B;
+	private static final int AALOAD = 0x32;
+	private static final int BALOAD = 0x33;
+	private static final int ISTORE = 0x36;
+	private static final int ASTORE = 0x3A;
+	private static final int BASTORE = 0x54;
+	private static final int DUP = 0x59;
+	private static final int IADD = 0x60;
+	private static final int ISUB = 0x64;
+	private static final int IMUL = 0x68;
+	private static final int ISHL = 0x78;
+	private static final int ISHR = 0x7A;
+	private static final int IAND = 0x7E;
+	private static final int IOR = 0x80;
+	private static final int IXOR = 0x82;
+	private static final int IINC = 0x84;
+	private static final int I2B = 0x91;
+	private static final int I2S = 0x93;
+	private static final int IFGT = 0x9D;
+	private static final int IF_ICMPLE = 0xA4;
+	private static final int GOTO = 0xA7;
+	private static final int TABLESWITCH = 0xAA;
+	private static final int IRETURN = 0xAC;
+	private static final int RETURN = 0xB1;
+	private static final int GETFIELD = 0xB4;
+	private static final int PUTFIELD = 0xB5;
+	private static final int INVOKEVIRTUAL = 0xB6;
+	private static final int INVOKESPECIAL = 0xB7;
+
+	/* Deepest operand stack any of our emitted sequences needs (Fx65 holds five values) */
+	private static final int MAX_STACK = 6;
+	/* this, the emulator, the first instruction to run, the cycles left, a scratch int and a scratch instruction */
+	private static final int MAX_LOCALS = 6;
+	private static final int FIRST_INSTRUCTION = 2;
+	private static final int CYCLES_LEFT = 3;
+	private static final int SCRATCH_INT = 4;
+	private static final int SCRATCH_INSTRUCTION = 5;
+
+	/* Lookup.defineHiddenClass( byte[], boolean, ClassOption... ) if this JVM has it (Java 15 and up) */
+	private static final Method DEFINE_HIDDEN_CLASS;
+	private static final Object NO_CLASS_OPTIONS;
+
+	static {
+		Method defineHiddenClass = null;
+		Object noClassOptions = null;
+		try {
+			Class < ? > classOption = Class.forName( "java.lang.invoke.MethodHandles$Lookup$ClassOption" );
+			noClassOptions = Array.newInstance( classOption, 0 );
+			defineHiddenClass = MethodHandles.Lookup.class.getMethod( "defineHiddenClass", byte[].class, boolean.class, noClassOptions.getClass() );
+		} catch ( ReflectiveOperationException e ) {
+			defineHiddenClass = null;
+		}
+		DEFINE_HIDDEN_CLASS = defineHiddenClass;
+		NO_CLASS_OPTIONS = noClassOptions;
+	}
+
+	/* Ordinary classes live as long as the class loader, so their names have to be unique across every compiler */
+	private static final AtomicInteger generatedClassCount = new AtomicInteger();
+
+	private final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+	private int compiledBlockCount;
+
+	int getCompiledBlockCount() {
+		return compiledBlockCount;
+	}
+
+	/*
+	Generate, define and instantiate the class for a block starting at startAddress
+	 */
+	CompiledBlock compile( int startAddress, Instruction[] instructions ) throws Exception {
+		String className = "com/codedchai/chip8/GeneratedBlock_" + Integer.toHexString( startAddress ) + "_" + generatedClassCount.getAndIncrement();
+		byte[] classFile = generateClass( className, instructions );
+
+		Class < ? > blockClass;
+		if ( DEFINE_HIDDEN_CLASS != null ) {
+			MethodHandles.Lookup hiddenClassLookup = (MethodHandles.Lookup) DEFINE_HIDDEN_CLASS.invoke( lookup, classFile, true, NO_CLASS_OPTIONS );
+			blockClass = hiddenClassLookup.lookupClass();
+		} else {
+			blockClass = lookup.defineClass( classFile );
+		}
+		compiledBlockCount++;
+
+		return (CompiledBlock) blockClass.getDeclaredConstructor( Instruction[].class ).newInstance( (Object) instructions );
+	}
+
+	private byte[] generateClass( String className, Instruction[] instructions ) throws IOException {
+		ConstantPool constantPool = new ConstantPool();
+
+		int thisClass = constantPool.classReference( className );
+		int superClass = constantPool.classReference( "java/lang/Object" );
+		int compiledBlockInterface = constantPool.classReference( COMPILED_BLOCK );
+		int instructionsField = constantPool.fieldReference( className, "instructions", INSTRUCTIONS_FIELD_TYPE );
+		int objectConstructor = constantPool.methodReference( "java/lang/Object", "<init>", "()V" );
+		int codeAttribute = constantPool.utf8( "Code" );
+
+		/* Constructor, just stores the instructions so the generated code can hand them to the handlers */
+		Code constructor = new Code( constantPool );
+		constructor.op( ALOAD_0 );
+		constructor.op( INVOKESPECIAL );
+		constructor.u2( objectConstructor );
+		constructor.op( ALOAD_0 );
+		constructor.op( ALOAD_1 );
+		constructor.op( PUTFIELD );
+		constructor.u2( instructionsField );
+		constructor.op( RETURN );
+
+		/*
+		Jump straight to the first instruction to run, and after each one count down the cycles left and return how many
+		instructions ran once they are used up. Every instruction moves the program counter itself, so returning between any two
+		leaves the emulator where the interpreter would be
+		 */
+		Code run = new Code( constantPool );
+		run.local( ILOAD, FIRST_INSTRUCTION );
+		int entrySwitch = run.tableSwitch( instructions.length );
+		for ( int index = 0; index < instructions.length; index++ ) {
+			run.bindCase( entrySwitch, index );
+			emitInstruction( run, instructions[index], index, instructionsField );
+			if ( index < instructions.length - 1 ) {
+				run.op( IINC );
+				run.op( CYCLES_LEFT );
+				run.op( -1 );
+				run.local( ILOAD, CYCLES_LEFT );
+				int cyclesLeft = run.branch( IFGT );
+				run.returnInstructionsRun( index + 1 );
+				run.bindBranch( cyclesLeft );
+			}
+		}
+		run.returnInstructionsRun( instructions.length );
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream( bytes );
+
+		int fieldName = constantPool.utf8( "instructions" );
+		int fieldType = constantPool.utf8( INSTRUCTIONS_FIELD_TYPE );
+		int constructorName = constantPool.utf8( "<init>" );
+		int constructorType = constantPool.utf8( "(" + INSTRUCTIONS_FIELD_TYPE + ")V" );
+		int runName = constantPool.utf8( "run" );
+		int runType = constantPool.utf8( "(L" + EMULATOR + ";II)I" );
+
+		out.writeInt( 0xCAFEBABE );
+		out.writeShort( 0 );
+		out.writeShort( CLASS_FILE_MAJOR_VERSION );
+		constantPool.writeTo( out );
+		out.writeShort( ACC_FINAL | ACC_SUPER );
+		out.writeShort( thisClass );
+		out.writeShort( superClass );
+		out.writeShort( 1 );
+		out.writeShort( compiledBlockInterface );
+
+		out.writeShort( 1 );
+		out.writeShort( ACC_PRIVATE | ACC_FINAL );
+		out.writeShort( fieldName );
+		out.writeShort( fieldType );
+		out.writeShort( 0 );
+
+		out.writeShort( 2 );
+		writeMethod( out, 0, constructorName, constructorType, codeAttribute, constructor );
+		writeMethod( out, ACC_PUBLIC, runName, runType, codeAttribute, run );
+
+		out.writeShort( 0 );
+		out.flush();
+
+		return bytes.toByteArray();
+	}
+
+	private void writeMethod( DataOutputStream out, int access, int name, int type, int codeAttribute, Code code ) throws IOException {
+		out.writeShort( access );
+		out.writeShort( name );
+		out.writeShort( type );
+		out.writeShort( 1 );
+
+		out.writeShort( codeAttribute );
+		out.writeInt( 12 + code.length );
+		out.writeShort( MAX_STACK );
+		out.writeShort( MAX_LOCALS );
+		out.writeInt( code.length );
+		out.write( code.bytes, 0, code.length );
+		out.writeShort( 0 );
+		out.writeShort( 0 );
+	}
+
+	/*
+	Emit the bytecode for a single instruction. Every emitted sequence reads and writes the emulator fields in the same order
+	as its handler in Emulator, so the machine ends up in the exact same state
+	 */
+	private void emitInstruction( Code code, Instruction instruction, int index, int instructionsField ) {
+		code.setEmulatorField( "opcode", "I", instruction.opcode );
+
+		switch ( instruction.operation ) {
+			case NOP:
+				break;
+
+			case LD_VX_KK:
+				code.loadRegisters();
+				code.pushInt( instruction.x );
+				code.pushInt( instruction.kk );
+				code.op( BASTORE );
+				break;
+
+			case ADD_VX_KK:
+				code.loadRegisters();
+				code.pushInt( instruction.x );
+				code.loadRegister( instruction.x );
+				code.pushInt( instruction.kk );
+				code.op( IADD );
+				code.op( I2B );
+				code.op( BASTORE );
+				break;
+
+			case LD_VX_VY:
+				code.loadRegisters();
+				code.pushInt( instruction.x );
+				code.loadRegister( instruction.y );
+				code.op( BASTORE );
+				break;
+
+			case OR_VX_VY:
+				code.registerOperation( instruction.x, instruction.y, IOR );
+				break;
+
+			case AND_VX_VY:
+				code.registerOperation( instruction.x, instruction.y, IAND );
+				break;
+
+			case XOR_VX_VY:
+				code.registerOperation( instruction.x, instruction.y, IXOR );
+				break;
+
+			case ADD_VX_VY: {
+				code.loadRegister( instruction.x );
+				code.loadRegister( instruction.y );
+				code.op( IADD );
+				code.local( ISTORE, SCRATCH_INT );
+
+				code.local( ILOAD, SCRATCH_INT );
+				code.pushInt( 255 );
+				int noCarry = code.branch( IF_ICMPLE );
+				code.storeFlag( 1 );
+				code.local( ILOAD, SCRATCH_INT );
+				code.pushInt( 255 );
+				code.op( ISUB );
+				code.local( ISTORE, SCRATCH_INT );
+				int done = code.branch( GOTO );
+				code.bindBranch( noCarry );
+				code.storeFlag( 0 );
+				code.bindBranch( done );
+
+				code.loadRegisters();
+				code.pushInt( instruction.x );
+				code.local( ILOAD, SCRATCH_INT );
+				code.op( I2B );
+				code.op( BASTORE );
+				break;
+			}
+
+			case SUB_VX_VY:
+				code.compareAndSetFlag( instruction.x, instruction.y );
+				code.loadRegisters();
+				code.pushInt( instruction.x );
+				code.loadRegister( instruction.x );
+				code.loadRegister( instruction.y );
+				code.op( ISUB );
+				code.op( I2B );
+				code.op( BASTORE );
+				break;
+
+			case SUBN_VX_VY:
+				code.compareAndSetFlag( instruction.y, instruction.x );
+				code.loadRegisters();
+				code.pushInt( instruction.x );
+				code.loadRegister( instruction.y );
+				code.loadRegister( instruction.x );
+				code.op( ISUB );
+				code.op( I2B );
+				code.op( BASTORE );
+				break;
+
+			case SHR_VX:
+				code.loadRegisters();
+				code.pushInt( 0xF );
+				code.loadRegister( instruction.x );
+				code.pushInt( 1 );
+				code.op( IAND );
+				code.op( I2B );
+				code.op( BASTORE );
+				code.shiftRegister( instruction.x, ISHR );
+				break;
+
+			case SHL_VX:
+				code.loadRegisters();
+				code.pushInt( 0xF );
+				code.loadRegister( instruction.x );
+				code.pushInt( 7 );
+				code.op( ISHR );
+				code.op( I2B );
+				code.op( BASTORE );
+				code.shiftRegister( instruction.x, ISHL );
+				break;
+
+			case LD_I_NNN:
+				code.op( ALOAD_1 );
+				code.pushInt( instruction.nnn );
+				code.putEmulatorField( "indexRegister", "S" );
+				break;
+
+			case LD_VX_DT:
+				code.loadRegisters();
+				code.pushInt( instruction.x );
+				code.getEmulatorField( "delayTimer", "S" );
+				code.op( I2B );
+				code.op( BASTORE );
+				break;
+
+			case LD_DT_VX:
+				code.op( ALOAD_1 );
+				code.loadRegister( instruction.x );
+				code.putEmulatorField( "delayTimer", "S" );
+				break;
+
+			case LD_ST_VX:
+				code.op( ALOAD_1 );
+				code.loadRegister( instruction.x );
+				code.putEmulatorField( "soundTimer", "S" );
+				break;
+
+			case ADD_I_VX:
+				code.op( ALOAD_1 );
+				code.getEmulatorField( "indexRegister", "S" );
+				code.loadRegister( instruction.x );
+				code.op( IADD );
+				code.op( I2S );
+				code.putEmulatorField( "indexRegister", "S" );
+				break;
+
+			case LD_F_VX:
+				code.op( ALOAD_1 );
+				code.loadRegister( instruction.x );
+				code.pushInt( 5 );
+				code.op( IMUL );
+				code.op( I2S );
+				code.putEmulatorField( "indexRegister", "S" );
+				break;
+
+			case LD_VX_I:
+				for ( int registerIndex = 0; registerIndex <= instruction.x; registerIndex++ ) {
+					code.loadRegisters();
+					code.pushInt( registerIndex );
+					code.getEmulatorField( "memory", "[B" );
+					code.getEmulatorField( "indexRegister", "S" );
+					code.pushInt( registerIndex );
+					code.op( IADD );
+					code.op( BALOAD );
+					code.op( BASTORE );
+				}
+				break;
+
+			default:
+				/* Anything we don't inline goes through its handler, which also moves the program counter itself */
+				code.op( ALOAD_0 );
+				code.op( GETFIELD );
+				code.u2( instructionsField );
+				code.pushInt( index );
+				code.op( AALOAD );
+				code.local( ASTORE, SCRATCH_INSTRUCTION );
+				code.local( ALOAD, SCRATCH_INSTRUCTION );
+				code.op( GETFIELD );
+				code.u2( code.constantPool.fieldReference( INSTRUCTION, "operation", "L" + OPERATION + ";" ) );
+				code.op( ALOAD_1 );
+				code.local( ALOAD, SCRATCH_INSTRUCTION );
+				code.op( INVOKEVIRTUAL );
+				code.u2( code.constantPool.methodReference( OPERATION, "execute", "(L" + EMULATOR + ";L" + INSTRUCTION + ";)V" ) );
+				return;
+		}
+
+		/* programCounter += 2 */
+		code.op( ALOAD_1 );
+		code.op( DUP );
+		code.getField( "programCounter", "S" );
+		code.pushInt( 2 );
+		code.op( IADD );
+		code.op( I2S );
+		code.putEmulatorField( "programCounter", "S" );
+	}
+
+	/*
+	A growable method body along with the helpers for the sequences we keep repeating
+	 */
+	private static final class Code {
+
+		final ConstantPool constantPool;
+		byte[] bytes = new byte[256];
+		int length;
+
+		Code( ConstantPool constantPool ) {
+			this.constantPool = constantPool;
+		}
+
+		void op( int opcode ) {
+			if ( length == bytes.length ) {
+				byte[] grown = new byte[bytes.length * 2];
+				System.arraycopy( bytes, 0, grown, 0, length );
+				bytes = grown;
+			}
+			bytes[length++] = (byte) opcode;
+		}
+
+		void u2( int value ) {
+			op( value >> 8 );
+			op( value );
+		}
+
+		void u4( int value ) {
+			u2( value >> 16 );
+			u2( value );
+		}
+
+		/* Load or store a local variable */
+		void local( int opcode, int index ) {
+			op( opcode );
+			op( index );
+		}
+
+		void pushInt( int value ) {
+			if ( value >= -1 && value <= 5 ) {
+				op( ICONST_0 + value );
+			} else if ( value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE ) {
+				op( BIPUSH );
+				op( value );
+			} else if ( value >= Short.MIN_VALUE && value <= Short.MAX_VALUE ) {
+				op( SIPUSH );
+				u2( value );
+			} else {
+				op( LDC_W );
+				u2( constantPool.integer( value ) );
+			}
+		}
+
+		/* Emit a forward branch and return where its offset needs to be patched */
+		int branch( int opcode ) {
+			int branchAddress = length;
+			op( opcode );
+			u2( 0 );
+			return branchAddress;
+		}
+
+		/* Point a forward branch at the current end of the code */
+		void bindBranch( int branchAddress ) {
+			int offset = length - branchAddress;
+			bytes[branchAddress + 1] = (byte) (offset >> 8);
+			bytes[branchAddress + 2] = (byte) offset;
+		}
+
+		/*
+		Emit a tableswitch on the int on the stack for the cases 0 to cases - 1 and return where it starts, every case and the
+		default go to the start of the switch until they are bound
+		 */
+		int tableSwitch( int cases ) {
+			int switchAddress = length;
+			op( TABLESWITCH );
+			while ( length % 4 != 0 ) {
+				op( 0 );
+			}
+			u4( 0 );
+			u4( 0 );
+			u4( cases - 1 );
+			for ( int i = 0; i < cases; i++ ) {
+				u4( 0 );
+			}
+			return switchAddress;
+		}
+
+		/* Point a case of a tableswitch at the current end of the code, case 0 also takes the default */
+		void bindCase( int switchAddress, int caseIndex ) {
+			int defaultAddress = (switchAddress + 4) & ~3;
+			int offset = length - switchAddress;
+			if ( caseIndex == 0 ) {
+				patchInt( defaultAddress, offset );
+			}
+			patchInt( defaultAddress + 12 + caseIndex * 4, offset );
+		}
+
+		private void patchInt( int address, int value ) {
+			bytes[address] = (byte) (value >> 24);
+			bytes[address + 1] = (byte) (value >> 16);
+			bytes[address + 2] = (byte) (value >> 8);
+			bytes[address + 3] = (byte) value;
+		}
+
+		/* return instructionsRun - first */
+		void returnInstructionsRun( int instructionsRun ) {
+			pushInt( instructionsRun );
+			local( ILOAD, FIRST_INSTRUCTION );
+			op( ISUB );
+			op( IRETURN );
+		}
+
+		/* Expects the emulator on the stack */
+		void getField( String name, String type ) {
+			op( GETFIELD );
+			u2( constantPool.fieldReference( EMULATOR, name, type ) );
+		}
+
+		void getEmulatorField( String name, String type ) {
+			op( ALOAD_1 );
+			getField( name, type );
+		}
+
+		/* Expects the emulator and then the value on the stack */
+		void putEmulatorField( String name, String type ) {
+			op( PUTFIELD );
+			u2( constantPool.fieldReference( EMULATOR, name, type ) );
+		}
+
+		void setEmulatorField( String name, String type, int value ) {
+			op( ALOAD_1 );
+			pushInt( value );
+			putEmulatorField( name, type );
+		}
+
+		void loadRegisters() {
+			getEmulatorField( "vRegisters", "[B" );
+		}
+
+		/* vRegisters[register] */
+		void loadRegister( int register ) {
+			loadRegisters();
+			pushInt( register );
+			op( BALOAD );
+		}
+
+		/* vRegisters[0xF] = value */
+		void storeFlag( int value ) {
+			loadRegisters();
+			pushInt( 0xF );
+			pushInt( value );
+			op( BASTORE );
+		}
+
+		/* vRegisters[x] = (byte) (vRegisters[x] <operation> vRegisters[y]) */
+		void registerOperation( int x, int y, int operation ) {
+			loadRegisters();
+			pushInt( x );
+			loadRegister( x );
+			loadRegister( y );
+			op( operation );
+			op( I2B );
+			op( BASTORE );
+		}
+
+		/* vRegisters[x] = (byte) (vRegisters[x] <shift> 1) */
+		void shiftRegister( int x, int shift ) {
+			loadRegisters();
+			pushInt( x );
+			loadRegister( x );
+			pushInt( 1 );
+			op( shift );
+			op( I2B );
+			op( BASTORE );
+		}
+
+		/* vRegisters[0xF] = vRegisters[greater] > vRegisters[lesser] ? 1 : 0 */
+		void compareAndSetFlag( int greater, int lesser ) {
+			loadRegister( greater );
+			loadRegister( lesser );
+			int notGreater = branch( IF_ICMPLE );
+			storeFlag( 1 );
+			int done = branch( GOTO );
+			bindBranch( notGreater );
+			storeFlag( 0 );
+			bindBranch( done );
+		}
+	}
+
+	/*
+	The constant pool of the class being generated, every entry is only added once
+	 */
+	private static final class ConstantPool {
+
+		private static final int CONSTANT_UTF8 = 1;
+		private static final int CONSTANT_INTEGER = 3;
+		private static final int CONSTANT_CLASS = 7;
+		private static final int CONSTANT_FIELDREF = 9;
+		private static final int CONSTANT_METHODREF = 10;
+		private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private final DataOutputStream out = new DataOutputStream( bytes );
+		private final Map < String, Integer > entries = new HashMap <>();
+		private int count = 1;
+
+		int utf8( String value ) {
+			String key = "U" + value;
+			Integer index = entries.get( key );
+			if ( index == null ) {
+				index = add( key );
+				write( CONSTANT_UTF8 );
+				try {
+					out.writeUTF( value );
+				} catch ( IOException e ) {
+					throw new IllegalStateException( e );
+				}
+			}
+			return index;
+		}
+
+		int integer( int value ) {
+			String key = "I" + value;
+			Integer index = entries.get( key );
+			if ( index == null ) {
+				index = add( key );
+				write( CONSTANT_INTEGER );
+				writeInt( value );
+			}
+			return index;
+		}
+
+		int classReference( String name ) {
+			String key = "C" + name;
+			Integer index = entries.get( key );
+			if ( index == null ) {
+				int nameIndex = utf8( name );
+				index = add( key );
+				write( CONSTANT_CLASS );
+				writeShort( nameIndex );
+			}
+			return index;
+		}
+
+		int fieldReference( String owner, String name, String type ) {
+			return memberReference( CONSTANT_FIELDREF, owner, name, type );
+		}
+
+		int methodReference( String owner, String name, String type ) {
+			return memberReference( CONSTANT_METHODREF, owner, name, type );
+		}
+
+		private int memberReference( int tag, String owner, String name, String type ) {
+			String key = "M" + tag + owner + "." + name + ":" + type;
+			Integer index = entries.get( key );
+			if ( index == null ) {
+				int ownerIndex = classReference( owner );
+				int nameAndTypeIndex = nameAndType( name, type );
+				index = add( key );
+				write( tag );
+				writeShort( ownerIndex );
+				writeShort( nameAndTypeIndex );
+			}
+			return index;
+		}
+
+		private int nameAndType( String name, String type ) {
+			String key = "N" + name + ":" + type;
+			Integer index = entries.get( key );
+			if ( index == null ) {
+				int nameIndex = utf8( name );
+				int typeIndex = utf8( type );
+				index = add( key );
+				write( CONSTANT_NAME_AND_TYPE );
+				writeShort( nameIndex );
+				writeShort( typeIndex );
+			}
+			return index;
+		}
+
+		private int add( String key ) {
+			int index = count++;
+			entries.put( key, index );
+			return index;
+		}
+
+		private void write( int value ) {
+			bytes.write( value );
+		}
+
+		private void writeShort( int value ) {
+			bytes.write( value >> 8 );
+			bytes.write( value );
+		}
+
+		private void writeInt( int value ) {
+			writeShort( value >>> 16 );
+			writeShort( value & 0xFFFF );
+		}
+
+		void writeTo( DataOutputStream classFile ) throws IOException {
+			classFile.writeShort( count );
+			bytes.writeTo( classFile );
+		}
+	}
+
+}
@@ -0,0 +1,206 @@
+package com.codedchai.chip8;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+
+/*
+An engine that compiles hot basic blocks into JVM classes and runs them instead of interpreting one opcode at a time.
+
+A block starts at the program counter and runs straight through until a jump, call, return, skip, sprite draw or memory
+write, whichever comes first. A compiled block can be entered at any of its instructions and stops as soon as the cycles of
+the slice are used up, so a slice that ends or starts in the middle of a block still runs compiled, and is never run past
+the end of the slice, which would move the timers and keys relative to the program. Fx0A is never compiled, any cycle that
+has no compiled block to run (Fx0A, cold code) goes through the interpreter instead. As soon as anything
+writes into memory that has already been decoded every compiled block is thrown away, so self-modifying ROMs get recompiled.
+Compiled blocks don't trace or profile anything, so while tracing or profiling is on every cycle is interpreted.
+ */
+public class BlockCompilingEngine implements ExecutionEngine {
+
+	/* How many times a block has to be entered before we bother compiling it */
+	private static final int COMPILE_THRESHOLD = 16;
+	/* Longest block we will compile, anything longer is split into several blocks */
+	private static final int MAX_BLOCK_LENGTH = 64;
+	/* Every block is its own class, so stop compiling once a ROM has rewritten itself this many times over */
+	private static final int MAX_COMPILED_BLOCKS = 4096;
+
+	/* Operations that decide where the program counter goes next or change memory, these always end a block */
+	private static final EnumSet < Operation > BLOCK_TERMINATORS = EnumSet.of(
+			Operation.RET, Operation.JP, Operation.CALL, Operation.JP_V0_NNN, Operation.EXIT,
+			Operation.SE_VX_KK, Operation.SNE_VX_KK, Operation.SE_VX_VY, Operation.SNE_VX_VY,
+			Operation.SKP_VX, Operation.SKNP_VX,
+			Operation.DRW_VX_VY_N,
+			Operation.LD_B_VX, Operation.LD_I_VX );
+
+	/* Marks an address where no block can be compiled, so we don't try again */
+	private static final Block NOT_COMPILABLE = new Block( null, 0 );
+
+	private final BlockCompiler compiler = new BlockCompiler();
+
+	private Emulator boundEmulator;
+	/* The block each address is part of, and which of its instructions is at that address */
+	private Block[] blocks;
+	private int[] blockEntries;
+	private int[] entryCounts;
+	private int seenCodeWriteCount;
+	private long compiledCycles;
+	private long interpretedCycles;
+
+	@Override
+	public void execute( Emulator emulator, int cycles ) throws Exception {
+		bind( emulator );
+
+		if ( emulator.getTracer().isInfoEnabled() || emulator.getProfiler().isEnabled() ) {
+			for ( int i = 0; i < cycles; i++ ) {
+				emulator.emulateCycle();
+				interpretedCycles++;
+			}
+			return;
+		}
+
+		int remainingCycles = cycles;
+		while ( remainingCycles > 0 ) {
+			if ( emulator.codeWriteCount != seenCodeWriteCount ) {
+				Arrays.fill( blocks, null );
+				seenCodeWriteCount = emulator.codeWriteCount;
+			}
+
+			Block block = findBlock( emulator, emulator.programCounter );
+			if ( block != null ) {
+				int cyclesRun = block.compiledBlock.run( emulator, blockEntries[emulator.programCounter], remainingCycles );
+				remainingCycles -= cyclesRun;
+				compiledCycles += cyclesRun;
+			} else {
+				emulator.emulateCycle();
+				remainingCycles--;
+				interpretedCycles++;
+			}
+		}
+	}
+
+	/*
+	Compile every basic block the disassembler found up front, instead of waiting for each one to get hot. Call this after the
+	ROM is loaded, loading a ROM throws every compiled block away
+	 */
+	public void warmStart( Emulator emulator, Disassembler disassembler ) throws Exception {
+		bind( emulator );
+		if ( emulator.codeWriteCount != seenCodeWriteCount ) {
+			Arrays.fill( blocks, null );
+			seenCodeWriteCount = emulator.codeWriteCount;
+		}
+
+		for ( Disassembler.BasicBlock basicBlock : disassembler.getBasicBlocks() ) {
+			int address = basicBlock.start;
+			if ( blocks[address] == null ) {
+				install( address, compileBlock( emulator, address ) );
+			}
+		}
+	}
+
+	public int getCompiledBlockCount() {
+		return compiler.getCompiledBlockCount();
+	}
+
+	/* Cycles run by compiled blocks and by the interpreter since this engine was created */
+	public long getCompiledCycles() {
+		return compiledCycles;
+	}
+
+	public long getInterpretedCycles() {
+		return interpretedCycles;
+	}
+
+	private void bind( Emulator emulator ) {
+		if ( boundEmulator != emulator ) {
+			boundEmulator = emulator;
+			blocks = new Block[emulator.memory.length];
+			blockEntries = new int[emulator.memory.length];
+			entryCounts = new int[emulator.memory.length];
+			seenCodeWriteCount = emulator.codeWriteCount;
+		}
+	}
+
+	/*
+	Look up the compiled block at the address, compiling it once it gets hot. Returns null if the address should be interpreted
+	 */
+	private Block findBlock( Emulator emulator, int address ) throws Exception {
+		if ( address < 0 || address >= emulator.memory.length ) {
+			return null;
+		}
+
+		Block block = blocks[address];
+		if ( block == null ) {
+			if ( ++entryCounts[address] < COMPILE_THRESHOLD ) {
+				return null;
+			}
+			block = compileBlock( emulator, address );
+			install( address, block );
+		}
+
+		return block == NOT_COMPILABLE ? null : block;
+	}
+
+	/*
+	Put the block in at its start address, and at every address further into it that isn't part of a block yet. Blocks end at
+	the first terminator, so running the rest of this one is the same as running a block compiled from the middle
+	 */
+	private void install( int startAddress, Block block ) {
+		blocks[startAddress] = block;
+		blockEntries[startAddress] = 0;
+		for ( int i = 1; i < block.length; i++ ) {
+			int address = startAddress + i * 2;
+			if ( blocks[address] == null ) {
+				blocks[address] = block;
+				blockEntries[address] = i;
+			}
+		}
+	}
+
+	private Block compileBlock( Emulator emulator, int startAddress ) throws Exception {
+		if ( compiler.getCompiledBlockCount() >= MAX_COMPILED_BLOCKS ) {
+			return NOT_COMPILABLE;
+		}
+
+		Instruction[] instructions = new Instruction[MAX_BLOCK_LENGTH];
+		int length = 0;
+
+		for ( int address = startAddress; length < MAX_BLOCK_LENGTH && address + 1 < emulator.memory.length; address += 2 ) {
+			Instruction instruction;
+			try {
+				instruction = emulator.instructionAt( address );
+			} catch ( Exception e ) {
+				/* Not an opcode, let the interpreter report it if we ever actually get there */
+				break;
+			}
+
+			if ( instruction.operation == Operation.LD_VX_K ) {
+				break;
+			}
+
+			instructions[length++] = instruction;
+
+			if ( BLOCK_TERMINATORS.contains( instruction.operation ) ) {
+				break;
+			}
+		}
+
+		/* A single instruction gains nothing from being compiled */
+		if ( length < 2 ) {
+			return NOT_COMPILABLE;
+		}
+
+		return new Block( compiler.compile( startAddress, Arrays.copyOf( instructions, length ) ), length );
+	}
+
+	private static final class Block {
+
+		final CompiledBlock compiledBlock;
+		/* How many instructions, and so cycles, the whole block is */
+		final int length;
+
+		Block( CompiledBlock compiledBlock, int length ) {
+			this.compiledBlock = compiledBlock;
+			this.length = length;
+		}
+	}
+
+}
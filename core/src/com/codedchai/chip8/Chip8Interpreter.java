@@ -2,43 +2,107 @@ package com.codedchai.chip8;
 
 import com.badlogic.gdx.ApplicationAdapter;
 import com.badlogic.gdx.Gdx;
-import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.OrthographicCamera;
-import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
 import com.badlogic.gdx.utils.viewport.FitViewport;
 
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+
 public class Chip8Interpreter extends ApplicationAdapter {
 
+	/* Where the emulator runs */
+	public enum Threading {
+		/* On its own thread, paced by an EmulatorRunner and handing frames over to the render thread */
+		EMULATOR_THREAD,
+		/* Inside render(), one display frame's worth of cycles per frame, see RenderLoopRunner */
+		RENDER_THREAD
+	}
+
+	/* How often the frame time stats are logged */
+	private static final long FRAME_TIME_LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos( 10 );
+
+	private final Threading threading;
+	private final int refreshRate;
+
 	Emulator chip8Emulator;
 	Thread emulatorThread;
+	EmulatorRunner emulatorRunner;
+	RenderLoopRunner renderLoopRunner;
 
-	public final static float WIDTH = 64;
-	public final static float HEIGHT = 32;
+	/* Time between successive calls to render(), in either mode */
+	private final FrameTimeStats renderFrameTimes = new FrameTimeStats();
+	private long lastFrameTimeLogNanos;
+
+	/* The world is one unit per pixel, this is its size until a ROM switches to SUPER-CHIP's high resolution */
+	public final static float WIDTH = FrameBuffer.WIDTH;
+	public final static float HEIGHT = FrameBuffer.HEIGHT;
 
 	FitViewport viewport;
 	OrthographicCamera camera;
-	ShapeRenderer shapeRenderer;
+	FrameRenderer frameRenderer;
 
-	int[] pixels;
+	/*
+	Run the emulator on its own thread
+	 */
+	public Chip8Interpreter() {
+		this( Threading.EMULATOR_THREAD, Emulator.TIMER_FREQUENCY );
+	}
+
+	/*
+	refreshRate is only used on the render thread, where it should be the rate render() is called at, the display's refresh
+	rate with vsync on
+	 */
+	public Chip8Interpreter( Threading threading, int refreshRate ) {
+		this.threading = threading;
+		this.refreshRate = refreshRate;
+	}
 
 	@Override
 	public void create() {
-		pixels = new int[(int) (WIDTH * HEIGHT)];
-
-		shapeRenderer = new ShapeRenderer();
+		frameRenderer = new FrameRenderer();
 		camera = new OrthographicCamera( WIDTH, HEIGHT );
 		viewport = new FitViewport( WIDTH, HEIGHT, camera );
-		shapeRenderer.setProjectionMatrix( viewport.getCamera().combined );
-
-		chip8Emulator = new Emulator();
-		emulatorThread = new Thread( chip8Emulator );
-		emulatorThread.start();
 
+		chip8Emulator = new Emulator( Gdx.files.internal( "roms/BC_test.ch8" ).readBytes() );
+		try {
+			/* Turn it on from JConsole or VisualVM when you want to see where the ROM spends its time */
+			chip8Emulator.getProfiler().register( "BC_test.ch8" );
+		} catch ( JMException e ) {
+			Gdx.app.error( "Chip8Interpreter", "Could not register the profiler with JMX", e );
+		}
+		Gdx.input.setInputProcessor( new KeypadInputProcessor( chip8Emulator.getKeyEvents() ) );
+
+		if ( threading == Threading.RENDER_THREAD ) {
+			renderLoopRunner = new RenderLoopRunner( chip8Emulator, refreshRate );
+		} else {
+			emulatorRunner = new EmulatorRunner( chip8Emulator );
+			emulatorThread = new Thread( emulatorRunner );
+			emulatorThread.start();
+		}
+		lastFrameTimeLogNanos = System.nanoTime();
 	}
 
 	@Override
 	public void render() {
+		long now = System.nanoTime();
+		renderFrameTimes.frame( now );
+		if ( now - lastFrameTimeLogNanos >= FRAME_TIME_LOG_INTERVAL_NANOS ) {
+			logFrameTimes();
+			lastFrameTimeLogNanos = now;
+		}
+
+		if ( renderLoopRunner != null ) {
+			try {
+				renderLoopRunner.runFrame();
+			} catch ( Exception e ) {
+				/* Same as the emulator thread dying, the last frame stays on screen */
+				Gdx.app.error( "Chip8Interpreter", "Emulator stopped", e );
+				renderLoopRunner = null;
+			}
+		}
+
 		Gdx.gl.glClearColor( 0, 0, 0, 1 );
 		Gdx.gl.glClear( GL20.GL_COLOR_BUFFER_BIT );
 
@@ -47,38 +111,54 @@ public class Chip8Interpreter extends ApplicationAdapter {
 		Gdx.gl.glDisable( GL20.GL_BLEND );
 
 
-		if ( chip8Emulator.drawFlag() ) {
-			pixels = chip8Emulator.getDisplayPixels();
+		FrameExchange frameExchange = chip8Emulator.getFrameExchange();
+		if ( frameExchange.acquire() ) {
+			frameRenderer.upload( frameExchange.getFrontBuffer() );
+			if ( frameRenderer.getWidth() != viewport.getWorldWidth() || frameRenderer.getHeight() != viewport.getWorldHeight() ) {
+				/* The ROM switched resolution, keep showing the whole display */
+				viewport.setWorldSize( frameRenderer.getWidth(), frameRenderer.getHeight() );
+				viewport.update( Gdx.graphics.getWidth(), Gdx.graphics.getHeight() );
+			}
 		}
 
 
-		generateSprite();
+		frameRenderer.render( viewport.getCamera() );
 	}
 
-	@Override
-	public void resize( int width, int height ) {
-		viewport.update( width, height );
+	private void logFrameTimes() {
+		Gdx.app.debug( "Chip8Interpreter", "Render frame times: " + renderFrameTimes );
+		FrameTimeStats emulatorFrameTimes = getEmulatorFrameTimes();
+		if ( emulatorFrameTimes != null ) {
+			Gdx.app.debug( "Chip8Interpreter", "Emulator frame times: " + emulatorFrameTimes );
+		}
 	}
 
-	@Override
-	public void dispose() {
+	public Threading getThreading() {
+		return threading;
+	}
 
+	public FrameTimeStats getRenderFrameTimes() {
+		return renderFrameTimes;
 	}
 
 	/*
-	An extremely naive approach where we just draw each pixel
+	Time between emulated frames, the runner thread's ticks or the render loop's frames depending on the mode. Null before create()
 	 */
-	public void generateSprite() {
-
-		for ( int yLine = 0; yLine < HEIGHT; yLine++ ) {
-			for ( int xLine = 0; xLine < WIDTH; xLine++ ) {
-				if ( pixels[xLine + (yLine * 64)] != 0 ) {
-					shapeRenderer.setColor( Color.WHITE );
-					shapeRenderer.begin( ShapeRenderer.ShapeType.Filled );
-					shapeRenderer.rect( xLine, yLine, 1, 1 );
-					shapeRenderer.end();
-				}
-			}
+	public FrameTimeStats getEmulatorFrameTimes() {
+		if ( renderLoopRunner != null ) {
+			return renderLoopRunner.getFrameTimes();
 		}
+		return emulatorRunner == null ? null : emulatorRunner.getTickTimes();
 	}
+
+	@Override
+	public void resize( int width, int height ) {
+		viewport.update( width, height );
+	}
+
+	@Override
+	public void dispose() {
+		frameRenderer.dispose();
+	}
+
 }
@@ -0,0 +1,14 @@
+package com.codedchai.chip8;
+
+/*
+A basic block that has been compiled into its own JVM class by the BlockCompiler
+ */
+interface CompiledBlock {
+
+	/*
+	Execute the block's instructions from index first on, until cycles of them have run or the block ends, leaving the emulator
+	exactly as if each one had been interpreted in turn. Returns how many instructions ran
+	 */
+	int run( Emulator emulator, int first, int cycles ) throws Exception;
+
+}
@@ -0,0 +1,150 @@
+package com.codedchai.chip8;
+
+/*
+The interpreter with a Debugger's checks after every instruction. Only ever installed by Debugger.attach, so the cost of the
+checks is only paid while someone is debugging.
+
+Memory watches are checked against the addresses an instruction is going to touch, worked out from the instruction and I
+before it runs, so nothing in the emulator has to report its memory accesses. Register watches compare the watched registers
+before and after.
+ */
+final class DebugEngine implements ExecutionEngine {
+
+	private final Debugger debugger;
+
+	/* The watched registers as they were before the current instruction */
+	private final byte[] registersBefore = new byte[16];
+
+	DebugEngine( Debugger debugger ) {
+		this.debugger = debugger;
+	}
+
+	@Override
+	public void execute( Emulator emulator, int cycles ) throws Exception {
+		/* Reading the volatile makes every change to the breakpoints and watches before it visible to this thread */
+		debugger.getChanges();
+
+		for ( int i = 0; i < cycles; i++ ) {
+			if ( !debugger.isAttached() ) {
+				emulator.emulateCycle();
+				continue;
+			}
+
+			int instructionAddress = emulator.programCounter;
+			Instruction instruction = emulator.fetchInstruction();
+			int watchedAddress = debugger.memoryWatchCount == 0 ? -1 : watchedAccess( emulator, instruction, Debugger.READ );
+			Debugger.Reason memoryReason = Debugger.Reason.MEMORY_READ;
+			if ( watchedAddress < 0 && debugger.memoryWatchCount != 0 ) {
+				watchedAddress = watchedAccess( emulator, instruction, Debugger.WRITE );
+				memoryReason = Debugger.Reason.MEMORY_WRITE;
+			}
+
+			int registerWatches = debugger.registerWatches;
+			short indexBefore = emulator.indexRegister;
+			if ( registerWatches != 0 ) {
+				System.arraycopy( emulator.vRegisters, 0, registersBefore, 0, registersBefore.length );
+			}
+
+			emulator.emulateCycle();
+			boolean conditionMet = isAnyConditionNewlyMet( emulator );
+
+			Debugger.Reason reason = null;
+			int address = -1;
+			if ( watchedAddress >= 0 ) {
+				reason = memoryReason;
+				address = watchedAddress;
+			} else if ( registerWatches != 0 && (address = changedRegister( emulator, registerWatches, indexBefore )) >= 0 ) {
+				reason = Debugger.Reason.REGISTER;
+			} else if ( debugger.breakpoints[emulator.programCounter & 0xFFF] ) {
+				reason = Debugger.Reason.BREAKPOINT;
+				instructionAddress = emulator.programCounter;
+			} else if ( conditionMet ) {
+				reason = Debugger.Reason.CONDITION;
+			} else if ( debugger.stepsRemaining > 0 && --debugger.stepsRemaining == 0 ) {
+				reason = Debugger.Reason.STEP;
+			} else if ( debugger.pauseRequested ) {
+				reason = Debugger.Reason.PAUSE;
+			}
+
+			if ( reason != null ) {
+				debugger.stop( new Debugger.Stop( reason, emulator.programCounter, instructionAddress, address, emulator.cycleCount + i + 1 ) );
+			}
+		}
+	}
+
+	/*
+	The first watched address the instruction is about to read or write (access), -1 if it doesn't touch one
+	 */
+	private int watchedAccess( Emulator emulator, Instruction instruction, int access ) {
+		int length;
+		switch ( instruction.operation ) {
+			case DRW_VX_VY_N:
+				if ( access != Debugger.READ ) {
+					return -1;
+				}
+				length = instruction.n == 0 && emulator.isHighResolution() ? 32 : instruction.n;
+				break;
+			case LD_VX_I:
+				if ( access != Debugger.READ ) {
+					return -1;
+				}
+				length = instruction.x + 1;
+				break;
+			case LD_B_VX:
+				if ( access != Debugger.WRITE ) {
+					return -1;
+				}
+				length = 3;
+				break;
+			case LD_I_VX:
+				if ( access != Debugger.WRITE ) {
+					return -1;
+				}
+				length = instruction.x + 1;
+				break;
+			default:
+				return -1;
+		}
+
+		byte[] watches = debugger.memoryWatches;
+		int start = emulator.indexRegister & 0xFFFF;
+		/* Anything past the end of memory throws when the instruction runs, there is nothing there to watch */
+		int end = Math.min( start + length, watches.length );
+		for ( int address = start; address < end; address++ ) {
+			if ( (watches[address] & access) != 0 ) {
+				return address;
+			}
+		}
+		return -1;
+	}
+
+	/*
+	The first watched register the instruction changed, INDEX_REGISTER for I, -1 if none of them changed
+	 */
+	private int changedRegister( Emulator emulator, int registerWatches, short indexBefore ) {
+		for ( int register = 0; register < registersBefore.length; register++ ) {
+			if ( (registerWatches & (1 << register)) != 0 && emulator.vRegisters[register] != registersBefore[register] ) {
+				return register;
+			}
+		}
+		if ( (registerWatches & (1 << Debugger.INDEX_REGISTER)) != 0 && emulator.indexRegister != indexBefore ) {
+			return Debugger.INDEX_REGISTER;
+		}
+		return -1;
+	}
+
+	/*
+	true if any condition went from not met to met. Every condition is checked so they all know where they stand for the next
+	instruction
+	 */
+	private boolean isAnyConditionNewlyMet( Emulator emulator ) {
+		boolean newlyMet = false;
+		for ( Debugger.ConditionWatch watch : debugger.conditions ) {
+			boolean met = watch.condition.isMet( emulator );
+			newlyMet |= met && !watch.met;
+			watch.met = met;
+		}
+		return newlyMet;
+	}
+
+}
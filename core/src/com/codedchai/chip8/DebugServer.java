@@ -0,0 +1,323 @@
+package com.codedchai.chip8;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+
+/*
+Serves a Debugger over a local socket with a plain text protocol, one command per line, so a running machine can be debugged
+with nothing more than
+
+	nc localhost 6502
+
+Addresses and lengths are hex, counts are decimal, registers are v0 to vf and i:
+
+	break <address>						stop when the program counter gets there
+	delete <address>					remove the breakpoint
+	watch <address> [length] [r|w|rw]	stop when an instruction reads or writes there, rw if not given
+	unwatch <address> [length]
+	watchreg <register>					stop when an instruction changes the register
+	unwatchreg <register>
+	pause								stop after the current instruction
+	continue							carry on until the next stop
+	step [count]						run count instructions, 1 if not given, and stop again
+	regs								program counter, I, stack pointer, timers and V0 to VF
+	mem <address> [length]				hex dump, 16 bytes if no length is given
+	dis [address] [count]				disassemble from the address, the program counter if not given
+	detach								put the normal engine back and let the machine run free
+
+Every reply is one line starting with "ok" or "error", except regs, mem and dis which send their lines and then "ok". Every
+time the machine stops "stopped" and the Stop follow on a line of their own, whenever that happens, pause and step wait for
+it before they reply. The machine has to be stopped for regs, mem, dis, step and continue.
+
+The server only listens on the loopback interface and talks to one client at a time.
+ */
+public class DebugServer implements Runnable, Closeable, Debugger.Listener {
+
+	/* How long pause and step wait for the machine to stop before replying anyway */
+	private static final long STOP_TIMEOUT_MILLIS = 1000;
+	private static final int DEFAULT_DUMP_LENGTH = 16;
+	private static final int DEFAULT_DISASSEMBLY_COUNT = 8;
+
+	private final Debugger debugger;
+	private final ServerSocket serverSocket;
+
+	/* The connected client, null when there isn't one */
+	private volatile PrintWriter client;
+	/* What stopped the server serving, thrown from close() */
+	private volatile IOException error;
+
+	/*
+	Listen for a client on the port, 0 for any free port
+	 */
+	public DebugServer( Debugger debugger, int port ) throws IOException {
+		this.debugger = debugger;
+		this.serverSocket = new ServerSocket( port, 1, InetAddress.getLoopbackAddress() );
+		debugger.addListener( this );
+	}
+
+	/*
+	Serve clients on a daemon thread until closed, or until something other than a client going away goes wrong. Anything
+	like that is thrown from close()
+	 */
+	public Thread start() {
+		Thread thread = new Thread( this, "Chip-8 debug server" );
+		thread.setDaemon( true );
+		thread.start();
+		return thread;
+	}
+
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	@Override
+	public void run() {
+		while ( !serverSocket.isClosed() ) {
+			try ( Socket socket = serverSocket.accept() ) {
+				serve( socket );
+			} catch ( SocketException e ) {
+				/* Closed under us, either the server or the client went away */
+			} catch ( IOException e ) {
+				/* Nothing on this thread can deal with it, stop serving and hang on to it for close() */
+				error = e;
+				closeServerSocket();
+			}
+		}
+	}
+
+	private void closeServerSocket() {
+		try {
+			serverSocket.close();
+		} catch ( IOException e ) {
+			/* Already on the way down because of error */
+		}
+	}
+
+	private void serve( Socket socket ) throws IOException {
+		BufferedReader in = new BufferedReader( new InputStreamReader( socket.getInputStream(), StandardCharsets.US_ASCII ) );
+		PrintWriter out = new PrintWriter( new OutputStreamWriter( socket.getOutputStream(), StandardCharsets.US_ASCII ), true );
+		client = out;
+		try {
+			String line;
+			while ( (line = in.readLine()) != null ) {
+				String[] words = line.trim().toLowerCase().split( "\\s+" );
+				if ( words[0].isEmpty() ) {
+					continue;
+				}
+				String reply;
+				try {
+					reply = execute( words, out );
+				} catch ( IllegalArgumentException | IllegalStateException | IndexOutOfBoundsException e ) {
+					reply = "error " + e.getMessage();
+				} catch ( InterruptedException e ) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+				synchronized ( out ) {
+					out.println( reply );
+				}
+				if ( !debugger.isAttached() ) {
+					return;
+				}
+			}
+		} finally {
+			client = null;
+		}
+	}
+
+	/*
+	Run one command, returns the reply's last line
+	 */
+	private String execute( String[] words, PrintWriter out ) throws InterruptedException {
+		Emulator emulator = debugger.getEmulator();
+		switch ( words[0] ) {
+			case "break":
+				debugger.addBreakpoint( hex( words, 1, -1 ) );
+				return "ok";
+			case "delete":
+				debugger.removeBreakpoint( hex( words, 1, -1 ) );
+				return "ok";
+			case "watch":
+				debugger.watchMemory( hex( words, 1, -1 ), hex( words, 2, 1 ), access( words.length > 3 ? words[3] : "rw" ) );
+				return "ok";
+			case "unwatch":
+				debugger.unwatchMemory( hex( words, 1, -1 ), hex( words, 2, 1 ) );
+				return "ok";
+			case "watchreg":
+				debugger.watchRegister( register( words ) );
+				return "ok";
+			case "unwatchreg":
+				debugger.unwatchRegister( register( words ) );
+				return "ok";
+			case "pause":
+				debugger.pause();
+				debugger.awaitStop( STOP_TIMEOUT_MILLIS );
+				return "ok";
+			case "continue":
+				debugger.resume();
+				return "ok";
+			case "step":
+				int count = number( words, 1, 1, 10 );
+				if ( count <= 0 ) {
+					throw new IllegalArgumentException( "can't step " + count + " instructions" );
+				}
+				debugger.resume( count );
+				/* The stop is reported by stopped(), this only keeps the reply after it */
+				debugger.awaitStop( STOP_TIMEOUT_MILLIS );
+				return "ok";
+			case "regs":
+				requireSuspended();
+				synchronized ( out ) {
+					out.println( String.format( "pc %03X i %03X sp %X dt %02X st %02X", emulator.programCounter & 0xFFFF, emulator.indexRegister & 0xFFFF,
+							emulator.stackPointer, emulator.delayTimer, emulator.soundTimer ) );
+					StringBuilder registers = new StringBuilder();
+					for ( int register = 0; register < emulator.vRegisters.length; register++ ) {
+						registers.append( register == 0 ? "" : " " ).append( String.format( "v%X %02X", register, emulator.getRegister( register ) ) );
+					}
+					out.println( registers );
+				}
+				return "ok";
+			case "mem":
+				requireSuspended();
+				dump( emulator, hex( words, 1, -1 ), hex( words, 2, DEFAULT_DUMP_LENGTH ), out );
+				return "ok";
+			case "dis":
+				requireSuspended();
+				disassemble( emulator, hex( words, 1, emulator.programCounter & 0xFFFF ), number( words, 2, DEFAULT_DISASSEMBLY_COUNT, 10 ), out );
+				return "ok";
+			case "detach":
+				debugger.detach();
+				return "ok";
+			default:
+				return "error unknown command " + words[0];
+		}
+	}
+
+	private void requireSuspended() {
+		if ( !debugger.isSuspended() ) {
+			throw new IllegalStateException( "the machine is running, pause it first" );
+		}
+	}
+
+	private static void dump( Emulator emulator, int address, int length, PrintWriter out ) {
+		synchronized ( out ) {
+			for ( int line = address; line < address + length; line += 16 ) {
+				StringBuilder text = new StringBuilder( String.format( "%03X ", line ) );
+				for ( int i = line; i < Math.min( line + 16, address + length ); i++ ) {
+					text.append( String.format( " %02X", emulator.readMemory( i ) & 0xFF ) );
+				}
+				out.println( text );
+			}
+		}
+	}
+
+	private void disassemble( Emulator emulator, int address, int count, PrintWriter out ) {
+		synchronized ( out ) {
+			for ( int i = 0; i < count && address + 1 < emulator.memory.length; i++, address += 2 ) {
+				int opcode = emulator.readOpcode( address );
+				String mnemonic;
+				try {
+					mnemonic = Disassembler.mnemonic( Emulator.decodeOpcode( opcode ) );
+				} catch ( Exception e ) {
+					mnemonic = "???";
+				}
+				String marker = address == (emulator.programCounter & 0xFFFF) ? ">" : debugger.hasBreakpoint( address ) ? "*" : " ";
+				out.println( String.format( "%s%03X  %04X  %s", marker, address, opcode, mnemonic ) );
+			}
+		}
+	}
+
+	/*
+	Word index of the command as hex, fallback if it isn't there. A fallback of -1 means it has to be there
+	 */
+	private static int hex( String[] words, int index, int fallback ) {
+		return number( words, index, fallback, 16 );
+	}
+
+	private static int number( String[] words, int index, int fallback, int radix ) {
+		if ( index >= words.length ) {
+			if ( fallback < 0 ) {
+				throw new IllegalArgumentException( words[0] + " needs an address" );
+			}
+			return fallback;
+		}
+		return Integer.parseInt( words[index], radix );
+	}
+
+	private static int access( String word ) {
+		switch ( word ) {
+			case "r":
+				return Debugger.READ;
+			case "w":
+				return Debugger.WRITE;
+			case "rw":
+				return Debugger.READ | Debugger.WRITE;
+			default:
+				throw new IllegalArgumentException( "access has to be r, w or rw, got " + word );
+		}
+	}
+
+	private static int register( String[] words ) {
+		if ( words.length < 2 ) {
+			throw new IllegalArgumentException( words[0] + " needs a register" );
+		}
+		if ( words[1].equals( "i" ) ) {
+			return Debugger.INDEX_REGISTER;
+		}
+		if ( words[1].length() != 2 || words[1].charAt( 0 ) != 'v' ) {
+			throw new IllegalArgumentException( "no register " + words[1] + ", they are v0 to vf and i" );
+		}
+		return Integer.parseInt( words[1].substring( 1 ), 16 );
+	}
+
+	/*
+	Called on the emulator thread with every stop
+	 */
+	@Override
+	public void stopped( Debugger debugger, Debugger.Stop stop ) {
+		PrintWriter out = client;
+		if ( out != null ) {
+			synchronized ( out ) {
+				out.println( "stopped " + stop );
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		debugger.removeListener( this );
+		serverSocket.close();
+		if ( error != null ) {
+			throw error;
+		}
+	}
+
+	/*
+	Run a ROM in real time without a display under the debugger: ROM path and port. The machine pauses after its first
+	instruction so breakpoints can be set before anything else runs
+	 */
+	public static void main( String[] args ) throws Exception {
+		Emulator emulator = new Emulator();
+		emulator.loadROM( Paths.get( args[0] ) );
+		int port = args.length > 1 ? Integer.parseInt( args[1] ) : 6502;
+
+		Debugger debugger = Debugger.attach( emulator );
+		DebugServer server = new DebugServer( debugger, port );
+		server.start();
+		System.out.println( "Debugging " + args[0] + " on localhost:" + server.getPort() + ", paused after the first instruction" );
+
+		debugger.pause();
+		new EmulatorRunner( emulator ).run();
+	}
+
+}
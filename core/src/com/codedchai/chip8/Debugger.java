@@ -0,0 +1,422 @@
+package com.codedchai.chip8;
+
+import java.util.Arrays;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/*
+Breakpoints, watchpoints and single stepping for an emulator.
+
+Attaching swaps the emulator's execution engine for a DebugEngine that checks every instruction against the breakpoints and
+watches, detaching puts the old engine back. The plain engines know nothing about debugging, so a machine that has no
+debugger attached runs exactly the same code as before, there isn't a single flag checked per instruction.
+
+The machine only ever stops in between two instructions, once the one that caused the stop has finished:
+
+	BREAKPOINT		the program counter got to an address with a breakpoint, the instruction there hasn't run yet
+	MEMORY_READ		the instruction read a watched address (Dxyn and Fx65, fetching opcodes doesn't count)
+	MEMORY_WRITE	the instruction wrote a watched address (Fx33 and Fx55)
+	REGISTER		the instruction changed a watched V register or I
+	CONDITION		one of the conditions went from not met to met
+	STEP			the instructions asked for have run
+	PAUSE			someone called pause()
+
+A machine can be driven two ways. A test harness calls run() and step() on the thread that owns the emulator, they execute
+instructions right there, ticking the timers once a frame the same as Emulator.runFrames, and return why they stopped. When
+something else runs the emulator, an EmulatorRunner thread usually, a stop suspends the emulator thread inside its step until
+another thread calls resume(). Nothing runs while it is suspended, the timers don't tick either, so the machine can be looked
+at exactly the way it was when it stopped. Listeners hear about every stop either way, see DebugServer for one that reports
+them over a socket. Only a listener can know to resume a suspended thread, so a stop with no listeners, or on the thread that
+calls run() and step(), throws IllegalStateException out of the emulator's step instead of suspending it forever.
+
+Breakpoints and watches can be changed from any thread, changes made while the emulator is running take effect from its next
+step.
+ */
+public class Debugger {
+
+	public enum Reason {
+		BREAKPOINT, MEMORY_READ, MEMORY_WRITE, REGISTER, CONDITION, STEP, PAUSE
+	}
+
+	/* Memory watch flags, or them together to watch both */
+	public static final int READ = 1;
+	public static final int WRITE = 2;
+
+	/* watchRegister's number for I, V0 to VF are 0 to 15 */
+	public static final int INDEX_REGISTER = 16;
+
+	/*
+	Why and where the machine stopped
+	 */
+	public static final class Stop {
+
+		public final Reason reason;
+		/* The instruction that will run next */
+		public final int programCounter;
+		/* The instruction that caused the stop, the same as programCounter for a breakpoint */
+		public final int instructionAddress;
+		/* The watched memory address or register number, -1 for anything else */
+		public final int address;
+		/* The emulator's cycle count at the stop */
+		public final long cycle;
+
+		Stop( Reason reason, int programCounter, int instructionAddress, int address, long cycle ) {
+			this.reason = reason;
+			this.programCounter = programCounter;
+			this.instructionAddress = instructionAddress;
+			this.address = address;
+			this.cycle = cycle;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder text = new StringBuilder( reason.name().toLowerCase() );
+			if ( reason == Reason.REGISTER ) {
+				text.append( ' ' ).append( address == INDEX_REGISTER ? "I" : "V" + Integer.toHexString( address ).toUpperCase() );
+			} else if ( address >= 0 ) {
+				text.append( ' ' ).append( String.format( "%03X", address ) );
+			}
+			if ( instructionAddress != programCounter ) {
+				text.append( " by " ).append( String.format( "%03X", instructionAddress ) );
+			}
+			return text.append( String.format( " pc %03X cycle %d", programCounter, cycle ) ).toString();
+		}
+	}
+
+	/*
+	A condition and whether it was met after the last instruction, it only stops the machine when it goes from not met to met
+	 */
+	static final class ConditionWatch {
+
+		final EmulatorCondition condition;
+		boolean met;
+
+		ConditionWatch( EmulatorCondition condition, boolean met ) {
+			this.condition = condition;
+			this.met = met;
+		}
+	}
+
+	/*
+	Told about every stop on the emulator thread, before it is suspended
+	 */
+	public interface Listener {
+
+		void stopped( Debugger debugger, Stop stop );
+
+	}
+
+	private final Emulator emulator;
+	/* The engine that was running before we attached, put back by detach */
+	private final ExecutionEngine detachedEngine;
+
+	private volatile boolean attached;
+
+	/* Read and written by the emulator thread while it runs, by anyone else under the lock */
+	final boolean[] breakpoints;
+	final byte[] memoryWatches;
+	int memoryWatchCount;
+	/* Bit n for Vn, bit INDEX_REGISTER for I */
+	int registerWatches;
+	volatile ConditionWatch[] conditions = new ConditionWatch[0];
+	/* Instructions left before a STEP stop, 0 when not stepping */
+	int stepsRemaining;
+	volatile boolean pauseRequested;
+	/* Bumped after every change so the emulator thread sees it, see DebugEngine */
+	private volatile int changes;
+
+	private final CopyOnWriteArrayList < Listener > listeners = new CopyOnWriteArrayList <>();
+
+	/* The rest is guarded by this */
+	private boolean suspended;
+	/* true while run() or step() is executing on the emulator's own thread, stops are handed back to them instead */
+	private boolean driving;
+	/* The last thread that called run() or step(), it can't be suspended since it would be the one to resume itself */
+	private Thread drivingThread;
+	/* Cycles run() has run into the current frame, counted across calls so stepping one at a time still ticks the timers */
+	private int frameCycles;
+	private Stop pendingStop;
+	private Stop lastStop;
+
+	private Debugger( Emulator emulator ) {
+		this.emulator = emulator;
+		this.detachedEngine = emulator.getExecutionEngine();
+		breakpoints = new boolean[emulator.memory.length];
+		memoryWatches = new byte[emulator.memory.length];
+	}
+
+	/*
+	Start debugging the emulator. Do this from the thread that runs it, or before anything runs it
+	 */
+	public static Debugger attach( Emulator emulator ) {
+		if ( emulator.getDebugger() != null ) {
+			throw new IllegalStateException( "A debugger is already attached" );
+		}
+		Debugger debugger = new Debugger( emulator );
+		debugger.attached = true;
+		emulator.setDebugger( debugger );
+		emulator.setExecutionEngine( new DebugEngine( debugger ) );
+		return debugger;
+	}
+
+	/*
+	Put the original engine back and let a suspended emulator thread carry on. Safe from any thread, anything left of the
+	step the emulator is in runs without checks
+	 */
+	public synchronized void detach() {
+		if ( !attached ) {
+			return;
+		}
+		attached = false;
+		emulator.setExecutionEngine( detachedEngine );
+		emulator.setDebugger( null );
+		suspended = false;
+		notifyAll();
+	}
+
+	public boolean isAttached() {
+		return attached;
+	}
+
+	public Emulator getEmulator() {
+		return emulator;
+	}
+
+	public synchronized void addBreakpoint( int address ) {
+		breakpoints[address] = true;
+		changes++;
+	}
+
+	public synchronized void removeBreakpoint( int address ) {
+		breakpoints[address] = false;
+		changes++;
+	}
+
+	public synchronized boolean hasBreakpoint( int address ) {
+		return breakpoints[address];
+	}
+
+	public synchronized void clearBreakpoints() {
+		Arrays.fill( breakpoints, false );
+		changes++;
+	}
+
+	/*
+	Stop when an instruction reads and/or writes any of the length bytes starting at address, access is READ, WRITE or both
+	 */
+	public synchronized void watchMemory( int address, int length, int access ) {
+		if ( (access & ~(READ | WRITE)) != 0 || access == 0 ) {
+			throw new IllegalArgumentException( "Access has to be READ, WRITE or both, got " + access );
+		}
+		for ( int i = address; i < address + length; i++ ) {
+			memoryWatches[i] |= (byte) access;
+		}
+		countMemoryWatches();
+	}
+
+	public synchronized void unwatchMemory( int address, int length ) {
+		Arrays.fill( memoryWatches, address, address + length, (byte) 0 );
+		countMemoryWatches();
+	}
+
+	private void countMemoryWatches() {
+		memoryWatchCount = 0;
+		for ( byte watch : memoryWatches ) {
+			if ( watch != 0 ) {
+				memoryWatchCount++;
+			}
+		}
+		changes++;
+	}
+
+	/*
+	Stop when an instruction changes Vn (0 to 15) or I (INDEX_REGISTER)
+	 */
+	public synchronized void watchRegister( int register ) {
+		registerWatches |= 1 << checkRegister( register );
+		changes++;
+	}
+
+	public synchronized void unwatchRegister( int register ) {
+		registerWatches &= ~(1 << checkRegister( register ));
+		changes++;
+	}
+
+	private static int checkRegister( int register ) {
+		if ( register < 0 || register > INDEX_REGISTER ) {
+			throw new IllegalArgumentException( "No register " + register + ", V0 to VF are 0 to 15 and I is " + INDEX_REGISTER );
+		}
+		return register;
+	}
+
+	/*
+	Stop after an instruction that makes the condition met when it wasn't before, so carrying on from the stop doesn't stop again
+	straight away. It is checked after every instruction, so keep it cheap
+	 */
+	public synchronized void addCondition( EmulatorCondition condition ) {
+		ConditionWatch[] current = conditions;
+		ConditionWatch[] added = Arrays.copyOf( current, current.length + 1 );
+		added[current.length] = new ConditionWatch( condition, condition.isMet( emulator ) );
+		conditions = added;
+	}
+
+	public synchronized void removeCondition( EmulatorCondition condition ) {
+		ConditionWatch[] current = conditions;
+		for ( int i = 0; i < current.length; i++ ) {
+			if ( current[i].condition == condition ) {
+				ConditionWatch[] removed = new ConditionWatch[current.length - 1];
+				System.arraycopy( current, 0, removed, 0, i );
+				System.arraycopy( current, i + 1, removed, i, removed.length - i );
+				conditions = removed;
+				return;
+			}
+		}
+	}
+
+	public void addListener( Listener listener ) {
+		listeners.add( listener );
+	}
+
+	public void removeListener( Listener listener ) {
+		listeners.remove( listener );
+	}
+
+	/*
+	Read by the emulator thread at the start of every step, so everything written before the last change is visible to it
+	 */
+	int getChanges() {
+		return changes;
+	}
+
+	/*
+	Run on the calling thread until something stops the machine or maxCycles have run, null if nothing did. The instruction at
+	the program counter always runs, even if it has a breakpoint, the same as carrying on from a breakpoint in any debugger.
+	Every getCyclesPerFrame() cycles the timers tick and the frame is published, the same as Emulator.runFrames, so a ROM
+	waiting on the delay timer gets there. Only call this from the thread that owns the emulator, while nothing else is
+	running it
+	 */
+	public Stop run( long maxCycles ) throws Exception {
+		synchronized ( this ) {
+			driving = true;
+			drivingThread = Thread.currentThread();
+			pendingStop = null;
+		}
+		try {
+			for ( long cycle = 0; cycle < maxCycles && attached; cycle++ ) {
+				emulator.step( 1 );
+				if ( ++frameCycles >= emulator.getCyclesPerFrame() ) {
+					frameCycles = 0;
+					emulator.tickTimers();
+					emulator.publishFrame();
+				}
+				synchronized ( this ) {
+					if ( pendingStop != null ) {
+						return pendingStop;
+					}
+				}
+			}
+			return null;
+		} finally {
+			synchronized ( this ) {
+				driving = false;
+				stepsRemaining = 0;
+			}
+		}
+	}
+
+	/*
+	Run exactly one instruction on the calling thread. Returns the stop, which is STEP unless the instruction hit something
+	 */
+	public Stop step() throws Exception {
+		synchronized ( this ) {
+			stepsRemaining = 1;
+		}
+		return run( 1 );
+	}
+
+	/*
+	Let a suspended emulator thread carry on until the next stop
+	 */
+	public synchronized void resume() {
+		resume( 0 );
+	}
+
+	/*
+	Let a suspended emulator thread run the given number of instructions and stop again, 0 to run until the next stop
+	 */
+	public synchronized void resume( int instructions ) {
+		if ( !suspended ) {
+			throw new IllegalStateException( "The emulator is not suspended" );
+		}
+		stepsRemaining = instructions;
+		pauseRequested = false;
+		suspended = false;
+		notifyAll();
+	}
+
+	/*
+	Stop the emulator after the instruction it is running. Does nothing if it is already suspended, there is nothing running to
+	stop and the next resume() shouldn't stop straight away
+	 */
+	public synchronized void pause() {
+		if ( !suspended ) {
+			pauseRequested = true;
+		}
+	}
+
+	/*
+	true while the emulator thread is stopped waiting for resume()
+	 */
+	public synchronized boolean isSuspended() {
+		return suspended;
+	}
+
+	/*
+	Wait up to timeoutMillis for the emulator thread to be suspended, returns why it stopped or null if it is still running
+	 */
+	public synchronized Stop awaitStop( long timeoutMillis ) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		long remaining = timeoutMillis;
+		while ( !suspended && attached && remaining > 0 ) {
+			wait( remaining );
+			remaining = deadline - System.currentTimeMillis();
+		}
+		return suspended ? lastStop : null;
+	}
+
+	/* The last time the machine stopped, null if it hasn't yet */
+	public synchronized Stop getLastStop() {
+		return lastStop;
+	}
+
+	/*
+	Called by the DebugEngine on the emulator thread when something hits. Hands the stop back to run() if that is what is
+	driving the emulator, otherwise suspends the emulator thread until it is resumed or the debugger is detached. Throws
+	IllegalStateException rather than suspend a thread nothing could resume
+	 */
+	void stop( Stop stop ) throws InterruptedException {
+		for ( Listener listener : listeners ) {
+			listener.stopped( this, stop );
+		}
+
+		synchronized ( this ) {
+			lastStop = stop;
+			stepsRemaining = 0;
+			pauseRequested = false;
+			if ( driving ) {
+				pendingStop = stop;
+				return;
+			}
+			if ( listeners.isEmpty() || Thread.currentThread() == drivingThread ) {
+				throw new IllegalStateException( "Stopped at " + stop + " outside run() and step() with nothing to resume the emulator, drive it with"
+						+ " them or run it on another thread with a listener that resumes it" );
+			}
+
+			suspended = true;
+			notifyAll();
+			while ( suspended ) {
+				wait();
+			}
+		}
+	}
+
+}
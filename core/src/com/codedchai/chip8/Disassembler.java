@@ -0,0 +1,570 @@
+package com.codedchai.chip8;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/*
+Static analysis of a ROM. Starting at 0x200 we follow every path the program can take, jumps, calls, both sides of every skip
+and the base address of Bnnn, marking each byte we reach as code. Along the way we keep track of I whenever it was set by
+Annn, so the bytes read by Dxyn (sprites), Fx33, Fx55 and Fx65 can be marked as data. Everything we never reached is left
+as unknown.
+
+From the code we build basic blocks (straight runs of instructions with a single entry and a single exit) and the control
+flow graph between them, and group the blocks reachable from every call target into subroutines. The result can be printed
+as a listing, exported as a Graphviz graph, or handed to BlockCompilingEngine.warmStart so the blocks are compiled before
+they are ever run.
+
+Bnnn jumps to nnn plus V0, which we can't know without running the program. Only nnn itself is followed, so code that is
+only reached through a Bnnn jump table can end up as unknown.
+ */
+public class Disassembler {
+
+	/* What we found at each address, a byte can be both the start of an instruction and read as data */
+	private static final byte CODE = 1;
+	private static final byte OPERAND = 2;
+	private static final byte DATA = 4;
+	private static final byte LEADER = 8;
+
+	private static final int ENTRY_POINT = Emulator.MEMORY_ROM_START_LOCATION;
+	private static final int UNKNOWN = -1;
+
+	private final byte[] memory;
+	private final int romEnd;
+
+	private final byte[] kinds;
+	private final Instruction[] instructions;
+	private final BasicBlock[] blocksByStart;
+	private final List < BasicBlock > blocks = new ArrayList <>();
+	private final List < Subroutine > subroutines = new ArrayList <>();
+	/* Addresses we reached that don't hold a valid opcode */
+	private final List < Integer > invalidAddresses = new ArrayList <>();
+
+	/* Pending paths, an address and what we know I to be when we get there */
+	private int[] pendingAddresses = new int[64];
+	private int[] pendingIndexes = new int[64];
+	private int pendingCount;
+
+	public static final class BasicBlock {
+
+		/* Address of the first instruction, and just past the last one */
+		public final int start;
+		public final int end;
+		/* Where control can go after the block, not counting calls */
+		final int[] successors;
+		/* Address of the subroutine the block ends by calling, or -1 */
+		public final int callTarget;
+		/* True if the block ends in a Bnnn whose real target depends on V0 */
+		public final boolean indirectJump;
+		public final boolean returns;
+
+		BasicBlock( int start, int end, int[] successors, int callTarget, boolean indirectJump, boolean returns ) {
+			this.start = start;
+			this.end = end;
+			this.successors = successors;
+			this.callTarget = callTarget;
+			this.indirectJump = indirectJump;
+			this.returns = returns;
+		}
+
+		public int getSuccessorCount() {
+			return successors.length;
+		}
+
+		public int getSuccessor( int index ) {
+			return successors[index];
+		}
+
+		public int getInstructionCount() {
+			return (end - start) / 2;
+		}
+	}
+
+	public static final class Subroutine {
+
+		public final int entry;
+		/* Every block reachable from the entry without following calls, in address order */
+		final List < BasicBlock > blocks;
+
+		Subroutine( int entry, List < BasicBlock > blocks ) {
+			this.entry = entry;
+			this.blocks = blocks;
+		}
+
+		public List < BasicBlock > getBlocks() {
+			return Collections.unmodifiableList( blocks );
+		}
+	}
+
+	/*
+	Analyse a ROM on its own, it is placed at 0x200 the same way the emulator loads it
+	 */
+	public Disassembler( ByteBuffer rom ) {
+		this( romImage( rom ), ENTRY_POINT + rom.remaining() );
+	}
+
+	/*
+	Analyse whatever is in the emulator's memory right now
+	 */
+	public Disassembler( Emulator emulator ) {
+		this( emulator.memory.clone(), lastNonZero( emulator.memory ) + 1 );
+	}
+
+	private Disassembler( byte[] memory, int romEnd ) {
+		this.memory = memory;
+		this.romEnd = romEnd;
+		kinds = new byte[memory.length];
+		instructions = new Instruction[memory.length];
+		blocksByStart = new BasicBlock[memory.length];
+
+		traceCode();
+		buildBlocks();
+		findSubroutines();
+	}
+
+	private static byte[] romImage( ByteBuffer rom ) {
+		if ( rom.remaining() > Emulator.MAXIMUM_ROM_SIZE ) {
+			throw new IllegalArgumentException( "ROM is too large to fit into Chip-8 RAM. It is " + rom.remaining() + " bytes when the limit is " + Emulator.MAXIMUM_ROM_SIZE );
+		}
+		byte[] memory = new byte[Emulator.MEMORY_ROM_START_LOCATION + Emulator.MAXIMUM_ROM_SIZE];
+		rom.duplicate().get( memory, ENTRY_POINT, rom.remaining() );
+		return memory;
+	}
+
+	private static int lastNonZero( byte[] memory ) {
+		int address = memory.length - 1;
+		while ( address > ENTRY_POINT && memory[address] == 0 ) {
+			address--;
+		}
+		return address;
+	}
+
+	public boolean isCode( int address ) {
+		return (kinds[address] & (CODE | OPERAND)) != 0;
+	}
+
+	/* True for the first byte of every instruction we reached */
+	public boolean isInstructionStart( int address ) {
+		return (kinds[address] & CODE) != 0;
+	}
+
+	public boolean isData( int address ) {
+		return (kinds[address] & DATA) != 0;
+	}
+
+	/* Every basic block in address order */
+	public List < BasicBlock > getBasicBlocks() {
+		return Collections.unmodifiableList( blocks );
+	}
+
+	/* The block starting at the address, or null */
+	public BasicBlock getBasicBlock( int address ) {
+		return address >= 0 && address < blocksByStart.length ? blocksByStart[address] : null;
+	}
+
+	/* Every call target in address order */
+	public List < Subroutine > getSubroutines() {
+		return Collections.unmodifiableList( subroutines );
+	}
+
+	public List < Integer > getInvalidAddresses() {
+		return Collections.unmodifiableList( invalidAddresses );
+	}
+
+	/*
+	Follow every path from the entry point, marking code as we go
+	 */
+	private void traceCode() {
+		markLeader( ENTRY_POINT );
+		push( ENTRY_POINT, UNKNOWN );
+
+		while ( pendingCount > 0 ) {
+			pendingCount--;
+			trace( pendingAddresses[pendingCount], pendingIndexes[pendingCount] );
+		}
+	}
+
+	private void trace( int address, int index ) {
+		while ( address >= 0 && address + 1 < memory.length && (kinds[address] & CODE) == 0 ) {
+			Instruction instruction;
+			try {
+				instruction = Emulator.decodeOpcode( ((memory[address] & 0xFF) << 8) | (memory[address + 1] & 0xFF) );
+			} catch ( Exception e ) {
+				invalidAddresses.add( address );
+				return;
+			}
+
+			instructions[address] = instruction;
+			kinds[address] |= CODE;
+			kinds[address + 1] |= OPERAND;
+
+			int next = address + 2;
+			int target = instruction.nnn & 0xFFF;
+			switch ( instruction.operation ) {
+				case JP:
+					markLeader( target );
+					push( target, index );
+					return;
+				case JP_V0_NNN:
+					markLeader( target );
+					push( target, UNKNOWN );
+					return;
+				case RET:
+				case EXIT:
+					return;
+				case CALL:
+					markLeader( target );
+					push( target, index );
+					markLeader( next );
+					/* The subroutine could have changed I */
+					index = UNKNOWN;
+					break;
+				case SE_VX_KK:
+				case SNE_VX_KK:
+				case SE_VX_VY:
+				case SNE_VX_VY:
+				case SKP_VX:
+				case SKNP_VX:
+					markLeader( next );
+					markLeader( next + 2 );
+					push( next + 2, index );
+					break;
+				case LD_I_NNN:
+					index = target;
+					break;
+				case ADD_I_VX:
+				case LD_F_VX:
+					index = UNKNOWN;
+					break;
+				case DRW_VX_VY_N:
+					markData( index, instruction.n );
+					break;
+				case LD_B_VX:
+					markData( index, 3 );
+					break;
+				case LD_I_VX:
+				case LD_VX_I:
+					markData( index, instruction.x + 1 );
+					break;
+				default:
+					break;
+			}
+			address = next;
+		}
+	}
+
+	private void push( int address, int index ) {
+		if ( pendingCount == pendingAddresses.length ) {
+			pendingAddresses = Arrays.copyOf( pendingAddresses, pendingCount * 2 );
+			pendingIndexes = Arrays.copyOf( pendingIndexes, pendingCount * 2 );
+		}
+		pendingAddresses[pendingCount] = address;
+		pendingIndexes[pendingCount] = index;
+		pendingCount++;
+	}
+
+	private void markLeader( int address ) {
+		if ( address >= 0 && address < kinds.length ) {
+			kinds[address] |= LEADER;
+		}
+	}
+
+	private void markData( int index, int length ) {
+		if ( index == UNKNOWN ) {
+			return;
+		}
+		for ( int address = index; address < index + length && address < kinds.length; address++ ) {
+			kinds[address] |= DATA;
+		}
+	}
+
+	/*
+	Cut the code into basic blocks at every leader and after every instruction that can go somewhere other than the next one
+	 */
+	private void buildBlocks() {
+		for ( int start = 0; start < memory.length; start++ ) {
+			if ( (kinds[start] & CODE) == 0 || (kinds[start] & LEADER) == 0 ) {
+				continue;
+			}
+
+			int address = start;
+			while ( true ) {
+				Instruction instruction = instructions[address];
+				int next = address + 2;
+				int target = instruction.nnn & 0xFFF;
+
+				switch ( instruction.operation ) {
+					case JP:
+						addBlock( start, next, new int[] { target }, UNKNOWN, false, false );
+						break;
+					case JP_V0_NNN:
+						addBlock( start, next, new int[] { target }, UNKNOWN, true, false );
+						break;
+					case RET:
+						addBlock( start, next, new int[0], UNKNOWN, false, true );
+						break;
+					case EXIT:
+						addBlock( start, next, new int[0], UNKNOWN, false, false );
+						break;
+					case CALL:
+						addBlock( start, next, successorsOf( next ), target, false, false );
+						break;
+					case SE_VX_KK:
+					case SNE_VX_KK:
+					case SE_VX_VY:
+					case SNE_VX_VY:
+					case SKP_VX:
+					case SKNP_VX:
+						addBlock( start, next, successorsOf( next, next + 2 ), UNKNOWN, false, false );
+						break;
+					default:
+						if ( next < memory.length && (kinds[next] & CODE) != 0 && (kinds[next] & LEADER) == 0 ) {
+							address = next;
+							continue;
+						}
+						addBlock( start, next, successorsOf( next ), UNKNOWN, false, false );
+						break;
+				}
+				break;
+			}
+		}
+	}
+
+	/* Only the fall through addresses that we actually traced as code, an invalid opcode ends the path */
+	private int[] successorsOf( int... addresses ) {
+		int count = 0;
+		int[] successors = new int[addresses.length];
+		for ( int address : addresses ) {
+			if ( address < memory.length && (kinds[address] & CODE) != 0 ) {
+				successors[count++] = address;
+			}
+		}
+		return count == addresses.length ? successors : Arrays.copyOf( successors, count );
+	}
+
+	private void addBlock( int start, int end, int[] successors, int callTarget, boolean indirectJump, boolean returns ) {
+		BasicBlock block = new BasicBlock( start, end, successors, callTarget, indirectJump, returns );
+		blocks.add( block );
+		blocksByStart[start] = block;
+	}
+
+	/*
+	A subroutine is every block reachable from a call target, stepping over calls to other subroutines
+	 */
+	private void findSubroutines() {
+		boolean[] isEntry = new boolean[memory.length];
+		for ( BasicBlock block : blocks ) {
+			if ( block.callTarget != UNKNOWN && blocksByStart[block.callTarget] != null ) {
+				isEntry[block.callTarget] = true;
+			}
+		}
+
+		boolean[] visited = new boolean[memory.length];
+		int[] pending = new int[blocks.size()];
+		for ( int entry = 0; entry < memory.length; entry++ ) {
+			if ( !isEntry[entry] ) {
+				continue;
+			}
+
+			List < BasicBlock > reachable = new ArrayList <>();
+			Arrays.fill( visited, false );
+			int pendingBlocks = 0;
+			pending[pendingBlocks++] = entry;
+			visited[entry] = true;
+
+			while ( pendingBlocks > 0 ) {
+				BasicBlock block = blocksByStart[pending[--pendingBlocks]];
+				reachable.add( block );
+				for ( int successor : block.successors ) {
+					if ( blocksByStart[successor] != null && !visited[successor] ) {
+						visited[successor] = true;
+						pending[pendingBlocks++] = successor;
+					}
+				}
+			}
+
+			Collections.sort( reachable, new Comparator < BasicBlock >() {
+				@Override
+				public int compare( BasicBlock first, BasicBlock second ) {
+					return first.start - second.start;
+				}
+			} );
+			subroutines.add( new Subroutine( entry, reachable ) );
+		}
+	}
+
+	/*
+	Assembly listing of the ROM. Code is shown as instructions with a label at every block, sprite data is drawn out with one
+	# per lit pixel, anything else is dumped as plain bytes
+	 */
+	public String toListing() {
+		StringBuilder listing = new StringBuilder();
+		boolean[] isEntry = new boolean[memory.length];
+		for ( Subroutine subroutine : subroutines ) {
+			isEntry[subroutine.entry] = true;
+		}
+
+		int address = ENTRY_POINT;
+		while ( address < romEnd ) {
+			if ( (kinds[address] & CODE) != 0 ) {
+				if ( isEntry[address] ) {
+					listing.append( '\n' ).append( "sub_" ).append( hex( address, 3 ) ).append( ":\n" );
+				} else if ( blocksByStart[address] != null ) {
+					listing.append( "loc_" ).append( hex( address, 3 ) ).append( ":\n" );
+				}
+				Instruction instruction = instructions[address];
+				listing.append( "    " ).append( hex( address, 3 ) ).append( "  " ).append( hex( instruction.opcode, 4 ) ).append( "  " );
+				listing.append( mnemonic( instruction ) ).append( '\n' );
+				address += 2;
+			} else if ( (kinds[address] & OPERAND) != 0 && (kinds[address] & DATA) == 0 ) {
+				/* The second half of an instruction that starts at an odd address and was already printed with it */
+				address++;
+			} else {
+				int value = memory[address] & 0xFF;
+				listing.append( "    " ).append( hex( address, 3 ) ).append( "  " ).append( hex( value, 2 ) ).append( "    db " ).append( hex( value, 2 ) );
+				if ( (kinds[address] & DATA) != 0 ) {
+					listing.append( "  ; " );
+					for ( int bit = 7; bit >= 0; bit-- ) {
+						listing.append( ((value >> bit) & 1) != 0 ? '#' : '.' );
+					}
+				}
+				listing.append( '\n' );
+				address++;
+			}
+		}
+		return listing.toString();
+	}
+
+	/*
+	The control flow graph in Graphviz dot format, one node per basic block. Calls are drawn dashed
+	 */
+	public String toDot() {
+		StringBuilder dot = new StringBuilder( "digraph chip8 {\n    node [shape=box fontname=monospace];\n" );
+		for ( BasicBlock block : blocks ) {
+			dot.append( "    b" ).append( hex( block.start, 3 ) ).append( " [label=\"" ).append( hex( block.start, 3 ) ).append( ":\\l" );
+			for ( int address = block.start; address < block.end; address += 2 ) {
+				dot.append( mnemonic( instructions[address] ) ).append( "\\l" );
+			}
+			dot.append( "\"];\n" );
+
+			for ( int successor : block.successors ) {
+				if ( blocksByStart[successor] != null ) {
+					dot.append( "    b" ).append( hex( block.start, 3 ) ).append( " -> b" ).append( hex( successor, 3 ) ).append( ";\n" );
+				}
+			}
+			if ( block.callTarget != UNKNOWN && blocksByStart[block.callTarget] != null ) {
+				dot.append( "    b" ).append( hex( block.start, 3 ) ).append( " -> b" ).append( hex( block.callTarget, 3 ) ).append( " [style=dashed];\n" );
+			}
+		}
+		return dot.append( "}\n" ).toString();
+	}
+
+	/*
+	The usual CHIP-8 assembly for an instruction
+	 */
+	static String mnemonic( Instruction instruction ) {
+		int x = instruction.x;
+		int y = instruction.y;
+		String kk = hex( instruction.kk & 0xFF, 2 );
+		String nnn = hex( instruction.nnn & 0xFFF, 3 );
+
+		switch ( instruction.operation ) {
+			case NOP:
+				return "NOP";
+			case CLS:
+				return "CLS";
+			case RET:
+				return "RET";
+			case SCD:
+				return "SCD " + instruction.n;
+			case SCR:
+				return "SCR";
+			case SCL:
+				return "SCL";
+			case EXIT:
+				return "EXIT";
+			case LOW:
+				return "LOW";
+			case HIGH:
+				return "HIGH";
+			case JP:
+				return "JP " + nnn;
+			case CALL:
+				return "CALL " + nnn;
+			case SE_VX_KK:
+				return "SE V" + hex( x, 1 ) + ", " + kk;
+			case SNE_VX_KK:
+				return "SNE V" + hex( x, 1 ) + ", " + kk;
+			case SE_VX_VY:
+				return "SE V" + hex( x, 1 ) + ", V" + hex( y, 1 );
+			case LD_VX_KK:
+				return "LD V" + hex( x, 1 ) + ", " + kk;
+			case ADD_VX_KK:
+				return "ADD V" + hex( x, 1 ) + ", " + kk;
+			case LD_VX_VY:
+				return "LD V" + hex( x, 1 ) + ", V" + hex( y, 1 );
+			case OR_VX_VY:
+				return "OR V" + hex( x, 1 ) + ", V" + hex( y, 1 );
+			case AND_VX_VY:
+				return "AND V" + hex( x, 1 ) + ", V" + hex( y, 1 );
+			case XOR_VX_VY:
+				return "XOR V" + hex( x, 1 ) + ", V" + hex( y, 1 );
+			case ADD_VX_VY:
+				return "ADD V" + hex( x, 1 ) + ", V" + hex( y, 1 );
+			case SUB_VX_VY:
+				return "SUB V" + hex( x, 1 ) + ", V" + hex( y, 1 );
+			case SHR_VX:
+				return "SHR V" + hex( x, 1 );
+			case SUBN_VX_VY:
+				return "SUBN V" + hex( x, 1 ) + ", V" + hex( y, 1 );
+			case SHL_VX:
+				return "SHL V" + hex( x, 1 );
+			case SNE_VX_VY:
+				return "SNE V" + hex( x, 1 ) + ", V" + hex( y, 1 );
+			case LD_I_NNN:
+				return "LD I, " + nnn;
+			case JP_V0_NNN:
+				return "JP V0, " + nnn;
+			case RND_VX_KK:
+				return "RND V" + hex( x, 1 ) + ", " + kk;
+			case DRW_VX_VY_N:
+				return "DRW V" + hex( x, 1 ) + ", V" + hex( y, 1 ) + ", " + instruction.n;
+			case SKP_VX:
+				return "SKP V" + hex( x, 1 );
+			case SKNP_VX:
+				return "SKNP V" + hex( x, 1 );
+			case LD_VX_DT:
+				return "LD V" + hex( x, 1 ) + ", DT";
+			case LD_VX_K:
+				return "LD V" + hex( x, 1 ) + ", K";
+			case LD_DT_VX:
+				return "LD DT, V" + hex( x, 1 );
+			case LD_ST_VX:
+				return "LD ST, V" + hex( x, 1 );
+			case ADD_I_VX:
+				return "ADD I, V" + hex( x, 1 );
+			case LD_F_VX:
+				return "LD F, V" + hex( x, 1 );
+			case LD_B_VX:
+				return "LD B, V" + hex( x, 1 );
+			case LD_I_VX:
+				return "LD [I], V" + hex( x, 1 );
+			case LD_VX_I:
+				return "LD V" + hex( x, 1 ) + ", [I]";
+			default:
+				return "??? " + hex( instruction.opcode, 4 );
+		}
+	}
+
+	private static String hex( int value, int digits ) {
+		String hex = Integer.toHexString( value ).toUpperCase();
+		while ( hex.length() < digits ) {
+			hex = "0" + hex;
+		}
+		return hex;
+	}
+
+}
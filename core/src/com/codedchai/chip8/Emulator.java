@@ -1,25 +1,21 @@
 package com.codedchai.chip8;
 
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.time.Duration;
-import java.time.Instant;
-import java.util.Random;
-import java.util.concurrent.TimeUnit;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-
-public class Emulator implements Runnable {
-	Logger logger = Logger.getLogger( Emulator.class.getName() );
-
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/*
+A complete CHIP-8 machine. Nothing in here knows about threads, timing or libGDX, whoever owns the emulator decides when
+cycles run, either through step, runFrames and runUntil directly or through an EmulatorRunner on its own thread
+ */
+public class Emulator {
 	/* Speed of our CPU in Hz */
-	private final int CPU_FREQUENCY = 500;
+	public static final int CPU_FREQUENCY = 500;
 	/* Speed of our timers in Hz */
-	private final int TIMER_FREQUENCY = 60;
+	public static final int TIMER_FREQUENCY = 60;
 	/* How many bytes of memory we have (0xFFF) */
 	private final int MAX_MEMORY = 4096;
-	/* The total number of pixels we can display (64 * 32) */
-	private final int NUM_PIXELS = 2048;
 	/* We have 16 total registers that we can write to, each one being one byte */
 	private final int NUM_V_REGISTERS = 16;
 	/* How deep our call stack will go. This is typically anywhere from 16-48, I'm going to be generous and make it 48 */
@@ -35,27 +31,72 @@ public class Emulator implements Runnable {
 	/* Where we begin in the stack */
 	private final short STACK_POINTER_START = 0;
 	/* Where we can begin to store the ROM into memory */
-	private final int MEMORY_ROM_START_LOCATION = 512;
+	static final int MEMORY_ROM_START_LOCATION = 512;
 	/* What our delay timer should start at */
 	private final int DELAY_TIMER_START = 0;
 	/* What our sound timer should start at */
 	private final int SOUND_TIMER_START = 0;
+	/* The largest ROM that fits between the start of the ROM and the end of memory */
+	public static final int MAXIMUM_ROM_SIZE = 3584;
+	/* How far 00FB and 00FC scroll the display */
+	private static final int SCROLL_PIXELS = 4;
+	/* Dxy0 sprites at high resolution are 16x16 */
+	private static final int WIDE_SPRITE_SIZE = 16;
+	/* Steps shorter than this don't look for an idle loop, there would hardly be anything to skip */
+	private static final int MIN_IDLE_SKIP_CYCLES = 4;
 
 	int opcode;
-	private short programCounter, indexRegister, stackPointer, delayTimer, soundTimer;
-	volatile private int[] pixels;
-	private byte[] vRegisters, memory, keys;
+	short programCounter, indexRegister, stackPointer, delayTimer, soundTimer;
+	private FrameBuffer frameBuffer;
+	byte[] vRegisters, memory, keys;
 
 	/* Used to store address that should be returned when subroutine is finished */
-	private short[] callStack;
+	short[] callStack;
+
+	/* One decoded instruction per address in memory, null until that address is executed or after it is written to */
+	private Instruction[] decodeCache;
+	/* Bumped every time a write lands on an address that was already decoded, so anything built on top of decoded code knows to rebuild */
+	int codeWriteCount;
+
+	/* What actually runs our cycles, the plain interpreter unless something faster is swapped in */
+	private ExecutionEngine executionEngine = new InterpreterEngine();
+
+	/* true if the display changed since the last frame was published */
+	boolean drawFlag;
+
+	/* Where finished frames are handed over to whoever is rendering them. Created the first time a renderer asks for it, so
+	headless machines don't carry three spare displays and a latency histogram around */
+	private volatile FrameExchange frameExchange;
+
+	/* Key changes from other threads, applied at the start of every step. Created the first time someone asks for it */
+	private volatile KeyEventQueue keyEvents;
+	/* When the oldest key event since the last published frame was received, 0 if there wasn't one */
+	private long pendingInputNanos;
+
+	/* Off unless someone turns it on, see Tracer */
+	private final Tracer tracer = new Tracer();
 
-	/* true if we are ready to draw a new frame */
-	volatile private boolean drawFlag;
+	/* Off unless someone turns it on, see Profiler */
+	private final Profiler profiler = new Profiler( this );
 
-	Random random;
+	/* How many cycles we have run since the machine was started */
+	long cycleCount;
+	/* How many Dxyn instructions we have run since the machine was started */
+	long spriteDrawCount;
+	/* How many cycles make up one frame, in between two ticks of the timers */
+	private int cyclesPerFrame = CPU_FREQUENCY / TIMER_FREQUENCY;
 
-	/* Bytes defined to draw out the hexadecimal numbers as sprites */
-	short hexadecimalFontSprites[] =
+	XorShiftRandom random;
+
+	/* Told about every key change and timer tick while a session is being recorded, see InputRecorder */
+	private InputRecorder inputRecorder;
+	/* Gets every published frame while the display is being recorded, see FrameRecorder */
+	private FrameRecorder frameRecorder;
+	/* Set while a debugger is attached, see Debugger */
+	private Debugger debugger;
+
+	/* Bytes defined to draw out the hexadecimal numbers as sprites, shared by every emulator and copied into memory on startup */
+	static final short hexadecimalFontSprites[] =
 			{
 					0xF0, 0x90, 0x90, 0x90, 0xF0, // 0
 					0x20, 0x60, 0x20, 0x20, 0x70, // 1
@@ -75,33 +116,302 @@ public class Emulator implements Runnable {
 					0xF0, 0x80, 0xF0, 0x80, 0x80  // F
 			};
 
-	Instant timeOfLastCompute = null;
-
+	/*
+	An empty machine with only the font loaded, nothing to execute until a ROM is loaded
+	 */
 	public Emulator() {
 		initialize();
 	}
 
-	public int[] getDisplayPixels() {
-		return pixels;
+	public Emulator( byte[] rom ) {
+		this( ByteBuffer.wrap( rom ) );
+	}
+
+	/*
+	Load the remaining bytes of the buffer as our ROM, the buffer's position is left alone
+	 */
+	public Emulator( ByteBuffer rom ) {
+		initialize();
+		loadROM( rom );
+	}
+
+	/*
+	Copy a ROM into memory at 0x200
+	 */
+	public void loadROM( ByteBuffer rom ) {
+		if ( rom.remaining() > MAXIMUM_ROM_SIZE ) {
+			throw new IllegalArgumentException( "ROM is too large to fit into Chip-8 RAM. It is " + rom.remaining() + " bytes when the limit is " + MAXIMUM_ROM_SIZE );
+		}
+
+		int size = rom.remaining();
+		rom.duplicate().get( memory, MEMORY_ROM_START_LOCATION, size );
+		romLoaded( size );
+	}
+
+	/*
+	Load a ROM straight from a file, see ROM.loadROM
+	 */
+	public void loadROM( Path romPath ) throws IOException {
+		ROM.loadROM( this, romPath );
+	}
+
+	/*
+	Called once a ROM of the given size has been copied in at 0x200. Whatever a previous, larger ROM left behind it is cleared
+	so switching ROMs never leaves stray code in memory
+	 */
+	void romLoaded( int size ) {
+		Arrays.fill( memory, MEMORY_ROM_START_LOCATION + size, memory.length, (byte) 0 );
+		invalidateDecodeCache();
+	}
+
+	/*
+	Write a snapshot of the whole machine into the buffer at its position, see SaveState for the format
+	 */
+	public void saveState( ByteBuffer buffer ) {
+		SaveState.write( this, buffer );
+	}
+
+	/*
+	Restore the whole machine from a snapshot at the buffer's position, see SaveState for the format
+	 */
+	public void loadState( ByteBuffer buffer ) {
+		SaveState.read( this, buffer );
+	}
+
+	/*
+	Run the given number of cycles. If the ROM is sitting in a loop waiting for a key or the delay timer, the cycles it would
+	spend going round in it are skipped, see IdleLoopDetector
+	 */
+	public void step( int cycles ) throws Exception {
+		KeyEventQueue queue = keyEvents;
+		if ( queue != null ) {
+			long inputNanos = queue.drain( this );
+			if ( inputNanos != 0 && pendingInputNanos == 0 ) {
+				pendingInputNanos = inputNanos;
+			}
+		}
+
+		int cyclesUntilIdle = cycles >= MIN_IDLE_SKIP_CYCLES ? IdleLoopDetector.cyclesUntilIdle( this ) : IdleLoopDetector.NOT_IDLE;
+		if ( cyclesUntilIdle == IdleLoopDetector.NOT_IDLE ) {
+			executionEngine.execute( this, cycles );
+		} else {
+			executionEngine.execute( this, cyclesUntilIdle );
+			int skipped = IdleLoopDetector.skip( this, cycles - cyclesUntilIdle );
+			executionEngine.execute( this, cycles - cyclesUntilIdle - skipped );
+		}
+		cycleCount += cycles;
+	}
+
+	/*
+	Run whole frames. Each frame is cyclesPerFrame cycles followed by one tick of the timers, and then the finished frame is
+	handed over to the frame exchange
+	 */
+	public void runFrames( int frames ) throws Exception {
+		for ( int frame = 0; frame < frames; frame++ ) {
+			step( cyclesPerFrame );
+			tickTimers();
+			publishFrame();
+		}
+	}
+
+	/*
+	Run one cycle at a time until the condition is met or maxCycles have run. Returns how many cycles were run
+	 */
+	public long runUntil( EmulatorCondition condition, long maxCycles ) throws Exception {
+		long cyclesRun = 0;
+		while ( cyclesRun < maxCycles && !condition.isMet( this ) ) {
+			step( 1 );
+			cyclesRun++;
+		}
+		return cyclesRun;
+	}
+
+	public long runUntil( EmulatorCondition condition ) throws Exception {
+		return runUntil( condition, Long.MAX_VALUE );
+	}
+
+	/*
+	Count the delay and sound timers down by one, this should happen TIMER_FREQUENCY times a second
+	 */
+	public void tickTimers() {
+		if ( inputRecorder != null ) {
+			inputRecorder.recordTimerTick( cycleCount );
+		}
+		if ( profiler.isEnabled() ) {
+			profiler.countFrame( drawFlag );
+		}
+		if ( delayTimer > 0 ) {
+			delayTimer--;
+		}
+		if ( soundTimer > 0 ) {
+			soundTimer--;
+		}
+	}
+
+	/*
+	Press or release a key right away. Only call this from the thread running the emulator, anything else should send its keys
+	through getKeyEvents()
+	 */
+	public void setKey( int key, boolean pressed ) {
+		if ( inputRecorder != null && (keys[key] != 0) != pressed ) {
+			inputRecorder.recordKey( cycleCount, key, pressed );
+		}
+		keys[key] = (byte) (pressed ? 1 : 0);
+	}
+
+	public boolean isKeyPressed( int key ) {
+		return keys[key] != 0;
+	}
+
+	/* Unsigned value of register Vx */
+	public int getRegister( int register ) {
+		return vRegisters[register] & 0xFF;
+	}
+
+	public int getProgramCounter() {
+		return programCounter;
+	}
+
+	public int getIndexRegister() {
+		return indexRegister;
+	}
+
+	public int getStackPointer() {
+		return stackPointer;
+	}
+
+	public int getDelayTimer() {
+		return delayTimer;
+	}
+
+	public int getSoundTimer() {
+		return soundTimer;
+	}
+
+	/* The opcode that was executed last */
+	public int getOpcode() {
+		return opcode;
+	}
+
+	public byte readMemory( int address ) {
+		return memory[address];
+	}
+
+	public long getCycleCount() {
+		return cycleCount;
+	}
+
+	public long getSpriteDrawCount() {
+		return spriteDrawCount;
+	}
+
+	public int getCyclesPerFrame() {
+		return cyclesPerFrame;
+	}
+
+	public void setCyclesPerFrame( int cyclesPerFrame ) {
+		this.cyclesPerFrame = cyclesPerFrame;
+	}
+
+	/*
+	Seed the random number generator behind Cxkk, two machines with the same seed, ROM and inputs run exactly the same
+	 */
+	public void setRandomSeed( long seed ) {
+		random = new XorShiftRandom( seed );
+	}
+
+	public InputRecorder getInputRecorder() {
+		return inputRecorder;
+	}
+
+	void setInputRecorder( InputRecorder inputRecorder ) {
+		this.inputRecorder = inputRecorder;
+	}
+
+	public FrameRecorder getFrameRecorder() {
+		return frameRecorder;
+	}
+
+	void setFrameRecorder( FrameRecorder frameRecorder ) {
+		this.frameRecorder = frameRecorder;
+	}
+
+	/* The attached debugger, null if there isn't one */
+	public Debugger getDebugger() {
+		return debugger;
+	}
+
+	void setDebugger( Debugger debugger ) {
+		this.debugger = debugger;
+	}
+
+	public Tracer getTracer() {
+		return tracer;
+	}
+
+	public Profiler getProfiler() {
+		return profiler;
 	}
 
-	public boolean drawFlag() {
-		return drawFlag;
+	/* true while the ROM has SUPER-CHIP's 128x64 display switched on */
+	public boolean isHighResolution() {
+		return frameBuffer.getWidth() == FrameBuffer.HIRES_WIDTH;
+	}
+
+	public FrameBuffer getFrameBuffer() {
+		return frameBuffer;
+	}
+
+	/*
+	Where the renderer picks up finished frames. Frames are only handed over once this has been asked for, the display as it is
+	then goes over with the next publishFrame whether or not anything was drawn
+	 */
+	public FrameExchange getFrameExchange() {
+		FrameExchange exchange = frameExchange;
+		if ( exchange == null ) {
+			synchronized ( this ) {
+				exchange = frameExchange;
+				if ( exchange == null ) {
+					exchange = new FrameExchange();
+					frameExchange = exchange;
+				}
+			}
+		}
+		return exchange;
 	}
 
-	@Override
-	public void run() {
-		timeOfLastCompute = Instant.now();
+	/* The frame exchange if a renderer has asked for one, without creating it */
+	FrameExchange peekFrameExchange() {
+		return frameExchange;
+	}
 
-		try {
-			update();
-		} catch ( Exception e ) {
-			e.printStackTrace();
+	/*
+	Where other threads should send key changes, setKey is only safe from the thread running the emulator
+	 */
+	public KeyEventQueue getKeyEvents() {
+		KeyEventQueue queue = keyEvents;
+		if ( queue == null ) {
+			synchronized ( this ) {
+				queue = keyEvents;
+				if ( queue == null ) {
+					queue = new KeyEventQueue();
+					keyEvents = queue;
+				}
+			}
 		}
+		return queue;
+	}
+
+	public ExecutionEngine getExecutionEngine() {
+		return executionEngine;
+	}
+
+	public void setExecutionEngine( ExecutionEngine executionEngine ) {
+		this.executionEngine = executionEngine;
 	}
 
 	/*
-	Setup default values for everything, load ROM into memory, there are 16 vRegisters, 2048 pixels (64*32), 16 levels in the stack, and 4096 max memory, and program counter starts at 0x200
+	Setup default values for everything, there are 16 vRegisters, 2048 pixels (64*32) until a ROM asks for high resolution, 16 levels in the stack, and 4096 max memory, and program counter starts at 0x200
 	 */
 	private void initialize() {
 		programCounter = PROGRAM_COUNTER_START_LOCATION;
@@ -111,132 +421,174 @@ public class Emulator implements Runnable {
 		delayTimer = DELAY_TIMER_START;
 		soundTimer = SOUND_TIMER_START;
 
-		pixels = new int[NUM_PIXELS];
+		frameBuffer = new FrameBuffer();
 
 		vRegisters = new byte[NUM_V_REGISTERS];
 		memory = new byte[MAX_MEMORY];
 		keys = new byte[NUM_KEYS];
 		callStack = new short[MAX_CALL_STACK_LEVEL];
+		decodeCache = new Instruction[MAX_MEMORY];
 
 		for ( int fontMemoryIndex = 0; fontMemoryIndex < hexadecimalFontSprites.length; fontMemoryIndex++ ) {
 			memory[fontMemoryIndex] = (byte) hexadecimalFontSprites[fontMemoryIndex];
 		}
 
-		try {
-
-			byte[] rom = Files.readAllBytes( Paths.get( "C:\\Users\\Guard\\Documents\\libGDXChip8\\core\\assets\\roms\\BC_test.ch8" ) );
-			//List < Byte > rom = ROM.loadROM( Paths.get( "C:\\Users\\Guard\\Documents\\libGDXChip8\\core\\assets\\roms\\TETRIS" ) );
-
-			for ( int memoryIndex = MEMORY_ROM_START_LOCATION; memoryIndex < MAX_MEMORY && (memoryIndex - MEMORY_ROM_START_LOCATION) < rom.length; memoryIndex++ ) {
-				memory[memoryIndex] = rom[memoryIndex - MEMORY_ROM_START_LOCATION];
-			}
-
-			System.out.println( rom.length );
-		} catch ( Exception e ) {
-			e.printStackTrace();
-			System.err.println( "Failed to load ROM" );
-		}
-
 		drawFlag = true;
 
-		random = new Random();
+		random = new XorShiftRandom();
 	}
 
 	/*
-	Our main loop
+	Forget every decoded instruction, used when memory was replaced behind writeMemory's back
 	 */
-	private void update() throws Exception {
-
-		while ( true ) {
-			Instant currentComputeTime = Instant.now();
-			double deltaTime = (double) Duration.between( timeOfLastCompute, currentComputeTime ).toNanos() / 1000000000;
+	void invalidateDecodeCache() {
+		Arrays.fill( decodeCache, null );
+		codeWriteCount++;
+	}
 
-			//System.out.println( Math.round( deltaTime * CPU_FREQUENCY ) );
+	/*
+	Hand the display over to the renderer if anything was drawn or cleared since the last time we did, or if the renderer
+	hasn't had a frame from us yet
+	 */
+	void publishFrame() {
+		FrameExchange exchange = frameExchange;
+		if ( exchange != null && (drawFlag || !exchange.hasPublished()) ) {
+			exchange.publish( frameBuffer, pendingInputNanos );
+			pendingInputNanos = 0;
+		}
+		if ( drawFlag ) {
+			if ( frameRecorder != null ) {
+				frameRecorder.record( frameBuffer, cycleCount );
+			}
+			drawFlag = false;
+		}
+	}
 
-			timeOfLastCompute = Instant.now();
+	/*
+	This is each step of our processor, basically each tick
+	 */
+	void emulateCycle() throws Exception {
+		Instruction instruction = fetchInstruction();
+		opcode = instruction.opcode;
+		if ( tracer.isDebugEnabled() ) {
+			tracer.record( Tracer.EXECUTE_OPCODE, programCounter, opcode, 0 );
+		}
+		if ( profiler.isEnabled() ) {
+			profiler.countInstruction( programCounter, instruction.operation, stackPointer );
+		}
+		instruction.operation.execute( this, instruction );
+	}
 
-			for ( int i = 0; i < Math.round( deltaTime * CPU_FREQUENCY ); i++ ) {
-				emulateCycle();
-			}
+	/*
+	Grab the decoded instruction at the program counter, every address is decoded once and then served from the decode cache.
+	Most ROMs only ever run from even addresses, but some (David Winter's among them) jump to an odd one straight away
+	 */
+	Instruction fetchInstruction() throws Exception {
+		return instructionAt( programCounter );
+	}
 
-			TimeUnit.MILLISECONDS.sleep( 10 );
+	Instruction instructionAt( int address ) throws Exception {
+		Instruction instruction = decodeCache[address];
+		if ( instruction == null ) {
+			instruction = decodeOpcode( readOpcode( address ) );
+			decodeCache[address] = instruction;
 		}
+		return instruction;
+	}
+
+	int readOpcode( int address ) {
+		return (((memory[address] & 0xFFFF) << 8) & 0xFFFF) | (memory[address + 1] & 0xFF);
 	}
 
 	/*
-	This is each step of our processor, basically each tick
+	Write a byte into memory. Anything that writes into memory must go through here so that the decoded instructions covering
+	this address, the one starting here and the one starting the byte before, get thrown away and are decoded again the next
+	time they are executed
 	 */
-	private void emulateCycle() throws Exception {
-		opcode = (((memory[programCounter] & 0xFFFF) << 8) & 0xFFFF) | (memory[programCounter + 1] & 0xFF);
-		System.out.println( "Executing opcode: " + Integer.toHexString( opcode ) );
-		executeOpcode();
+	void writeMemory( int address, byte value ) {
+		memory[address] = value;
+		if ( decodeCache[address] != null ) {
+			decodeCache[address] = null;
+			codeWriteCount++;
+		}
+		if ( address > 0 && decodeCache[address - 1] != null ) {
+			decodeCache[address - 1] = null;
+			codeWriteCount++;
+		}
 	}
 
 	/*
-	Properly select and execute our opcode
+	Properly select the operation for our opcode
 	 */
-	private void executeOpcode() throws Exception {
+	static Instruction decodeOpcode( int opcode ) throws Exception {
 
 		switch ( opcode & 0xF000 ) {
 			/* Begin case 0x0000 */
 			case 0x0000:
 				switch ( opcode & 0x00FF ) {
 					case 0x0000:
-						programCounter += 2; // null operation, don't do anything
-						break;
+						return new Instruction( opcode, Operation.NOP ); // null operation, don't do anything
 
 					case 0x00E0:
-						cls(); /* 00E0 */
-						break;
+						return new Instruction( opcode, Operation.CLS ); /* 00E0 */
 					case 0x00EE:
-						ret(); /* 00EE */
-						break;
+						return new Instruction( opcode, Operation.RET ); /* 00EE */
+
+					case 0x00FB:
+						return new Instruction( opcode, Operation.SCR ); /* 00FB */
+
+					case 0x00FC:
+						return new Instruction( opcode, Operation.SCL ); /* 00FC */
+
+					case 0x00FD:
+						return new Instruction( opcode, Operation.EXIT ); /* 00FD */
+
+					case 0x00FE:
+						return new Instruction( opcode, Operation.LOW ); /* 00FE */
+
+					case 0x00FF:
+						return new Instruction( opcode, Operation.HIGH ); /* 00FF */
 					default:
+						if ( (opcode & 0x00F0) == 0x00C0 ) {
+							return new Instruction( opcode, Operation.SCD ); /* 00Cn */
+						}
 						throw new Exception( "Unknown opcode: " + Integer.toHexString( opcode ) + " in [0x0000]" );
 				}
-				break;
 			/* End case 0x0000 */
 
 			/* Begin case 0x1000 */
 			case 0x1000:
-				jmp(); /* 0x1NNN */
-				break;
+				return new Instruction( opcode, Operation.JP ); /* 0x1NNN */
 			/* End case 0x1000 */
 
 			/* Begin case 0x2000 */
 			case 0x2000:
-				call(); /* 0x2NNN */
-				break;
+				return new Instruction( opcode, Operation.CALL ); /* 0x2NNN */
 			/* End case 0x2000 */
 
 			/* Begin case 0x3000 */
 			case 0x3000:
-				SEVxIsKK(); /* 3xkk */
-				break;
+				return new Instruction( opcode, Operation.SE_VX_KK ); /* 3xkk */
 			/* End case 0x3000 */
 
 			/* Begin case 0x4000 */
 			case 0x4000:
-				SNEVxIsNotKK(); /* 4xkk */
-				break;
+				return new Instruction( opcode, Operation.SNE_VX_KK ); /* 4xkk */
 			/* End case 0x4000 */
 
 			/* Begin case 0x5000 */
 			case 0x5000:
-				SEVxIsVy(); /* 5xy0 */
-				break;
+				return new Instruction( opcode, Operation.SE_VX_VY ); /* 5xy0 */
 			/* End case 0x5000 */
 
 			/* Begin case 0x6000 */
 			case 0x6000:
-				loadKKToVx(); /* 6xkk */
-				break;
+				return new Instruction( opcode, Operation.LD_VX_KK ); /* 6xkk */
 			/* End case 0x6000 */
 
 			/* Begin case 0x7000 */
 			case 0x7000:
-				addVxKK(); /* 7xkk */
-				break;
+				return new Instruction( opcode, Operation.ADD_VX_KK ); /* 7xkk */
 			/* End case 0x7000 */
 
 			/* Begin case 0x6000 */
@@ -244,136 +596,108 @@ public class Emulator implements Runnable {
 
 				switch ( opcode & 0x000F ) {
 					case 0x0000:
-						loadVxVy(); /* 8xy0*/
-						break;
+						return new Instruction( opcode, Operation.LD_VX_VY ); /* 8xy0*/
 
 					case 0x0001:
-						orVxVy(); /* 8xy1 */
-						break;
+						return new Instruction( opcode, Operation.OR_VX_VY ); /* 8xy1 */
 
 					case 0x0002:
-						andVxVy(); /* 8xy2 */
-						break;
+						return new Instruction( opcode, Operation.AND_VX_VY ); /* 8xy2 */
 
 					case 0x0003:
-						xorVxVy(); /* 8xy3 */
-						break;
+						return new Instruction( opcode, Operation.XOR_VX_VY ); /* 8xy3 */
 
 					case 0x0004:
-						addVxVy(); /* 8xy4 */
-						break;
+						return new Instruction( opcode, Operation.ADD_VX_VY ); /* 8xy4 */
 
 					case 0x0005:
-						subVxVy(); /* 8xy5 */
-						break;
+						return new Instruction( opcode, Operation.SUB_VX_VY ); /* 8xy5 */
 
 					case 0x0006:
-						shiftRightVx(); /* 8xy6 */
-						break;
+						return new Instruction( opcode, Operation.SHR_VX ); /* 8xy6 */
 
 					case 0x0007:
-						subnVxVy(); /* 8xy7 */
-						break;
+						return new Instruction( opcode, Operation.SUBN_VX_VY ); /* 8xy7 */
 
 					case 0x000E:
-						shiftLeftVx(); /* 8xyE */
-						break;
+						return new Instruction( opcode, Operation.SHL_VX ); /* 8xyE */
 
 					default:
 						throw new Exception( "Unknown opcode: " + Integer.toHexString( opcode ) + " in [0x8000]" );
 				}
-				break;
 			/* End case 0x8000 */
 
 			/* Begin case 0x9000 */
 			case 0x9000:
-				SNEVxIsNotVy(); /* 9xy0 */
-				break;
+				return new Instruction( opcode, Operation.SNE_VX_VY ); /* 9xy0 */
 			/* End case 0x9000 */
 
 			/* Begin case 0xA000 */
 			case 0xA000:
-				loadINNN(); /* Annn */
-				break;
+				return new Instruction( opcode, Operation.LD_I_NNN ); /* Annn */
 			/* End case 0xA000 */
 
 			/* Begin case 0xB000 */
 			case 0xB000:
-				jumpNNNV0(); /* Bnnn */
-				break;
+				return new Instruction( opcode, Operation.JP_V0_NNN ); /* Bnnn */
 			/* End case 0xB000 */
 
 			/* Begin case 0xC000 */
 			case 0xC000:
-				randomVxKK(); /* Cxkk */
-				break;
+				return new Instruction( opcode, Operation.RND_VX_KK ); /* Cxkk */
 			/* End case 0xC000 */
 
 			/* Begin case 0xD000 */
 			case 0xD000:
-				displayVxVyN(); /* Dxyn */
-				break;
+				return new Instruction( opcode, Operation.DRW_VX_VY_N ); /* Dxyn */
 			/* End case 0xD000 */
 
 			/* Begin case 0xE000 */
 			case 0xE000:
 				switch ( opcode & 0x00FF ) {
 					case 0x009E:
-						skipKeyPressed(); /* Ex9E */
-						break;
+						return new Instruction( opcode, Operation.SKP_VX ); /* Ex9E */
 
 					case 0x00A1:
-						skipKeyReleased(); /* ExA1 */
-						break;
+						return new Instruction( opcode, Operation.SKNP_VX ); /* ExA1 */
 					default:
 						throw new Exception( "Unknown opcode: " + Integer.toHexString( opcode ) + " in [0xE000]" );
 				}
-				break;
 			/* End case 0xE000 */
 
 			/* Begin case 0xF000 */
 			case 0xF000:
 				switch ( opcode & 0x00FF ) {
 					case 0x0007:
-						loadVxDisplayTimer(); /* Fx07 */
-						break;
+						return new Instruction( opcode, Operation.LD_VX_DT ); /* Fx07 */
 
 					case 0x000A:
-						loadKeyPress(); /* Fx0A */
-						break;
+						return new Instruction( opcode, Operation.LD_VX_K ); /* Fx0A */
 
 					case 0x0015:
-						loadDelayTimer(); /* Fx15 */
-						break;
+						return new Instruction( opcode, Operation.LD_DT_VX ); /* Fx15 */
 
 					case 0x0018:
-						loadSoundTimer(); /* Fx18 */
-						break;
+						return new Instruction( opcode, Operation.LD_ST_VX ); /* Fx18 */
 
 					case 0x001E:
-						addIVx(); /* Fx1E */
-						break;
+						return new Instruction( opcode, Operation.ADD_I_VX ); /* Fx1E */
 
 					case 0x0029:
-						setFontLocationInI(); /* Fx29 */
-						break;
+						return new Instruction( opcode, Operation.LD_F_VX ); /* Fx29 */
 
 					case 0x0033:
-						setBCD(); /* Fx33 */
-						break;
+						return new Instruction( opcode, Operation.LD_B_VX ); /* Fx33 */
 
 					case 0x0055:
-						storeRegisters(); /* Fx55 */
-						break;
+						return new Instruction( opcode, Operation.LD_I_VX ); /* Fx55 */
 
 					case 0x0065:
-						loadRegisters(); /* Fx65 */
-						break;
+						return new Instruction( opcode, Operation.LD_VX_I ); /* Fx65 */
 
 					default:
 						throw new Exception( "Unknown opcode: " + Integer.toHexString( opcode ) + " in [0xF000]" );
 				}
-				break;
 			/* End case 0xF000 */
 
 			default:
@@ -382,59 +706,107 @@ public class Emulator implements Runnable {
 
 	}
 
-	short getNNN() {
-		return (short) (opcode & 0x0FFF);
+	/*
+	0000 - No operation
+	Don't do anything, just move on to the next opcode
+	 */
+	void nop() {
+		programCounter += 2;
 	}
 
-	byte getKK() {
-		return (byte) (opcode & 0x00FF);
-	}
+	/*
+	00E0 - Clear Screen
+	Reset all pixels to 0, set drawFlag to true so we know that pixels were updated
+	 */
+	void cls() {
+		if ( tracer.isInfoEnabled() ) {
+			tracer.record( Tracer.CLEAR_SCREEN, programCounter, opcode, 0 );
+		}
 
-	byte getX() {
-		return (byte) ((opcode & 0x0F00) >> 8);
+		frameBuffer.clear();
+		drawFlag = true;
+		programCounter += 2;
 	}
 
-	byte getY() {
-		return (byte) ((opcode & 0x00F0) >> 4);
+	/*
+	00EE - Return from a subroutine
+	We will set the program counter to the address at the top of the stack, then subtract 1 from the stack pointer
+	 */
+	void ret() {
+		if ( tracer.isInfoEnabled() ) {
+			tracer.record( Tracer.RETURN, programCounter, opcode, 0 );
+		}
+
+		programCounter = (short) (callStack[--stackPointer] & 0xFFFF);
 	}
 
-	byte getN() {
-		return (byte) (opcode & 0x00F);
+	/*
+	00Cn - SCD nibble, SUPER-CHIP
+	Scroll the display down n rows. The whole display moves in one array copy
+	 */
+	void scrollDown( Instruction instruction ) {
+		frameBuffer.scrollDown( instruction.n );
+		drawFlag = true;
+		programCounter += 2;
 	}
 
 	/*
-	00E0 - Clear Screen
-	Reset all pixels to 0, set drawFlag to true so we know that pixels were updated
+	00FB - SCR, SUPER-CHIP
+	Scroll the display right 4 pixels
 	 */
-	private void cls() {
-		logger.log( Level.INFO, "Clear screen" );
+	void scrollRight() {
+		frameBuffer.scrollRight( SCROLL_PIXELS );
+		drawFlag = true;
+		programCounter += 2;
+	}
 
-		for ( int i = 0; i < pixels.length; i++ ) {
-			pixels[i] = 0;
-		}
+	/*
+	00FC - SCL, SUPER-CHIP
+	Scroll the display left 4 pixels
+	 */
+	void scrollLeft() {
+		frameBuffer.scrollLeft( SCROLL_PIXELS );
 		drawFlag = true;
 		programCounter += 2;
 	}
 
 	/*
-	00EE - Return from a subroutine
-	We will set the program counter to the address at the top of the stack, then subtract 1 from the stack pointer
+	00FD - EXIT, SUPER-CHIP
+	Stop the program. We have nowhere to exit to, so the program counter stays put and the machine sits here until it is reset
 	 */
-	private void ret() {
-		logger.log( Level.INFO, "Return from subroutine" );
+	void exit() {
+	}
 
+	/*
+	00FE - LOW, SUPER-CHIP
+	Go back to the 64x32 display, which starts out blank
+	 */
+	void lowResolution() {
+		frameBuffer.setResolution( FrameBuffer.WIDTH, FrameBuffer.HEIGHT );
+		drawFlag = true;
+		programCounter += 2;
+	}
 
-		programCounter = (short) (callStack[--stackPointer] & 0xFFFF);
+	/*
+	00FF - HIGH, SUPER-CHIP
+	Switch to the 128x64 display, which starts out blank
+	 */
+	void highResolution() {
+		frameBuffer.setResolution( FrameBuffer.HIRES_WIDTH, FrameBuffer.HIRES_HEIGHT );
+		drawFlag = true;
+		programCounter += 2;
 	}
 
 	/*
 	1nnn - Jump to address
 	We will set the program counter to address nnn, we will do this by masking the first bit in the opcode
 	 */
-	private void jmp() {
-		logger.log( Level.INFO, "Jump to " + Integer.toHexString( getNNN() ) );
+	void jmp( Instruction instruction ) {
+		if ( tracer.isInfoEnabled() ) {
+			tracer.record( Tracer.JUMP, programCounter, instruction.opcode, instruction.nnn );
+		}
 
-		programCounter = getNNN();
+		programCounter = instruction.nnn;
 	}
 
 	/*
@@ -442,11 +814,13 @@ public class Emulator implements Runnable {
 	We will call the subroutine at address nnn. We will increment the stack pointer, put the current program counter on
 	the top of the stack, and then set the program counter to nnn
 	 */
-	private void call() {
-		logger.log( Level.INFO, "Call address " + Integer.toHexString( getNNN() ) );
+	void call( Instruction instruction ) {
+		if ( tracer.isInfoEnabled() ) {
+			tracer.record( Tracer.CALL, programCounter, instruction.opcode, instruction.nnn );
+		}
 
 		callStack[stackPointer++] = programCounter;
-		programCounter = getNNN();
+		programCounter = instruction.nnn;
 	}
 
 	/*
@@ -454,10 +828,12 @@ public class Emulator implements Runnable {
 	We will skip the next opcode if Vx is equal to kk. If Vx == kk then increment the program counter by 4 (to skip the next
 	opcode) otherwise we will increment the program counter by 2
 	 */
-	private void SEVxIsKK() {
-		logger.log( Level.INFO, "Skip Vx is KK" );
+	void SEVxIsKK( Instruction instruction ) {
+		if ( tracer.isInfoEnabled() ) {
+			tracer.record( Tracer.SKIP_VX_IS_KK, programCounter, instruction.opcode, 0 );
+		}
 
-		if ( vRegisters[(opcode & 0x0F00) >> 8] == (opcode & 0x00FF) ) {
+		if ( vRegisters[instruction.x] == (instruction.kk & 0xFF) ) {
 			programCounter += 4;
 		} else {
 			programCounter += 2;
@@ -469,8 +845,8 @@ public class Emulator implements Runnable {
 	We will skip the next opcode if Vx is not equal to kk. If Vx != kk then increment the program counter by 4 (to skip the next
 	opcode) otherwise we will increment the program counter by 2
 	 */
-	private void SNEVxIsNotKK() {
-		if ( vRegisters[getX()] != (getKK()) ) {
+	void SNEVxIsNotKK( Instruction instruction ) {
+		if ( vRegisters[instruction.x] != (instruction.kk) ) {
 			programCounter += 4;
 		} else {
 			programCounter += 2;
@@ -482,8 +858,8 @@ public class Emulator implements Runnable {
 	We will skip the next opcode if Vx is equal to Vy. If Vx == Vy then increment the program counter by 4 (to skip the next
 	opcode) otherwise we will increment the program counter by 2
 	 */
-	private void SEVxIsVy() {
-		if ( vRegisters[getX()] == (vRegisters[getY()]) ) {
+	void SEVxIsVy( Instruction instruction ) {
+		if ( vRegisters[instruction.x] == (vRegisters[instruction.y]) ) {
 			programCounter += 4;
 		} else {
 			programCounter += 2;
@@ -494,8 +870,8 @@ public class Emulator implements Runnable {
 	6xkk - LD Vx, kk
 	Load the value kk into Vx
 	 */
-	private void loadKKToVx() {
-		vRegisters[getX()] = getKK();
+	void loadKKToVx( Instruction instruction ) {
+		vRegisters[instruction.x] = instruction.kk;
 		programCounter += 2;
 	}
 
@@ -503,10 +879,12 @@ public class Emulator implements Runnable {
 	7xkk - Add Vx, kk
 	Add kk to the value in Vx and store in Vx
 	 */
-	private void addVxKK() {
+	void addVxKK( Instruction instruction ) {
 		// TODO: Figure out if we need to set the carry
-		System.out.println( "Add Vx KK ----------------------------" );
-		vRegisters[getX()] = (byte) (vRegisters[getX()] + getKK());
+		if ( tracer.isInfoEnabled() ) {
+			tracer.record( Tracer.ADD_VX_KK, programCounter, instruction.opcode, 0 );
+		}
+		vRegisters[instruction.x] = (byte) (vRegisters[instruction.x] + instruction.kk);
 		programCounter += 2;
 	}
 
@@ -514,8 +892,8 @@ public class Emulator implements Runnable {
 	8xy0 - LD Vx, Vy
 	Load the value Vy into the Vx register
 	 */
-	private void loadVxVy() {
-		vRegisters[getX()] = vRegisters[getY()];
+	void loadVxVy( Instruction instruction ) {
+		vRegisters[instruction.x] = vRegisters[instruction.y];
 		programCounter += 2;
 	}
 
@@ -523,8 +901,8 @@ public class Emulator implements Runnable {
 	8xy1 - OR Vx, Vy
 	Set Vx to the bitwise OR of the values of Vx and Vy
 	 */
-	private void orVxVy() {
-		vRegisters[getX()] = (byte) (vRegisters[getX()] | vRegisters[getY()]);
+	void orVxVy( Instruction instruction ) {
+		vRegisters[instruction.x] = (byte) (vRegisters[instruction.x] | vRegisters[instruction.y]);
 		programCounter += 2;
 	}
 
@@ -532,8 +910,8 @@ public class Emulator implements Runnable {
 	8xy2 - AND Vx, Vy
 	Set Vx to the bitwise AND of the values of Vx and Vy
 	 */
-	private void andVxVy() {
-		vRegisters[getX()] = (byte) (vRegisters[getX()] & vRegisters[getY()]);
+	void andVxVy( Instruction instruction ) {
+		vRegisters[instruction.x] = (byte) (vRegisters[instruction.x] & vRegisters[instruction.y]);
 		programCounter += 2;
 	}
 
@@ -541,8 +919,8 @@ public class Emulator implements Runnable {
 	8xy3 - XOR Vx, Vy
 	Set Vx to the bitwise XOR of the values of Vx and Vy
 	 */
-	private void xorVxVy() {
-		vRegisters[getX()] = (byte) (vRegisters[getX()] ^ vRegisters[getY()]);
+	void xorVxVy( Instruction instruction ) {
+		vRegisters[instruction.x] = (byte) (vRegisters[instruction.x] ^ vRegisters[instruction.y]);
 		programCounter += 2;
 	}
 
@@ -550,15 +928,15 @@ public class Emulator implements Runnable {
 	8xy4 - Add Vx, Vy
 	Add Vx and Vy together. If the value is greater than a byte (>255) VF is set to 1, otherwise VF is set to 0. The lowest 8 bits are kept and stored in Vx.
 	 */
-	private void addVxVy() {
-		int sum = vRegisters[getX()] + vRegisters[getY()];
+	void addVxVy( Instruction instruction ) {
+		int sum = vRegisters[instruction.x] + vRegisters[instruction.y];
 		if ( sum > 255 ) {
 			vRegisters[0x0F] = 1;
 			sum -= 255;
 		} else {
 			vRegisters[0x0F] = 0;
 		}
-		vRegisters[getX()] = (byte) (sum);
+		vRegisters[instruction.x] = (byte) (sum);
 		programCounter += 2;
 	}
 
@@ -566,13 +944,13 @@ public class Emulator implements Runnable {
 	8xy5 - SUB Vx, Vy
 	If Vx > Vy then VF is set to 1, otherwise it is set to 0. Then Vy is subtracted from Vx and stored in Vx.
 	*/
-	private void subVxVy() {
-		if ( vRegisters[getX()] > vRegisters[getY()] ) {
+	void subVxVy( Instruction instruction ) {
+		if ( vRegisters[instruction.x] > vRegisters[instruction.y] ) {
 			vRegisters[0x0F] = 1;
 		} else {
 			vRegisters[0x0F] = 0;
 		}
-		vRegisters[getX()] = (byte) (vRegisters[getX()] - vRegisters[getY()]);
+		vRegisters[instruction.x] = (byte) (vRegisters[instruction.x] - vRegisters[instruction.y]);
 		programCounter += 2;
 	}
 
@@ -580,9 +958,9 @@ public class Emulator implements Runnable {
 	8xy6 - SHR Vx
 	If the least significant bit is 1 then set VF to 1, otherwise set VF to 0. Then Vx is shifted right once (divided by two).
 	*/
-	private void shiftRightVx() {
-		vRegisters[0xF] = (byte) (vRegisters[getX()] & 0x1); // Set based on LSB
-		vRegisters[getX()] >>= 1;
+	void shiftRightVx( Instruction instruction ) {
+		vRegisters[0xF] = (byte) (vRegisters[instruction.x] & 0x1); // Set based on LSB
+		vRegisters[instruction.x] >>= 1;
 		programCounter += 2;
 	}
 
@@ -590,13 +968,13 @@ public class Emulator implements Runnable {
 	8xy7 - SUBN Vx, Vy
 	If Vy > Vx then set VF to 1, otherwise set to 0. Then Vx is subtracted from Vy and the results are stored in Vx.
 	 */
-	private void subnVxVy() {
-		if ( vRegisters[getY()] > vRegisters[getX()] ) {
+	void subnVxVy( Instruction instruction ) {
+		if ( vRegisters[instruction.y] > vRegisters[instruction.x] ) {
 			vRegisters[0x0F] = 1;
 		} else {
 			vRegisters[0x0F] = 0;
 		}
-		vRegisters[getX()] = (byte) (vRegisters[getY()] - vRegisters[getX()]);
+		vRegisters[instruction.x] = (byte) (vRegisters[instruction.y] - vRegisters[instruction.x]);
 		programCounter += 2;
 	}
 
@@ -604,9 +982,9 @@ public class Emulator implements Runnable {
 	8xyE - SHL Vx
 	If the most significant bit of Vx is 1 then set VF to 1, otherwise set to 0. Then shift Vx left once (multiply by two).
 	 */
-	private void shiftLeftVx() {
-		vRegisters[0x0F] = (byte) (vRegisters[getX()] >> 7); // Set based on MSB
-		vRegisters[getX()] <<= 1;
+	void shiftLeftVx( Instruction instruction ) {
+		vRegisters[0x0F] = (byte) (vRegisters[instruction.x] >> 7); // Set based on MSB
+		vRegisters[instruction.x] <<= 1;
 		programCounter += 2;
 	}
 
@@ -615,8 +993,8 @@ public class Emulator implements Runnable {
 	We will skip the next opcode if Vx is not equal to Vy. If Vx != Vy then increment the program counter by 4 (to skip the next
 	opcode) otherwise we will increment the program counter by 2.
 	 */
-	private void SNEVxIsNotVy() {
-		if ( vRegisters[getX()] != vRegisters[getY()] ) {
+	void SNEVxIsNotVy( Instruction instruction ) {
+		if ( vRegisters[instruction.x] != vRegisters[instruction.y] ) {
 			programCounter += 4;
 		} else {
 			programCounter += 2;
@@ -627,8 +1005,8 @@ public class Emulator implements Runnable {
 	Annn - LD I, nnn
 	Set register I to nnn
 	 */
-	private void loadINNN() {
-		indexRegister = getNNN();
+	void loadINNN( Instruction instruction ) {
+		indexRegister = instruction.nnn;
 		programCounter += 2;
 	}
 
@@ -636,16 +1014,16 @@ public class Emulator implements Runnable {
 	Bnnn - JP V0, nnn
 	The program counter is set to nnn + V0
 	 */
-	private void jumpNNNV0() {
-		programCounter = (short) (getNNN() + vRegisters[0]);
+	void jumpNNNV0( Instruction instruction ) {
+		programCounter = (short) (instruction.nnn + vRegisters[0]);
 	}
 
 	/*
 	Cxkk - RND Vx, kk
 	We will generate a random number between 0 and 255. We will then bitwise AND that random number with Vx and store that in Vx.
 	 */
-	private void randomVxKK() {
-		vRegisters[getX()] = (byte) (random.nextInt( 256 ) & vRegisters[getX()]);
+	void randomVxKK( Instruction instruction ) {
+		vRegisters[instruction.x] = (byte) (random.nextInt( 256 ) & vRegisters[instruction.x]);
 		programCounter += 2;
 	}
 
@@ -659,28 +1037,34 @@ public class Emulator implements Runnable {
 	https://www.reddit.com/r/EmuDev/comments/5so1bo/chip8_emu_questions/
 	We only set VF if any pixels go from 1 to 0.
 
-	Remember that sprites are always 8 pixels wide
+	Remember that sprites are always 8 pixels wide, so each sprite row is XORed onto the display row in one go. The exception
+	is Dxy0 in SUPER-CHIP's high resolution mode, which draws a 16x16 sprite stored as two bytes per row
 	 */
-	private void displayVxVyN() {
-		int x = getX();
-		int y = getY();
-		int spriteHeight = getN();
+	void displayVxVyN( Instruction instruction ) {
+		int x = instruction.x;
+		int y = instruction.y;
+		int spriteHeight = instruction.n;
 
 		vRegisters[0xF] = 0;
 
-		for ( int yLine = 0; yLine < spriteHeight; yLine++ ) {
-			int pixelValue = memory[indexRegister + yLine];
-			for ( int xLine = 0; xLine < 8; xLine++ ) {
-				if ( (pixelValue & (0x80 >> xLine)) != 0 ) {
-					int pixelLocation = (x + xLine + ((y + yLine) * 64)) % 2048; // Ensure that we wrap around the screen
-
-					vRegisters[0xF] |= pixels[pixelLocation] & 1;
-					pixels[pixelLocation] ^= 1;
+		if ( spriteHeight == 0 && isHighResolution() ) {
+			for ( int yLine = 0; yLine < WIDE_SPRITE_SIZE; yLine++ ) {
+				int address = indexRegister + (yLine * 2);
+				int spriteRow = ((memory[address] & 0xFF) << 8) | (memory[address + 1] & 0xFF);
+				if ( frameBuffer.drawWideSpriteRow( x, y + yLine, spriteRow ) ) {
+					vRegisters[0xF] = 1;
+				}
+			}
+		} else {
+			for ( int yLine = 0; yLine < spriteHeight; yLine++ ) {
+				if ( frameBuffer.drawSpriteRow( x, y + yLine, memory[indexRegister + yLine] ) ) {
+					vRegisters[0xF] = 1;
 				}
 			}
 		}
 
 		drawFlag = true;
+		spriteDrawCount++;
 		programCounter += 2;
 	}
 
@@ -688,8 +1072,8 @@ public class Emulator implements Runnable {
 	Ex9E - SKP Vx
 	Skip the next opcode if the key with the value of Vx is currently pressed.
 	 */
-	private void skipKeyPressed() {
-		if ( keys[vRegisters[getX()]] != 0 ) {
+	void skipKeyPressed( Instruction instruction ) {
+		if ( keys[vRegisters[instruction.x]] != 0 ) {
 			programCounter += 4;
 		} else {
 			programCounter += 2;
@@ -700,8 +1084,8 @@ public class Emulator implements Runnable {
 	ExA1 - SKNP Vx
 	Skip the next opcode if the key with the value of Vx is currently NOT pressed.
 	 */
-	private void skipKeyReleased() {
-		if ( keys[vRegisters[getX()]] == 0 ) {
+	void skipKeyReleased( Instruction instruction ) {
+		if ( keys[vRegisters[instruction.x]] == 0 ) {
 			programCounter += 4;
 		} else {
 			programCounter += 2;
@@ -712,8 +1096,8 @@ public class Emulator implements Runnable {
 	Fx07 - LD Vx, Delay Timer
 	The value of the delay timer is put into Vx
 	 */
-	private void loadVxDisplayTimer() {
-		vRegisters[getX()] = (byte) delayTimer;
+	void loadVxDisplayTimer( Instruction instruction ) {
+		vRegisters[instruction.x] = (byte) delayTimer;
 		programCounter += 2;
 	}
 
@@ -721,10 +1105,10 @@ public class Emulator implements Runnable {
 	Fx0A - LD Vx, Key
 	All execution STOPS until a key is pressed. Store the value of the key in Vx and then continue processing like normal.
 	 */
-	private void loadKeyPress() {
+	void loadKeyPress( Instruction instruction ) {
 		for ( int i = 0; i < keys.length; i++ ) {
 			if ( keys[i] != 0 ) {
-				vRegisters[getX()] = keys[i];
+				vRegisters[instruction.x] = keys[i];
 				programCounter += 2;
 			}
 		}
@@ -734,8 +1118,8 @@ public class Emulator implements Runnable {
 	Fx15 - LD Delay Timer, Vx
 	Delay timer is set to the value of Vx
 	 */
-	private void loadDelayTimer() {
-		delayTimer = vRegisters[getX()];
+	void loadDelayTimer( Instruction instruction ) {
+		delayTimer = vRegisters[instruction.x];
 		programCounter += 2;
 	}
 
@@ -743,8 +1127,8 @@ public class Emulator implements Runnable {
 	Fx18 - LD Sound Timer, Vx
 	Sound timer is set to the value of Vx
 	 */
-	private void loadSoundTimer() {
-		soundTimer = vRegisters[getX()];
+	void loadSoundTimer( Instruction instruction ) {
+		soundTimer = vRegisters[instruction.x];
 		programCounter += 2;
 	}
 
@@ -752,11 +1136,13 @@ public class Emulator implements Runnable {
 	Fx1E - Add I, Vx
 	Add the values of I and Vx, store the results in I
 	 */
-	private void addIVx() {
+	void addIVx( Instruction instruction ) {
 		// TODO: Figure out if I need to set carry flag
-		System.out.println( "Add I Vx ----------------------------" );
+		if ( tracer.isInfoEnabled() ) {
+			tracer.record( Tracer.ADD_I_VX, programCounter, instruction.opcode, 0 );
+		}
 
-		indexRegister += vRegisters[getX()];
+		indexRegister += vRegisters[instruction.x];
 		programCounter += 2;
 	}
 
@@ -764,8 +1150,8 @@ public class Emulator implements Runnable {
 	Fx29 - LD F, Vx
 	The value of I is set to the location for the hexadecimal sprite corresponding to the value of Vx.
 	 */
-	private void setFontLocationInI() {
-		indexRegister = (short) (vRegisters[getX()] * 5); // Multiply by 5 since we have 5 values for each font
+	void setFontLocationInI( Instruction instruction ) {
+		indexRegister = (short) (vRegisters[instruction.x] * 5); // Multiply by 5 since we have 5 values for each font
 		programCounter += 2;
 	}
 
@@ -773,11 +1159,13 @@ public class Emulator implements Runnable {
 	Fx33 - LD B, Vx
 	Store binary coded decimal  of Vx at address I, I + 1 and I + 2. I gets the hundreds digit, I + 1 gets the tens digit and I + 2 gets the ones digit.
 	 */
-	private void setBCD() {
-		System.out.println( "Set binary coded decimal" );
-		memory[indexRegister] = (byte) (vRegisters[getX()] / 100);
-		memory[indexRegister + 1] = (byte) ((vRegisters[getX()] / 10) % 10);
-		memory[indexRegister + 2] = (byte) (vRegisters[getX()] % 10);
+	void setBCD( Instruction instruction ) {
+		if ( tracer.isInfoEnabled() ) {
+			tracer.record( Tracer.SET_BCD, programCounter, instruction.opcode, 0 );
+		}
+		writeMemory( indexRegister, (byte) (vRegisters[instruction.x] / 100) );
+		writeMemory( indexRegister + 1, (byte) ((vRegisters[instruction.x] / 10) % 10) );
+		writeMemory( indexRegister + 2, (byte) (vRegisters[instruction.x] % 10) );
 		programCounter += 2;
 	}
 
@@ -785,9 +1173,9 @@ public class Emulator implements Runnable {
 	Fx55 - LD I, Vx
 	Store registers V0 through Vx in memory starting at location I
 	 */
-	private void storeRegisters() {
-		for ( int registerIndex = 0; registerIndex <= getX(); registerIndex++ ) {
-			memory[indexRegister + registerIndex] = vRegisters[registerIndex];
+	void storeRegisters( Instruction instruction ) {
+		for ( int registerIndex = 0; registerIndex <= instruction.x; registerIndex++ ) {
+			writeMemory( indexRegister + registerIndex, vRegisters[registerIndex] );
 		}
 		programCounter += 2;
 	}
@@ -796,8 +1184,8 @@ public class Emulator implements Runnable {
 	Fx65 - LD Vx, I
 	Read the memory values starting at I and load them into registers V0 through Vx
 	 */
-	private void loadRegisters() {
-		for ( int registerIndex = 0; registerIndex <= getX(); registerIndex++ ) {
+	void loadRegisters( Instruction instruction ) {
+		for ( int registerIndex = 0; registerIndex <= instruction.x; registerIndex++ ) {
 			vRegisters[registerIndex] = memory[indexRegister + registerIndex];
 		}
 		programCounter += 2;
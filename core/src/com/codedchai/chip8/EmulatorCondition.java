@@ -0,0 +1,10 @@
+package com.codedchai.chip8;
+
+/*
+Something to wait for while running an emulator with runUntil
+ */
+public interface EmulatorCondition {
+
+	boolean isMet( Emulator emulator );
+
+}
@@ -0,0 +1,255 @@
+package com.codedchai.chip8;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+Runs an emulator on its own thread in real time, this is what the desktop application uses.
+
+Time is kept with System.nanoTime and handed out as credit. Every nanosecond that passes is worth TIMER_FREQUENCY units of
+timer credit, and each time a whole second worth of units (NANOS_PER_SECOND) has built up we owe the machine one timer tick.
+Cycles are handed out per tick the same way, carrying the remainder of cpuFrequency / TIMER_FREQUENCY over to the next tick.
+Because nothing is ever rounded away the timers tick exactly TIMER_FREQUENCY times a second and the CPU runs exactly
+cpuFrequency cycles a second no matter how long we sleep or how long a slice takes to run.
+
+If we fall behind (oversleeping, a GC pause, a slow slice) the missed ticks are run back to back to catch up, but never more
+than MAX_CATCH_UP_TICKS at once. Anything beyond that is dropped, otherwise a machine that can't keep up would spend longer
+and longer catching up and never get back to real time.
+
+Every tick and every stall is reported to the Java Flight Recorder when a recording is running, see FlightRecorderEvents.
+ */
+public class EmulatorRunner implements Runnable {
+
+	public enum Mode {
+		/* Run cpuFrequency cycles a second, spread over the timer ticks */
+		REAL_TIME,
+		/* Run exactly fixedStepCycles cycles for every timer tick, paced at TIMER_FREQUENCY */
+		FIXED_STEP,
+		/* Run fixedStepCycles cycles for every timer tick as fast as the host can go */
+		TURBO
+	}
+
+	private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos( 1 );
+	/* Most ticks we will run back to back to catch up after falling behind */
+	private static final int MAX_CATCH_UP_TICKS = 5;
+
+	private final Emulator emulator;
+
+	private volatile Mode mode = Mode.REAL_TIME;
+	private volatile int cpuFrequency = Emulator.CPU_FREQUENCY;
+	private volatile int fixedStepCycles;
+	/* Set from the start rather than in run(), so a stop() that comes before the thread gets going isn't lost. A runner only
+	runs once, after stop() it needs replacing */
+	private volatile boolean running = true;
+
+	/* Set to record every tick, hold rewinding down to play the history backwards one tick at a time */
+	private volatile RewindBuffer rewindBuffer;
+	private volatile boolean rewinding;
+
+	/* Only touched by the runner thread */
+	private long lastTime;
+	/* When the next tick was due the last time we went to sleep */
+	private long wakeTime;
+	private long tickCredit;
+	private long cycleRemainder;
+
+	/* Time between the starts of successive ticks, how evenly the machine is actually being run */
+	private final FrameTimeStats tickTimes = new FrameTimeStats();
+
+	private volatile long ticks;
+	private volatile long droppedTicks;
+	private volatile long catchUpTicks;
+
+	public EmulatorRunner( Emulator emulator ) {
+		this.emulator = emulator;
+		this.fixedStepCycles = emulator.getCyclesPerFrame();
+	}
+
+	@Override
+	public void run() {
+		lastTime = System.nanoTime();
+		wakeTime = lastTime;
+
+		try {
+			update();
+		} catch ( Exception e ) {
+			e.printStackTrace();
+		}
+	}
+
+	/*
+	Ask the runner to stop after the tick it is currently running, or not to start at all if run() hasn't got going yet
+	 */
+	public void stop() {
+		running = false;
+	}
+
+	/*
+	Our main loop
+	 */
+	private void update() throws Exception {
+
+		while ( running ) {
+			Mode currentMode = mode;
+			if ( currentMode == Mode.TURBO ) {
+				runTick( fixedStepCycles );
+				lastTime = System.nanoTime();
+				tickCredit = 0;
+				continue;
+			}
+
+			long currentTime = System.nanoTime();
+			tickCredit += (currentTime - lastTime) * Emulator.TIMER_FREQUENCY;
+			lastTime = currentTime;
+
+			long dueTicks = tickCredit / NANOS_PER_SECOND;
+			long dropped = 0;
+			if ( dueTicks > MAX_CATCH_UP_TICKS ) {
+				dropped = dueTicks - MAX_CATCH_UP_TICKS;
+				droppedTicks += dropped;
+				tickCredit -= dropped * NANOS_PER_SECOND;
+				dueTicks = MAX_CATCH_UP_TICKS;
+			}
+			if ( dueTicks > 1 ) {
+				catchUpTicks += dueTicks - 1;
+			}
+
+			long oversleep = currentTime - wakeTime;
+			SchedulerStallEvent stallEvent = null;
+			if ( dueTicks > 1 || dropped > 0 || oversleep > FlightRecorderEvents.STALL_OVERSLEEP_NANOS ) {
+				stallEvent = FlightRecorderEvents.beginSchedulerStall();
+			}
+
+			for ( long tick = 0; tick < dueTicks; tick++ ) {
+				tickCredit -= NANOS_PER_SECOND;
+				if ( currentMode == Mode.FIXED_STEP ) {
+					runTick( fixedStepCycles );
+				} else {
+					cycleRemainder += cpuFrequency;
+					runTick( (int) (cycleRemainder / Emulator.TIMER_FREQUENCY) );
+					cycleRemainder %= Emulator.TIMER_FREQUENCY;
+				}
+			}
+
+			if ( stallEvent != null ) {
+				FlightRecorderEvents.endSchedulerStall( stallEvent, Math.max( oversleep, 0 ), Math.max( dueTicks - 1, 0 ), dropped );
+			}
+
+			/* Sleep until the next tick is due, whatever we oversleep by is paid back on the next pass */
+			long nanosUntilNextTick = (NANOS_PER_SECOND - tickCredit) / Emulator.TIMER_FREQUENCY;
+			wakeTime = currentTime + nanosUntilNextTick;
+			if ( nanosUntilNextTick > 0 ) {
+				LockSupport.parkNanos( nanosUntilNextTick );
+			}
+		}
+	}
+
+	/*
+	Run one timer tick, or step back one tick while rewinding, and publish the frame if the display changed. Package private
+	so the rewind check can drive it without a thread
+	 */
+	void runTick( int cycles ) throws Exception {
+		tickTimes.frame( System.nanoTime() );
+		FrameEvent frameEvent = FlightRecorderEvents.beginFrame();
+		long spriteDrawsBefore = emulator.spriteDrawCount;
+
+		RewindBuffer history = rewindBuffer;
+		boolean rewound = history != null && rewinding;
+		if ( rewound ) {
+			/* The recorded ticks were taken after publishing, so their drawFlag is always false, but the display we stepped back
+			to is not the one on screen */
+			if ( history.stepBack( emulator ) ) {
+				emulator.drawFlag = true;
+			}
+		} else {
+			emulator.step( cycles );
+			emulator.tickTimers();
+		}
+
+		boolean published = emulator.drawFlag;
+		emulator.publishFrame();
+		if ( history != null && !rewound ) {
+			history.record( emulator );
+		}
+		ticks++;
+
+		if ( frameEvent != null ) {
+			FlightRecorderEvents.endFrame( frameEvent, ticks, rewound ? 0 : cycles, emulator.spriteDrawCount - spriteDrawsBefore, published, rewound );
+		}
+	}
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	public void setMode( Mode mode ) {
+		this.mode = mode;
+	}
+
+	/* Cycles per second in REAL_TIME mode */
+	public int getCpuFrequency() {
+		return cpuFrequency;
+	}
+
+	public void setCpuFrequency( int cpuFrequency ) {
+		if ( cpuFrequency <= 0 ) {
+			throw new IllegalArgumentException( "CPU frequency must be positive, got " + cpuFrequency );
+		}
+		this.cpuFrequency = cpuFrequency;
+	}
+
+	/* Cycles per timer tick in FIXED_STEP and TURBO mode */
+	public int getFixedStepCycles() {
+		return fixedStepCycles;
+	}
+
+	public void setFixedStepCycles( int fixedStepCycles ) {
+		if ( fixedStepCycles < 0 ) {
+			throw new IllegalArgumentException( "Cycles per tick can't be negative, got " + fixedStepCycles );
+		}
+		this.fixedStepCycles = fixedStepCycles;
+	}
+
+	public RewindBuffer getRewindBuffer() {
+		return rewindBuffer;
+	}
+
+	/*
+	Record every tick into the buffer from now on, null to stop recording. The buffer belongs to the runner thread after this
+	 */
+	public void setRewindBuffer( RewindBuffer rewindBuffer ) {
+		this.rewindBuffer = rewindBuffer;
+	}
+
+	public boolean isRewinding() {
+		return rewinding;
+	}
+
+	/*
+	While true every tick steps back through the rewind buffer instead of running, once it is set back to false the machine
+	carries on from wherever the rewind stopped
+	 */
+	public void setRewinding( boolean rewinding ) {
+		this.rewinding = rewinding;
+	}
+
+	/* Timer ticks run since the runner started */
+	public long getTicks() {
+		return ticks;
+	}
+
+	/* Ticks we gave up on because we fell more than MAX_CATCH_UP_TICKS behind */
+	public long getDroppedTicks() {
+		return droppedTicks;
+	}
+
+	/* Ticks that had to be run back to back because we were late */
+	public long getCatchUpTicks() {
+		return catchUpTicks;
+	}
+
+	public FrameTimeStats getTickTimes() {
+		return tickTimes;
+	}
+
+}
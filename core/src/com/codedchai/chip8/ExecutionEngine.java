@@ -0,0 +1,14 @@
+package com.codedchai.chip8;
+
+/*
+Something that can run cycles on an emulator. The emulator owns all of the machine state, an engine only decides how the
+opcodes get executed
+ */
+public interface ExecutionEngine {
+
+	/*
+	Run exactly the given number of cycles on the emulator
+	 */
+	void execute( Emulator emulator, int cycles ) throws Exception;
+
+}
@@ -0,0 +1,101 @@
+package com.codedchai.chip8;
+
+import jdk.jfr.EventType;
+
+/*
+The Java Flight Recorder events we emit, so a recording from a running application shows where frame time goes: how long
+each emulated frame took, when the runner overslept or had to catch up, and how long each frame took to reach the screen.
+
+JFR is not on every runtime we might run on, so none of the event classes are touched unless AVAILABLE is true, and they are
+only loaded the first time we check whether one is on. On a runtime with JFR a disabled event costs a check of a static flag
+and its cached EventType, no event is allocated until a recording turns it on.
+ */
+final class FlightRecorderEvents {
+
+	static final boolean AVAILABLE = isAvailable();
+
+	/* Anything less than this is normal timer slack, not a stall */
+	static final long STALL_OVERSLEEP_NANOS = 1000000;
+
+	private FlightRecorderEvents() {
+	}
+
+	/*
+	The types of our events, in a class of their own so jdk.jfr isn't loaded until AVAILABLE says it is there
+	 */
+	private static final class Types {
+
+		static final EventType FRAME = EventType.getEventType( FrameEvent.class );
+		static final EventType SCHEDULER_STALL = EventType.getEventType( SchedulerStallEvent.class );
+		static final EventType FRAME_HANDOFF = EventType.getEventType( FrameHandoffEvent.class );
+	}
+
+	private static boolean isAvailable() {
+		try {
+			Class.forName( "jdk.jfr.Event", false, FlightRecorderEvents.class.getClassLoader() );
+			return true;
+		} catch ( ClassNotFoundException | LinkageError e ) {
+			return false;
+		}
+	}
+
+	/*
+	Start timing a frame, null if there is no flight recorder or the event is off
+	 */
+	static FrameEvent beginFrame() {
+		if ( !AVAILABLE || !Types.FRAME.isEnabled() ) {
+			return null;
+		}
+		FrameEvent event = new FrameEvent();
+		event.begin();
+		return event;
+	}
+
+	static void endFrame( FrameEvent event, long tick, int cycles, long spriteDraws, boolean published, boolean rewound ) {
+		event.end();
+		if ( event.shouldCommit() ) {
+			event.tick = tick;
+			event.cycles = cycles;
+			event.spriteDraws = spriteDraws;
+			event.published = published;
+			event.rewound = rewound;
+			event.commit();
+		}
+	}
+
+	/*
+	Start timing a stall, null if there is no flight recorder or the event is off
+	 */
+	static SchedulerStallEvent beginSchedulerStall() {
+		if ( !AVAILABLE || !Types.SCHEDULER_STALL.isEnabled() ) {
+			return null;
+		}
+		SchedulerStallEvent event = new SchedulerStallEvent();
+		event.begin();
+		return event;
+	}
+
+	static void endSchedulerStall( SchedulerStallEvent event, long oversleep, long catchUpTicks, long droppedTicks ) {
+		event.end();
+		if ( event.shouldCommit() ) {
+			event.oversleep = oversleep;
+			event.catchUpTicks = catchUpTicks;
+			event.droppedTicks = droppedTicks;
+			event.commit();
+		}
+	}
+
+	static void frameHandoff( long sequence, long publishNanos, long skippedFrames ) {
+		if ( !AVAILABLE || !Types.FRAME_HANDOFF.isEnabled() ) {
+			return;
+		}
+		FrameHandoffEvent event = new FrameHandoffEvent();
+		if ( event.shouldCommit() ) {
+			event.sequence = sequence;
+			event.latency = System.nanoTime() - publishNanos;
+			event.skippedFrames = skippedFrames;
+			event.commit();
+		}
+	}
+
+}
@@ -0,0 +1,247 @@
+package com.codedchai.chip8;
+
+import java.util.Arrays;
+
+/*
+The display, packed one bit per pixel. Every row is one or more longs where the most significant bit of the first long is the
+left most pixel, so a whole sprite row can be XORed onto the display in one or two goes and scrolling is shifting and copying
+longs instead of moving pixels one at a time.
+
+The standard 64x32 display is one long per row, 256 bytes for the whole frame. SUPER-CHIP's 128x64 high resolution mode is two
+longs per row.
+ */
+public class FrameBuffer {
+
+	public static final int WIDTH = 64;
+	public static final int HEIGHT = 32;
+
+	/* SUPER-CHIP high resolution */
+	public static final int HIRES_WIDTH = 128;
+	public static final int HIRES_HEIGHT = 64;
+
+	/* The most longs a frame can take, at the highest resolution */
+	static final int MAX_WORDS = (HIRES_WIDTH / Long.SIZE) * HIRES_HEIGHT;
+
+	private int width = WIDTH;
+	private int height = HEIGHT;
+	/* How many longs make up one row */
+	private int rowWords = 1;
+	/* Both sizes are powers of two, so wrapping around an edge is a mask instead of a division */
+	private int widthMask = WIDTH - 1;
+	private int heightMask = HEIGHT - 1;
+
+	/* Row y is rows[y * rowWords] up to rows[(y + 1) * rowWords - 1] */
+	long[] rows = new long[HEIGHT];
+
+	/*
+	A blank 64x32 display
+	 */
+	public FrameBuffer() {
+	}
+
+	/*
+	A blank display, both sizes have to be powers of two and the width at least 64
+	 */
+	public FrameBuffer( int width, int height ) {
+		setResolution( width, height );
+	}
+
+	/*
+	Switch to another resolution, leaving the display blank. The rows are only reallocated if the size actually changes, so
+	anyone holding on to rows has to fetch it again afterwards
+	 */
+	public void setResolution( int width, int height ) {
+		if ( width < Long.SIZE || Integer.bitCount( width ) != 1 || height <= 0 || Integer.bitCount( height ) != 1 ) {
+			throw new IllegalArgumentException( "Can't make a " + width + "x" + height + " display, both sizes have to be powers of two and the width at least " + Long.SIZE );
+		}
+
+		if ( width == this.width && height == this.height ) {
+			clear();
+			return;
+		}
+		this.width = width;
+		this.height = height;
+		rowWords = width / Long.SIZE;
+		widthMask = width - 1;
+		heightMask = height - 1;
+		rows = new long[rowWords * height];
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/* How many longs make up one row, see getRowWord */
+	public int getRowWords() {
+		return rowWords;
+	}
+
+	/*
+	Turn every pixel off
+	 */
+	public void clear() {
+		Arrays.fill( rows, 0 );
+	}
+
+	/*
+	XOR an 8 pixel wide sprite row onto the display with its left most pixel at (x, y). Anything that goes off the right edge
+	wraps around to the left edge of the same row, and rows past the bottom wrap around to the top.
+	Returns true if any pixel went from 1 to 0.
+	 */
+	boolean drawSpriteRow( int x, int y, byte spriteRow ) {
+		return xorRow( x, y, (spriteRow & 0xFFL) << (Long.SIZE - 8) );
+	}
+
+	/*
+	The same for the 16 pixel wide rows of SUPER-CHIP's 16x16 sprites, the left most pixel is bit 15
+	 */
+	boolean drawWideSpriteRow( int x, int y, int spriteRow ) {
+		return xorRow( x, y, (spriteRow & 0xFFFFL) << (Long.SIZE - 16) );
+	}
+
+	/*
+	XOR sprite, left aligned in a long, onto row y starting at x
+	 */
+	private boolean xorRow( int x, int y, long sprite ) {
+		if ( rowWords == 1 ) {
+			int row = y & heightMask;
+			long rotated = Long.rotateRight( sprite, x );
+			boolean collision = (rows[row] & rotated) != 0;
+			rows[row] ^= rotated;
+			return collision;
+		}
+
+		/* The sprite covers at most two longs: the one x falls in, and the next one along, wrapping around the row */
+		int row = (y & heightMask) * rowWords;
+		int shift = x & widthMask;
+		int first = row + (shift / Long.SIZE);
+		int second = row + (((shift / Long.SIZE) + 1) & (rowWords - 1));
+		shift %= Long.SIZE;
+		long firstBits = sprite >>> shift;
+		long secondBits = shift == 0 ? 0 : sprite << (Long.SIZE - shift);
+
+		boolean collision = (rows[first] & firstBits) != 0 || (rows[second] & secondBits) != 0;
+		rows[first] ^= firstBits;
+		rows[second] ^= secondBits;
+		return collision;
+	}
+
+	/*
+	Move everything down the given number of rows, blank rows come in at the top. One array copy however far it goes
+	 */
+	void scrollDown( int lines ) {
+		int shift = Math.min( lines, height ) * rowWords;
+		System.arraycopy( rows, 0, rows, shift, rows.length - shift );
+		Arrays.fill( rows, 0, shift, 0 );
+	}
+
+	/*
+	Move everything right by 1 to 63 pixels, blank pixels come in on the left
+	 */
+	void scrollRight( int pixels ) {
+		if ( rowWords == 1 ) {
+			for ( int row = 0; row < rows.length; row++ ) {
+				rows[row] >>>= pixels;
+			}
+			return;
+		}
+		if ( rowWords == 2 ) {
+			for ( int row = 0; row < rows.length; row += 2 ) {
+				long left = rows[row];
+				rows[row] = left >>> pixels;
+				rows[row + 1] = (rows[row + 1] >>> pixels) | (left << (Long.SIZE - pixels));
+			}
+			return;
+		}
+		for ( int row = 0; row < rows.length; row += rowWords ) {
+			for ( int word = rowWords - 1; word > 0; word-- ) {
+				rows[row + word] = (rows[row + word] >>> pixels) | (rows[row + word - 1] << (Long.SIZE - pixels));
+			}
+			rows[row] >>>= pixels;
+		}
+	}
+
+	/*
+	Move everything left by 1 to 63 pixels, blank pixels come in on the right
+	 */
+	void scrollLeft( int pixels ) {
+		if ( rowWords == 1 ) {
+			for ( int row = 0; row < rows.length; row++ ) {
+				rows[row] <<= pixels;
+			}
+			return;
+		}
+		if ( rowWords == 2 ) {
+			for ( int row = 0; row < rows.length; row += 2 ) {
+				long right = rows[row + 1];
+				rows[row] = (rows[row] << pixels) | (right >>> (Long.SIZE - pixels));
+				rows[row + 1] = right << pixels;
+			}
+			return;
+		}
+		for ( int row = 0; row < rows.length; row += rowWords ) {
+			int last = row + rowWords - 1;
+			for ( int word = row; word < last; word++ ) {
+				rows[word] = (rows[word] << pixels) | (rows[word + 1] >>> (Long.SIZE - pixels));
+			}
+			rows[last] <<= pixels;
+		}
+	}
+
+	public boolean isPixelSet( int x, int y ) {
+		return (rows[(y * rowWords) + (x / Long.SIZE)] & (Long.MIN_VALUE >>> (x % Long.SIZE))) != 0;
+	}
+
+	/*
+	The pixels in row y, the left most pixel is the most significant bit. At high resolution this is only the left half of
+	the row, see getRowWord
+	 */
+	public long getRow( int y ) {
+		return rows[y * rowWords];
+	}
+
+	/*
+	64 pixels of row y, word 0 is the left most 64
+	 */
+	public long getRowWord( int y, int word ) {
+		return rows[(y * rowWords) + word];
+	}
+
+	/*
+	Unpack the display into one int per pixel (1 for on, 0 for off), indexed by x + (y * width)
+	 */
+	public void copyTo( int[] pixels ) {
+		for ( int y = 0; y < height; y++ ) {
+			for ( int x = 0; x < width; x++ ) {
+				long row = rows[(y * rowWords) + (x / Long.SIZE)];
+				pixels[x + (y * width)] = (int) ((row >>> (Long.SIZE - 1 - (x % Long.SIZE))) & 1);
+			}
+		}
+	}
+
+	/*
+	Make this an exact copy of frameBuffer, resolution included
+	 */
+	public void copyFrom( FrameBuffer frameBuffer ) {
+		if ( width != frameBuffer.width || height != frameBuffer.height ) {
+			setResolution( frameBuffer.width, frameBuffer.height );
+		}
+		System.arraycopy( frameBuffer.rows, 0, rows, 0, rows.length );
+	}
+
+	@Override
+	public boolean equals( Object other ) {
+		return other instanceof FrameBuffer && width == ((FrameBuffer) other).width && height == ((FrameBuffer) other).height
+				&& Arrays.equals( rows, ((FrameBuffer) other).rows );
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode( rows );
+	}
+
+}
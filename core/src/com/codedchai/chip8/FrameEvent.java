@@ -0,0 +1,39 @@
+package com.codedchai.chip8;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/*
+One timer tick worth of emulation on the EmulatorRunner thread, or one display frame's worth when a RenderLoopRunner runs the
+emulator on the render thread, the event's duration is the time it took to run. Only ever touched through
+FlightRecorderEvents
+ */
+@Name( "com.codedchai.chip8.Frame" )
+@Label( "Emulated Frame" )
+@Category( "Chip-8" )
+@Description( "The cycles of one timer tick, the timer tick itself and publishing the frame" )
+@StackTrace( false )
+class FrameEvent extends jdk.jfr.Event {
+
+	@Label( "Tick" )
+	@Description( "The EmulatorRunner's tick count, or the RenderLoopRunner's frame count" )
+	long tick;
+
+	@Label( "Cycles" )
+	int cycles;
+
+	@Label( "Sprite Draws" )
+	long spriteDraws;
+
+	@Label( "Published" )
+	@Description( "Whether the display changed and a new frame was handed to the renderer" )
+	boolean published;
+
+	@Label( "Rewound" )
+	@Description( "The frame was restored from the rewind buffer instead of being run" )
+	boolean rewound;
+
+}
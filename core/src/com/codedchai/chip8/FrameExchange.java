@@ -0,0 +1,137 @@
+package com.codedchai.chip8;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+Hands finished frames from the emulator thread over to the render thread without locks or allocation.
+
+There are three buffers. The emulator owns the back buffer, the renderer owns the front buffer, and the newest finished frame
+sits in between. Publishing copies the frame into the back buffer and swaps it with the one in between, acquiring swaps the
+front buffer with the one in between. Since each side only ever touches the buffer it owns, the renderer can never see a
+frame that is still being drawn. Every published frame gets a sequence number so the renderer can tell whether the frame in
+between is one it has already shown.
+
+Frames also carry the time of the oldest key event that reached the emulator before they were drawn and that no acquired
+frame has carried yet. Acquiring such a frame is the first moment the input can be on screen, so the time since the event is
+recorded as its input latency.
+ */
+public class FrameExchange {
+
+	private final AtomicReference < Frame > latest = new AtomicReference <>( new Frame() );
+
+	/* Written by the render thread, read by the emulator thread */
+	private final AtomicLong acquiredSequence = new AtomicLong();
+
+	/* Only touched by the emulator thread */
+	private Frame back = new Frame();
+	private long publishedSequence;
+	/* The oldest input no acquired frame has carried yet, and the first frame that carried it */
+	private long unseenInputNanos;
+	private long unseenInputSequence;
+
+	/* Only touched by the render thread */
+	private Frame front = new Frame();
+	private long skippedFrames;
+	private long measuredInputNanos;
+	private final LatencyHistogram inputLatency = new LatencyHistogram();
+
+	/*
+	Emulator side. Copy a completed frame into the back buffer and make it the newest frame
+	 */
+	public void publish( FrameBuffer frameBuffer ) {
+		publish( frameBuffer, 0 );
+	}
+
+	/*
+	Emulator side. Publish a frame that was drawn after key events received at inputNanos or later, 0 if there were none
+	 */
+	public void publish( FrameBuffer frameBuffer, long inputNanos ) {
+		long sequence = ++publishedSequence;
+		if ( unseenInputNanos != 0 && acquiredSequence.get() >= unseenInputSequence ) {
+			unseenInputNanos = 0;
+		}
+		if ( unseenInputNanos == 0 && inputNanos != 0 ) {
+			unseenInputNanos = inputNanos;
+			unseenInputSequence = sequence;
+		}
+
+		back.frameBuffer.copyFrom( frameBuffer );
+		back.sequence = sequence;
+		back.publishNanos = System.nanoTime();
+		back.inputNanos = unseenInputNanos;
+		back = latest.getAndSet( back );
+	}
+
+	/*
+	Emulator side. Whether any frame has been published yet
+	 */
+	boolean hasPublished() {
+		return publishedSequence != 0;
+	}
+
+	/*
+	Render side. Swap in the newest frame if there is one we haven't seen yet, returns true if the front buffer changed
+	 */
+	public boolean acquire() {
+		if ( latest.get().sequence <= front.sequence ) {
+			return false;
+		}
+		long previousSequence = front.sequence;
+		front = latest.getAndSet( front );
+		skippedFrames = front.sequence - previousSequence - 1;
+		acquiredSequence.lazySet( front.sequence );
+
+		if ( front.inputNanos != 0 && front.inputNanos != measuredInputNanos ) {
+			inputLatency.record( System.nanoTime() - front.inputNanos );
+			measuredInputNanos = front.inputNanos;
+		}
+		FlightRecorderEvents.frameHandoff( front.sequence, front.publishNanos, skippedFrames );
+		return true;
+	}
+
+	/*
+	Render side. The most recently acquired frame, only valid until the next call to acquire()
+	 */
+	public FrameBuffer getFrontBuffer() {
+		return front.frameBuffer;
+	}
+
+	/*
+	Render side. Sequence number of the frame in the front buffer, 0 if nothing has been acquired yet
+	 */
+	public long getFrontSequence() {
+		return front.sequence;
+	}
+
+	/*
+	Render side. System.nanoTime() at the moment the frame in the front buffer was published
+	 */
+	public long getFrontPublishNanos() {
+		return front.publishNanos;
+	}
+
+	/*
+	Render side. How many frames were published and then replaced by a newer one before the last acquire() got to them
+	 */
+	public long getSkippedFrames() {
+		return skippedFrames;
+	}
+
+	/*
+	How long key events took from being received to being on a frame the renderer acquired. Recorded by the render thread,
+	readable from anywhere
+	 */
+	public LatencyHistogram getInputLatency() {
+		return inputLatency;
+	}
+
+	private static final class Frame {
+
+		final FrameBuffer frameBuffer = new FrameBuffer();
+		long sequence;
+		long publishNanos;
+		long inputNanos;
+	}
+
+}
@@ -0,0 +1,32 @@
+package com.codedchai.chip8;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/*
+The render thread picked up a new frame from the FrameExchange. Only ever touched through FlightRecorderEvents
+ */
+@Name( "com.codedchai.chip8.FrameHandoff" )
+@Label( "Frame Handoff" )
+@Category( "Chip-8" )
+@Description( "A published frame reached the render thread" )
+@StackTrace( false )
+class FrameHandoffEvent extends jdk.jfr.Event {
+
+	@Label( "Sequence" )
+	long sequence;
+
+	@Label( "Latency" )
+	@Description( "Time from the emulator publishing the frame to the renderer acquiring it" )
+	@Timespan( Timespan.NANOSECONDS )
+	long latency;
+
+	@Label( "Skipped Frames" )
+	@Description( "Frames that were published and replaced before the renderer got to them" )
+	long skippedFrames;
+
+}
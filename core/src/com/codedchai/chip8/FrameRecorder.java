@@ -0,0 +1,297 @@
+package com.codedchai.chip8;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/*
+Streams every frame the emulator publishes into a compact video file, for CI screenshots and bug reports. FrameRecording reads
+them back.
+
+Each frame is XORed against the previous one and only the bytes that changed are stored, with the same (zero run, literal
+length, literals) encoding as the RewindBuffer. Most frames only change a sprite or two, so they take a handful of bytes, and
+frames that came out identical to the previous one (a sprite drawn and erased within the same tick) aren't stored at all.
+Every KEYFRAME_INTERVAL frames, and whenever the ROM switches display resolution, one is stored against a blank display
+instead, so a reader can start decoding there, and their positions are written as an index when the recording is closed.
+
+Frames are encoded straight into one buffer that is written out whenever it fills up, and the copy of the previous frame is
+updated as the rows are compared, so a frame costs one pass over the display and nothing is allocated per frame.
+
+	header:		int magic, short version, short width, short height of the first frame
+	delta:		byte DELTA_FRAME, varint cycles since the previous frame, varint length, encoded XOR with the previous frame
+	keyframe:	byte KEYFRAME, varint cycle count, short width, short height, varint length, encoded frame
+	index:		byte INDEX, int frame count, int keyframe count, then per keyframe long frame number, long cycle count,
+				long file position
+	trailer:	long file position of the index, int magic
+
+A recording that was never closed has no index or trailer, FrameRecording rebuilds the index by scanning it.
+ */
+public class FrameRecorder implements Closeable {
+
+	/* "C8FR" */
+	static final int MAGIC = 0x43384652;
+	static final short VERSION = 2;
+	static final int HEADER_SIZE = 4 + 2 + 2 + 2;
+	static final int TRAILER_SIZE = 8 + 4;
+
+	static final byte DELTA_FRAME = 1;
+	static final byte KEYFRAME = 2;
+	static final byte INDEX = 3;
+
+	/* Frames between two keyframes, the most a reader ever has to decode to reach any frame */
+	static final int KEYFRAME_INTERVAL = 600;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int ROW_BYTES = Long.SIZE / Byte.SIZE;
+	/* The longest a frame can encode to, at the highest resolution: eight literals and three bytes of run lengths per long */
+	static final int MAX_ENCODED_SIZE = FrameBuffer.MAX_WORDS * (ROW_BYTES + 3);
+	/* Type, cycle varint, width, height and length varint */
+	private static final int MAX_RECORD_HEADER_SIZE = 1 + 10 + 2 + 2 + 5;
+	private static final int MAX_RECORD_SIZE = MAX_RECORD_HEADER_SIZE + MAX_ENCODED_SIZE;
+
+	private final FileChannel channel;
+	/* On the heap so frames can be encoded straight into its array */
+	private final ByteBuffer buffer = ByteBuffer.allocate( BUFFER_SIZE );
+
+	private final long[] previousRows = new long[FrameBuffer.MAX_WORDS];
+	private int previousWidth;
+	private int previousHeight;
+
+	/* Where the buffer starts in the file */
+	private long bufferPosition;
+
+	private long lastCycle;
+	private int frameCount;
+	private long[] keyframeNumbers = new long[64];
+	private long[] keyframeCycles = new long[64];
+	private long[] keyframePositions = new long[64];
+	private int keyframeCount;
+
+	private long bytesWritten;
+	private IOException error;
+	private boolean closed;
+
+	/*
+	Start recording every frame the emulator publishes into a new file at path, replacing anything that is already there
+	 */
+	public static FrameRecorder start( Emulator emulator, Path path ) throws IOException {
+		FrameBuffer frameBuffer = emulator.getFrameBuffer();
+		FrameRecorder recorder = new FrameRecorder( path, frameBuffer.getWidth(), frameBuffer.getHeight() );
+		emulator.setFrameRecorder( recorder );
+		return recorder;
+	}
+
+	private FrameRecorder( Path path, int width, int height ) throws IOException {
+		channel = FileChannel.open( path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING );
+
+		buffer.putInt( MAGIC );
+		buffer.putShort( VERSION );
+		buffer.putShort( (short) width );
+		buffer.putShort( (short) height );
+	}
+
+	/*
+	Called by the emulator with every frame it publishes
+	 */
+	void record( FrameBuffer frameBuffer, long cycle ) {
+		if ( closed ) {
+			return;
+		}
+
+		long[] rows = frameBuffer.rows;
+		int width = frameBuffer.getWidth();
+		int height = frameBuffer.getHeight();
+		boolean keyframe = frameCount % KEYFRAME_INTERVAL == 0 || width != previousWidth || height != previousHeight;
+
+		if ( buffer.remaining() < MAX_RECORD_SIZE ) {
+			flush();
+		}
+		/* Encode past the longest header the record could have, then move it down once we know how long the header is */
+		byte[] out = buffer.array();
+		int encodedStart = buffer.position() + MAX_RECORD_HEADER_SIZE;
+		int length = encode( rows, keyframe ? null : previousRows, out, encodedStart );
+		if ( length == 0 && !keyframe ) {
+			/* Drawn and erased again, nothing to see */
+			return;
+		}
+		if ( keyframe ) {
+			System.arraycopy( rows, 0, previousRows, 0, rows.length );
+			previousWidth = width;
+			previousHeight = height;
+			addKeyframe( frameCount, cycle, bufferPosition + buffer.position() );
+			buffer.put( KEYFRAME );
+			writeVarLong( buffer, cycle );
+			buffer.putShort( (short) width );
+			buffer.putShort( (short) height );
+		} else {
+			buffer.put( DELTA_FRAME );
+			writeVarLong( buffer, cycle - lastCycle );
+		}
+		writeVarLong( buffer, length );
+		System.arraycopy( out, encodedStart, out, buffer.position(), length );
+		buffer.position( buffer.position() + length );
+
+		lastCycle = cycle;
+		frameCount++;
+	}
+
+	/*
+	XOR rows against previous (or a blank display when previous is null) as big endian bytes and encode the result at outOffset,
+	returns the encoded length, 0 if nothing changed. Longs that didn't change are skipped whole, the ones that did are copied
+	into previous on the way so it holds rows again afterwards
+	 */
+	static int encode( long[] rows, long[] previous, byte[] out, int outOffset ) {
+		int position = outOffset;
+		/* The byte just after the last literal we wrote */
+		int written = 0;
+
+		for ( int row = 0; row < rows.length; row++ ) {
+			long changed = rows[row];
+			if ( previous != null ) {
+				changed ^= previous[row];
+				if ( changed == 0 ) {
+					continue;
+				}
+				previous[row] = rows[row];
+			} else if ( changed == 0 ) {
+				continue;
+			}
+
+			int leadingBytes = Long.numberOfLeadingZeros( changed ) / Byte.SIZE;
+			int trailingBytes = Long.numberOfTrailingZeros( changed ) / Byte.SIZE;
+			int first = row * ROW_BYTES + leadingBytes;
+			int last = row * ROW_BYTES + ROW_BYTES - 1 - trailingBytes;
+			position = writeVarInt( out, position, first - written );
+			position = writeVarInt( out, position, last - first + 1 );
+			for ( int shift = (ROW_BYTES - 1 - leadingBytes) * Byte.SIZE; shift >= trailingBytes * Byte.SIZE; shift -= Byte.SIZE ) {
+				out[position++] = (byte) (changed >>> shift);
+			}
+			written = last + 1;
+		}
+		return position - outOffset;
+	}
+
+	private void addKeyframe( long frame, long cycle, long position ) {
+		if ( keyframeCount == keyframeNumbers.length ) {
+			keyframeNumbers = Arrays.copyOf( keyframeNumbers, keyframeCount * 2 );
+			keyframeCycles = Arrays.copyOf( keyframeCycles, keyframeCount * 2 );
+			keyframePositions = Arrays.copyOf( keyframePositions, keyframeCount * 2 );
+		}
+		keyframeNumbers[keyframeCount] = frame;
+		keyframeCycles[keyframeCount] = cycle;
+		keyframePositions[keyframeCount] = position;
+		keyframeCount++;
+	}
+
+	private void flush() {
+		buffer.flip();
+		try {
+			while ( buffer.hasRemaining() ) {
+				channel.write( buffer );
+			}
+		} catch ( IOException e ) {
+			/* The emulator can't do anything about it mid frame, hang on to it and report it from close() */
+			if ( error == null ) {
+				error = e;
+			}
+		}
+		bufferPosition += buffer.limit();
+		bytesWritten = bufferPosition;
+		buffer.clear();
+	}
+
+	public int getFrameCount() {
+		return frameCount;
+	}
+
+	/* Bytes handed to the file so far, anything still in the buffer isn't counted */
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	/*
+	Stop recording the emulator, write the keyframe index and close the file. Any write that failed along the way is thrown
+	from here
+	 */
+	public void close( Emulator emulator ) throws IOException {
+		if ( emulator.getFrameRecorder() == this ) {
+			emulator.setFrameRecorder( null );
+		}
+		close();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if ( closed ) {
+			return;
+		}
+		closed = true;
+
+		long indexPosition = bufferPosition + buffer.position();
+		writeIndexPart( 1 + 4 + 4 );
+		buffer.put( INDEX );
+		buffer.putInt( frameCount );
+		buffer.putInt( keyframeCount );
+		for ( int i = 0; i < keyframeCount; i++ ) {
+			writeIndexPart( 3 * 8 );
+			buffer.putLong( keyframeNumbers[i] );
+			buffer.putLong( keyframeCycles[i] );
+			buffer.putLong( keyframePositions[i] );
+		}
+		writeIndexPart( TRAILER_SIZE );
+		buffer.putLong( indexPosition );
+		buffer.putInt( MAGIC );
+		flush();
+
+		channel.close();
+		if ( error != null ) {
+			throw error;
+		}
+	}
+
+	private void writeIndexPart( int size ) {
+		if ( buffer.remaining() < size ) {
+			flush();
+		}
+	}
+
+	private static int writeVarInt( byte[] out, int position, int value ) {
+		while ( (value & ~0x7F) != 0 ) {
+			out[position++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out[position++] = (byte) value;
+		return position;
+	}
+
+	private static void writeVarLong( ByteBuffer out, long value ) {
+		while ( (value & ~0x7FL) != 0 ) {
+			out.put( (byte) ((value & 0x7F) | 0x80) );
+			value >>>= 7;
+		}
+		out.put( (byte) value );
+	}
+
+	/*
+	Run a ROM without a display and record it: ROM path, output file and how many frames to run
+	 */
+	public static void main( String[] args ) throws Exception {
+		Emulator emulator = new Emulator();
+		emulator.loadROM( Paths.get( args[0] ) );
+		int frames = args.length > 2 ? Integer.parseInt( args[2] ) : 3600;
+
+		FrameRecorder recorder = start( emulator, Paths.get( args[1] ) );
+		long start = System.nanoTime();
+		emulator.runFrames( frames );
+		recorder.close( emulator );
+		long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+		System.out.println( frames + " frames run, " + recorder.getFrameCount() + " recorded into " + recorder.getBytesWritten() + " bytes in " + elapsedMillis + " ms" );
+	}
+
+}
@@ -0,0 +1,325 @@
+package com.codedchai.chip8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/*
+Reads a video written by FrameRecorder. It works like a cursor: seek() to any frame, which starts from the nearest keyframe
+at or before it, then next() steps forward one frame at a time. Frames can be exported as PNG images.
+
+If the recording was never closed (the emulator crashed, the process was killed) there is no index at the end, so the file
+is scanned once to rebuild it and everything up to the last complete frame can still be read.
+ */
+public class FrameRecording {
+
+	private static final int ROW_BYTES = Long.SIZE / Byte.SIZE;
+	private static final byte[] PNG_SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+
+	private final ByteBuffer file;
+
+	private int frameCount;
+	private long[] keyframeNumbers;
+	private long[] keyframePositions;
+	private int keyframeCount;
+
+	/* The frame the cursor is on, and its resolution */
+	private int width;
+	private int height;
+	private final byte[] frame;
+	private final LongBuffer frameRows;
+	private final byte[] encoded;
+	private int frameNumber = -1;
+	private long cycle;
+	/* Where the record after the current frame starts */
+	private int nextPosition;
+
+	public FrameRecording( Path path ) throws IOException {
+		try ( FileChannel channel = FileChannel.open( path, StandardOpenOption.READ ) ) {
+			if ( channel.size() < FrameRecorder.HEADER_SIZE ) {
+				throw new IllegalArgumentException( path + " is " + channel.size() + " bytes, too small to be a frame recording" );
+			}
+			file = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+		}
+
+		int magic = file.getInt( 0 );
+		if ( magic != FrameRecorder.MAGIC ) {
+			throw new IllegalArgumentException( "Not a frame recording, magic number is " + Integer.toHexString( magic ) );
+		}
+		short version = file.getShort( 4 );
+		if ( version != FrameRecorder.VERSION ) {
+			throw new IllegalArgumentException( "Frame recording is version " + version + " but only version " + FrameRecorder.VERSION + " is supported" );
+		}
+		width = file.getShort( 6 );
+		height = file.getShort( 8 );
+
+		frame = new byte[FrameBuffer.MAX_WORDS * ROW_BYTES];
+		frameRows = ByteBuffer.wrap( frame ).asLongBuffer();
+		encoded = new byte[FrameRecorder.MAX_ENCODED_SIZE];
+
+		if ( !readIndex() ) {
+			rebuildIndex();
+		}
+	}
+
+	/*
+	Load the index the recorder wrote when it was closed, false if there isn't one
+	 */
+	private boolean readIndex() {
+		int size = file.limit();
+		if ( size < FrameRecorder.HEADER_SIZE + FrameRecorder.TRAILER_SIZE || file.getInt( size - 4 ) != FrameRecorder.MAGIC ) {
+			return false;
+		}
+		long indexPosition = file.getLong( size - FrameRecorder.TRAILER_SIZE );
+		if ( indexPosition < FrameRecorder.HEADER_SIZE || indexPosition >= size || file.get( (int) indexPosition ) != FrameRecorder.INDEX ) {
+			return false;
+		}
+
+		ByteBuffer index = file.duplicate();
+		index.position( (int) indexPosition + 1 );
+		frameCount = index.getInt();
+		keyframeCount = index.getInt();
+		keyframeNumbers = new long[keyframeCount];
+		keyframePositions = new long[keyframeCount];
+		for ( int i = 0; i < keyframeCount; i++ ) {
+			keyframeNumbers[i] = index.getLong();
+			/* The keyframe's cycle count, the keyframe itself has it too */
+			index.getLong();
+			keyframePositions[i] = index.getLong();
+		}
+		return true;
+	}
+
+	/*
+	Walk every record to find the keyframes, stopping at the first one that is cut short
+	 */
+	private void rebuildIndex() {
+		keyframeNumbers = new long[16];
+		keyframePositions = new long[16];
+
+		ByteBuffer records = file.duplicate();
+		records.position( FrameRecorder.HEADER_SIZE );
+		while ( records.hasRemaining() ) {
+			int recordPosition = records.position();
+			byte type = records.get();
+			if ( type != FrameRecorder.DELTA_FRAME && type != FrameRecorder.KEYFRAME ) {
+				break;
+			}
+			long stamp = readVarLong( records );
+			if ( type == FrameRecorder.KEYFRAME ) {
+				if ( records.remaining() < 4 ) {
+					break;
+				}
+				records.position( records.position() + 4 );
+			}
+			long length = readVarLong( records );
+			if ( stamp < 0 || length < 0 || length > records.remaining() ) {
+				break;
+			}
+			records.position( records.position() + (int) length );
+
+			if ( type == FrameRecorder.KEYFRAME ) {
+				if ( keyframeCount == keyframeNumbers.length ) {
+					keyframeNumbers = Arrays.copyOf( keyframeNumbers, keyframeCount * 2 );
+					keyframePositions = Arrays.copyOf( keyframePositions, keyframeCount * 2 );
+				}
+				keyframeNumbers[keyframeCount] = frameCount;
+				keyframePositions[keyframeCount] = recordPosition;
+				keyframeCount++;
+			}
+			frameCount++;
+		}
+	}
+
+	/*
+	Move the cursor to the given frame
+	 */
+	public void seek( int target ) {
+		if ( target < 0 || target >= frameCount ) {
+			throw new IndexOutOfBoundsException( "Frame " + target + " is outside of the recording's " + frameCount + " frames" );
+		}
+
+		if ( target < frameNumber || frameNumber < 0 || target - frameNumber > FrameRecorder.KEYFRAME_INTERVAL ) {
+			int keyframe = Arrays.binarySearch( keyframeNumbers, 0, keyframeCount, target );
+			if ( keyframe < 0 ) {
+				keyframe = -keyframe - 2;
+			}
+			frameNumber = (int) keyframeNumbers[keyframe] - 1;
+			nextPosition = (int) keyframePositions[keyframe];
+		}
+		while ( frameNumber < target ) {
+			next();
+		}
+	}
+
+	/*
+	Move the cursor on to the next frame, false if there are no more
+	 */
+	public boolean next() {
+		if ( frameNumber + 1 >= frameCount ) {
+			return false;
+		}
+
+		ByteBuffer records = file.duplicate();
+		records.position( nextPosition );
+		byte type = records.get();
+		long stamp = readVarLong( records );
+		if ( type == FrameRecorder.KEYFRAME ) {
+			width = records.getShort();
+			height = records.getShort();
+		}
+		int length = (int) readVarLong( records );
+		records.get( encoded, 0, length );
+		nextPosition = records.position();
+
+		if ( type == FrameRecorder.KEYFRAME ) {
+			Arrays.fill( frame, (byte) 0 );
+			cycle = stamp;
+		} else {
+			cycle += stamp;
+		}
+		RewindBuffer.decode( encoded, 0, length, frame );
+		frameNumber++;
+		return true;
+	}
+
+	public int getFrameNumber() {
+		return frameNumber;
+	}
+
+	/* The emulator's cycle count when the current frame was published */
+	public long getCycle() {
+		return cycle;
+	}
+
+	/*
+	64 pixels of row y of the current frame, word 0 is the left most 64 and the left most pixel is the most significant bit
+	 */
+	public long getRowWord( int y, int word ) {
+		return frameRows.get( (y * (width / Long.SIZE)) + word );
+	}
+
+	public boolean isPixelSet( int x, int y ) {
+		return (getRowWord( y, x / Long.SIZE ) & (Long.MIN_VALUE >>> (x % Long.SIZE))) != 0;
+	}
+
+	/*
+	Copy the current frame into a display, switching it to the frame's resolution
+	 */
+	public void copyTo( FrameBuffer frameBuffer ) {
+		frameBuffer.setResolution( width, height );
+		long[] rows = frameBuffer.rows;
+		for ( int i = 0; i < rows.length; i++ ) {
+			rows[i] = frameRows.get( i );
+		}
+	}
+
+	public int getFrameCount() {
+		return frameCount;
+	}
+
+	/* The current frame's resolution, before the first seek the resolution the recording started at */
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/*
+	Write the current frame as a black and white PNG, every pixel scaled up to a scale x scale square
+	 */
+	public void writePng( Path path, int scale ) throws IOException {
+		int imageWidth = width * scale;
+		int imageHeight = height * scale;
+		int rowBytes = (imageWidth + 7) / 8;
+
+		/* One bit per pixel, each scanline starts with filter type 0 */
+		byte[] scanlines = new byte[(rowBytes + 1) * imageHeight];
+		for ( int y = 0; y < imageHeight; y++ ) {
+			int lineStart = y * (rowBytes + 1) + 1;
+			for ( int x = 0; x < imageWidth; x++ ) {
+				if ( isPixelSet( x / scale, y / scale ) ) {
+					scanlines[lineStart + x / 8] |= 0x80 >>> (x % 8);
+				}
+			}
+		}
+
+		ByteArrayOutputStream png = new ByteArrayOutputStream();
+		png.write( PNG_SIGNATURE );
+
+		ByteBuffer header = ByteBuffer.allocate( 13 );
+		header.putInt( imageWidth ).putInt( imageHeight );
+		/* Bit depth 1, grayscale, deflate, adaptive filtering, not interlaced */
+		header.put( (byte) 1 ).put( (byte) 0 ).put( (byte) 0 ).put( (byte) 0 ).put( (byte) 0 );
+		writeChunk( png, "IHDR", header.array() );
+
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		try ( DeflaterOutputStream deflater = new DeflaterOutputStream( compressed, new Deflater( Deflater.BEST_COMPRESSION ) ) ) {
+			deflater.write( scanlines );
+		}
+		writeChunk( png, "IDAT", compressed.toByteArray() );
+		writeChunk( png, "IEND", new byte[0] );
+
+		Files.write( path, png.toByteArray() );
+	}
+
+	private static void writeChunk( OutputStream out, String type, byte[] data ) throws IOException {
+		byte[] typeBytes = type.getBytes( "US-ASCII" );
+		CRC32 crc = new CRC32();
+		crc.update( typeBytes );
+		crc.update( data );
+
+		ByteBuffer chunk = ByteBuffer.allocate( 4 + 4 + data.length + 4 );
+		chunk.putInt( data.length ).put( typeBytes ).put( data ).putInt( (int) crc.getValue() );
+		out.write( chunk.array() );
+	}
+
+	/*
+	-1 if the buffer runs out before the varint ends
+	 */
+	private static long readVarLong( ByteBuffer buffer ) {
+		long value = 0;
+		for ( int shift = 0; buffer.hasRemaining() && shift < 64; shift += 7 ) {
+			byte b = buffer.get();
+			value |= (long) (b & 0x7F) << shift;
+			if ( b >= 0 ) {
+				return value;
+			}
+		}
+		return -1;
+	}
+
+	/*
+	Export frames as a numbered PNG sequence: recording, output directory, and optionally the first frame, the last frame and
+	the scale
+	 */
+	public static void main( String[] args ) throws Exception {
+		FrameRecording recording = new FrameRecording( Paths.get( args[0] ) );
+		Path directory = Paths.get( args[1] );
+		int first = args.length > 2 ? Integer.parseInt( args[2] ) : 0;
+		int last = args.length > 3 ? Integer.parseInt( args[3] ) : recording.getFrameCount() - 1;
+		int scale = args.length > 4 ? Integer.parseInt( args[4] ) : 8;
+
+		Files.createDirectories( directory );
+		recording.seek( first );
+		do {
+			recording.writePng( directory.resolve( String.format( "frame_%06d.png", recording.getFrameNumber() ) ), scale );
+		} while ( recording.getFrameNumber() < last && recording.next() );
+
+		System.out.println( (last - first + 1) + " of " + recording.getFrameCount() + " frames exported to " + directory );
+	}
+
+}
@@ -0,0 +1,120 @@
+package com.codedchai.chip8;
+
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.utils.Disposable;
+
+import java.nio.ByteBuffer;
+
+/*
+Draws the whole display as one textured quad. Every changed frame is unpacked into a single reused Pixmap and uploaded into
+a texture the size of the display, which is then stretched over the world with one draw call, instead of a separate batch
+for every lit pixel. When the ROM switches resolution the pixmap and texture are replaced with ones of the new size.
+ */
+public class FrameRenderer implements Disposable {
+
+	/* RGBA8888 pixels. Both colors are the same in any byte order, so we can write them as whole ints */
+	private static final int PIXEL_ON = 0xFFFFFFFF;
+	private static final int PIXEL_OFF = 0x00000000;
+	private static final int BYTES_PER_PIXEL = 4;
+
+	private Pixmap pixmap;
+	private Texture texture;
+	private final SpriteBatch batch;
+
+	/* The resolution of the texture, the last uploaded frame's */
+	private int width;
+	private int height;
+
+	private long textureUploads;
+	private long drawCalls;
+	private int lastFrameDrawCalls;
+
+	public FrameRenderer() {
+		createTexture( FrameBuffer.WIDTH, FrameBuffer.HEIGHT );
+		batch = new SpriteBatch();
+	}
+
+	private void createTexture( int width, int height ) {
+		this.width = width;
+		this.height = height;
+		pixmap = new Pixmap( width, height, Pixmap.Format.RGBA8888 );
+		texture = new Texture( pixmap );
+		texture.setFilter( Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest );
+	}
+
+	/*
+	Unpack a frame into the pixmap and upload it to the texture. Only call this when the frame actually changed
+	 */
+	public void upload( FrameBuffer frameBuffer ) {
+		if ( frameBuffer.getWidth() != width || frameBuffer.getHeight() != height ) {
+			texture.dispose();
+			pixmap.dispose();
+			createTexture( frameBuffer.getWidth(), frameBuffer.getHeight() );
+		}
+		ByteBuffer pixels = pixmap.getPixels();
+
+		for ( int y = 0; y < height; y++ ) {
+			int rowOffset = y * width * BYTES_PER_PIXEL;
+			for ( int word = 0; word < frameBuffer.getRowWords(); word++ ) {
+				long row = frameBuffer.getRowWord( y, word );
+				int wordOffset = rowOffset + (word * Long.SIZE * BYTES_PER_PIXEL);
+				for ( int x = 0; x < Long.SIZE; x++ ) {
+					pixels.putInt( wordOffset + (x * BYTES_PER_PIXEL), row < 0 ? PIXEL_ON : PIXEL_OFF );
+					row <<= 1;
+				}
+			}
+		}
+
+		texture.draw( pixmap, 0, 0 );
+		textureUploads++;
+	}
+
+	/*
+	Draw the last uploaded frame over the display area (0, 0) to (width, height) in world units, one unit per pixel. Row 0 of
+	the display ends up at y = 0, the same place the per pixel rectangles used to put it
+	 */
+	public void render( Camera camera ) {
+		batch.setProjectionMatrix( camera.combined );
+		batch.begin();
+		batch.draw( texture, 0, 0, width, height, 0, 0, width, height, false, true );
+		batch.end();
+
+		lastFrameDrawCalls = batch.renderCalls;
+		drawCalls += lastFrameDrawCalls;
+	}
+
+	/* The resolution of the last uploaded frame */
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/* How many times a frame has been uploaded to the texture */
+	public long getTextureUploads() {
+		return textureUploads;
+	}
+
+	/* Total GL draw calls issued by render() */
+	public long getDrawCalls() {
+		return drawCalls;
+	}
+
+	/* GL draw calls issued by the most recent render(), this should always be 1 */
+	public int getLastFrameDrawCalls() {
+		return lastFrameDrawCalls;
+	}
+
+	@Override
+	public void dispose() {
+		batch.dispose();
+		texture.dispose();
+		pixmap.dispose();
+	}
+
+}
@@ -0,0 +1,91 @@
+package com.codedchai.chip8;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+Running mean, variance and extremes of the time between frames, using Welford's method so nothing but a few longs and doubles
+is kept no matter how many frames go by. One thread records, any thread can read. Readers sample the fields while they are
+being written, so a read can be a frame behind.
+ */
+public final class FrameTimeStats {
+
+	private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos( 1 );
+
+	/* Only touched by the recording thread */
+	private long lastFrameNanos;
+
+	private long count;
+	private double meanNanos;
+	/* Sum of squared differences from the mean */
+	private double squaredDeviations;
+	private long minNanos = Long.MAX_VALUE;
+	private long maxNanos;
+
+	/*
+	Call once per frame, the time since the previous call is recorded as a frame time
+	 */
+	void frame( long nanos ) {
+		if ( lastFrameNanos != 0 ) {
+			record( nanos - lastFrameNanos );
+		}
+		lastFrameNanos = nanos;
+	}
+
+	void record( long frameNanos ) {
+		count++;
+		double delta = frameNanos - meanNanos;
+		meanNanos += delta / count;
+		squaredDeviations += delta * (frameNanos - meanNanos);
+		if ( frameNanos < minNanos ) {
+			minNanos = frameNanos;
+		}
+		if ( frameNanos > maxNanos ) {
+			maxNanos = frameNanos;
+		}
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public double getMeanMillis() {
+		return meanNanos / NANOS_PER_MILLI;
+	}
+
+	/* In milliseconds squared */
+	public double getVariance() {
+		long frames = count;
+		return frames < 2 ? 0 : squaredDeviations / (frames - 1) / (NANOS_PER_MILLI * NANOS_PER_MILLI);
+	}
+
+	public double getStandardDeviationMillis() {
+		return Math.sqrt( getVariance() );
+	}
+
+	public double getMinMillis() {
+		return count == 0 ? 0 : minNanos / NANOS_PER_MILLI;
+	}
+
+	public double getMaxMillis() {
+		return maxNanos / NANOS_PER_MILLI;
+	}
+
+	/*
+	Start over, the next frame starts a new measurement
+	 */
+	public void reset() {
+		lastFrameNanos = 0;
+		count = 0;
+		meanNanos = 0;
+		squaredDeviations = 0;
+		minNanos = Long.MAX_VALUE;
+		maxNanos = 0;
+	}
+
+	@Override
+	public String toString() {
+		return String.format( "%d frames, %.2f ms mean, %.2f ms standard deviation, %.2f - %.2f ms", count, getMeanMillis(), getStandardDeviationMillis(),
+				getMinMillis(), getMaxMillis() );
+	}
+
+}
@@ -0,0 +1,248 @@
+package com.codedchai.chip8;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+/*
+Runs a large batch of emulators without a display, for input search, regression runs and bots.
+
+Instead of one thread per emulator every session is split into slices of SLICE_FRAMES frames, and the slices are run on a
+work stealing ForkJoinPool with one worker per core. A session that still has frames left after a slice forks its next slice
+back onto the pool, so thousands of sessions share a handful of threads, nobody ever sleeps or waits, and idle workers steal
+slices from busy ones. Sessions never touch each other, so throughput scales with the number of cores.
+
+Nothing is shown or published while a batch runs, read whatever you need out of each session's emulator once run() returns.
+ */
+public class HeadlessBatch {
+
+	/* How many frames a session runs before it gives its worker back to the pool */
+	private static final int SLICE_FRAMES = 60;
+
+	private final ForkJoinPool pool;
+	private final List < Session > sessions = new ArrayList <>();
+
+	/* Totals from the last call to run() */
+	private long cyclesRun;
+	private long elapsedNanos;
+
+	public static final class Session {
+
+		private final Emulator emulator;
+		private final long frames;
+		private final EmulatorCondition stopCondition;
+
+		private long framesRun;
+		private Throwable failure;
+
+		Session( Emulator emulator, long frames, EmulatorCondition stopCondition ) {
+			this.emulator = emulator;
+			this.frames = frames;
+			this.stopCondition = stopCondition;
+		}
+
+		public Emulator getEmulator() {
+			return emulator;
+		}
+
+		public long getFramesRun() {
+			return framesRun;
+		}
+
+		/* Whatever the emulator threw, errors included, null if the session ran to the end */
+		public Throwable getFailure() {
+			return failure;
+		}
+
+		/*
+		Run up to SLICE_FRAMES frames, returns true if the session has more to do
+		 */
+		boolean runSlice() {
+			try {
+				long sliceEnd = Math.min( frames, framesRun + SLICE_FRAMES );
+				while ( framesRun < sliceEnd ) {
+					if ( stopCondition != null && stopCondition.isMet( emulator ) ) {
+						return false;
+					}
+					emulator.step( emulator.getCyclesPerFrame() );
+					emulator.tickTimers();
+					framesRun++;
+				}
+				return framesRun < frames;
+			} catch ( Throwable e ) {
+				/* Errors too, a broken compiled block or a stack overflow only ends this session, not the whole batch */
+				failure = e;
+				return false;
+			}
+		}
+	}
+
+	/*
+	A batch with one worker per available core
+	 */
+	public HeadlessBatch() {
+		this( Runtime.getRuntime().availableProcessors() );
+	}
+
+	public HeadlessBatch( int parallelism ) {
+		pool = new ForkJoinPool( parallelism );
+	}
+
+	/*
+	Add a session that runs the emulator for the given number of frames
+	 */
+	public Session add( Emulator emulator, long frames ) {
+		return add( emulator, frames, null );
+	}
+
+	/*
+	Add a session that runs the emulator for the given number of frames, or until the condition is met. The condition is
+	checked before every frame on whichever worker is running the session
+	 */
+	public Session add( Emulator emulator, long frames, EmulatorCondition stopCondition ) {
+		Session session = new Session( emulator, frames, stopCondition );
+		sessions.add( session );
+		return session;
+	}
+
+	/*
+	Add count sessions that all run the same ROM. The ROM buffer is only ever read, every emulator copies it into its own memory
+	 */
+	public List < Session > addAll( ByteBuffer rom, int count, long frames, ExecutionEngineFactory engines ) {
+		List < Session > added = new ArrayList <>( count );
+		ByteBuffer readOnlyRom = rom.asReadOnlyBuffer();
+		for ( int i = 0; i < count; i++ ) {
+			Emulator emulator = new Emulator( readOnlyRom );
+			if ( engines != null ) {
+				emulator.setExecutionEngine( engines.create() );
+			}
+			added.add( add( emulator, frames ) );
+		}
+		return added;
+	}
+
+	/*
+	Engines hold per emulator state, so every emulator needs its own
+	 */
+	public interface ExecutionEngineFactory {
+
+		ExecutionEngine create();
+	}
+
+	/*
+	Run every session to the end and wait for them all
+	 */
+	public void run() throws InterruptedException {
+		long[] cyclesBefore = new long[sessions.size()];
+		for ( int i = 0; i < sessions.size(); i++ ) {
+			cyclesBefore[i] = sessions.get( i ).emulator.getCycleCount();
+		}
+
+		CountDownLatch finished = new CountDownLatch( sessions.size() );
+		long start = System.nanoTime();
+		for ( Session session : sessions ) {
+			pool.execute( new SliceTask( session, finished ) );
+		}
+		finished.await();
+		elapsedNanos = System.nanoTime() - start;
+
+		cyclesRun = 0;
+		for ( int i = 0; i < sessions.size(); i++ ) {
+			cyclesRun += sessions.get( i ).emulator.getCycleCount() - cyclesBefore[i];
+		}
+	}
+
+	public List < Session > getSessions() {
+		return Collections.unmodifiableList( sessions );
+	}
+
+	/* Cycles run by every session together in the last run() */
+	public long getCyclesRun() {
+		return cyclesRun;
+	}
+
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/* Instructions per second across the whole batch in the last run() */
+	public double getInstructionsPerSecond() {
+		return elapsedNanos == 0 ? 0 : cyclesRun * (double) TimeUnit.SECONDS.toNanos( 1 ) / elapsedNanos;
+	}
+
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	/*
+	Runs one slice of a session and forks the next one, nothing ever waits on a slice so no worker is ever blocked
+	 */
+	private static final class SliceTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Session session;
+		private final CountDownLatch finished;
+
+		SliceTask( Session session, CountDownLatch finished ) {
+			this.session = session;
+			this.finished = finished;
+		}
+
+		@Override
+		protected void compute() {
+			boolean forked = false;
+			try {
+				if ( session.runSlice() ) {
+					new SliceTask( session, finished ).fork();
+					forked = true;
+				}
+			} finally {
+				/* Whatever happens run() must hear the session is done, or it waits forever */
+				if ( !forked ) {
+					finished.countDown();
+				}
+			}
+		}
+	}
+
+	/*
+	Run the same ROM many times over and report the throughput: ROM path, number of sessions, frames per session and
+	optionally "block" to use the block compiling engine
+	 */
+	public static void main( String[] args ) throws Exception {
+		ByteBuffer rom = ROM.loadROM( Paths.get( args[0] ) );
+		int count = args.length > 1 ? Integer.parseInt( args[1] ) : 1000;
+		long frames = args.length > 2 ? Long.parseLong( args[2] ) : 600;
+		ExecutionEngineFactory engines = null;
+		if ( args.length > 3 && args[3].equals( "block" ) ) {
+			engines = new ExecutionEngineFactory() {
+				@Override
+				public ExecutionEngine create() {
+					return new BlockCompilingEngine();
+				}
+			};
+		}
+
+		HeadlessBatch batch = new HeadlessBatch();
+		batch.addAll( rom, count, frames, engines );
+		batch.run();
+		batch.shutdown();
+
+		int failed = 0;
+		for ( Session session : batch.getSessions() ) {
+			if ( session.getFailure() != null ) {
+				failed++;
+			}
+		}
+		System.out.println( count + " sessions, " + batch.getCyclesRun() + " instructions in " + TimeUnit.NANOSECONDS.toMillis( batch.getElapsedNanos() )
+				+ " ms, " + Math.round( batch.getInstructionsPerSecond() ) + " instructions per second, " + failed + " failed" );
+	}
+
+}
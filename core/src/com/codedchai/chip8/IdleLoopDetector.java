@@ -0,0 +1,168 @@
+package com.codedchai.chip8;
+
+/*
+Spots the loops a ROM sits in while it waits for something from outside the machine, so Emulator.step can skip the cycles
+instead of running them one by one.
+
+Three kinds of waiting are recognised:
+
+	Fx0A with no key down	re-executes itself every cycle and changes nothing until a key is pressed
+	00FD					SUPER-CHIP's exit, which re-executes itself forever
+	Fx07, 3xkk / 4xkk, 1nnn	copies the delay timer into Vx, and as long as the skip doesn't fire jumps straight back
+
+Keys and the delay timer only ever change between steps, when a key is set or the timers tick, so once a step starts inside
+one of these loops it stays there for the rest of the step. We can then jump straight to the end of the step, leaving the
+machine exactly the way running every cycle would have left it: the same program counter, registers and last opcode. With
+the runner sleeping until the next tick, a ROM that is waiting leaves the emulator thread idle instead of spinning.
+
+Skipped cycles never run through the execution engine, so nothing is skipped while tracing or profiling is on or a debugger
+is attached, and they see every cycle.
+ */
+final class IdleLoopDetector {
+
+	/* Fx07, the skip and the jump back */
+	private static final int TIMER_POLL_LOOP_LENGTH = 3;
+
+	/* Returned by cyclesUntilIdle when the machine is not waiting */
+	static final int NOT_IDLE = -1;
+
+	/*
+	Every opcode peeked at so far. The detector looks behind the program counter, often at data rather than code, so it decodes
+	on its own instead of through the emulator's decode cache: filling that would make ordinary data writes count as code
+	writes and throw compiled blocks away. The decoding only depends on the opcode, and Instruction is immutable, so one table
+	is shared by every emulator
+	 */
+	private static final Instruction[] decodedOpcodes = new Instruction[0x10000];
+	private static final boolean[] unknownOpcodes = new boolean[0x10000];
+
+	private IdleLoopDetector() {
+	}
+
+	/*
+	How many cycles the emulator has to run normally before it is at the top of an idle loop, NOT_IDLE if it isn't in one. A
+	step can start part way through a timer polling loop, so this can be up to two cycles
+	 */
+	static int cyclesUntilIdle( Emulator emulator ) {
+		if ( emulator.getTracer().isInfoEnabled() || emulator.getProfiler().isEnabled() || emulator.getDebugger() != null ) {
+			return NOT_IDLE;
+		}
+
+		int programCounter = emulator.programCounter;
+		Instruction instruction = peek( emulator, programCounter );
+		if ( instruction == null ) {
+			return NOT_IDLE;
+		}
+
+		switch ( instruction.operation ) {
+			case LD_VX_K:
+				return anyKeyDown( emulator ) ? NOT_IDLE : 0;
+			case EXIT:
+				return 0;
+			case LD_VX_DT:
+				return isTimerPollLoop( emulator, programCounter ) ? 0 : NOT_IDLE;
+			case SE_VX_KK:
+			case SNE_VX_KK:
+				return isTimerPollLoop( emulator, programCounter - 2 ) ? 2 : NOT_IDLE;
+			case JP:
+				return isTimerPollLoop( emulator, programCounter - 4 ) ? 1 : NOT_IDLE;
+			default:
+				return NOT_IDLE;
+		}
+	}
+
+	/*
+	With the emulator at the top of an idle loop, skip as many of the given cycles as can be skipped without changing what the
+	machine ends up doing. Returns the number of cycles skipped, the rest still have to be run
+	 */
+	static int skip( Emulator emulator, int cycles ) {
+		int programCounter = emulator.programCounter;
+		Instruction instruction = peek( emulator, programCounter );
+		if ( instruction == null ) {
+			return 0;
+		}
+
+		if ( instruction.operation == Operation.EXIT ) {
+			emulator.opcode = instruction.opcode;
+			return cycles;
+		}
+		if ( instruction.operation == Operation.LD_VX_K ) {
+			if ( anyKeyDown( emulator ) ) {
+				return 0;
+			}
+			emulator.opcode = instruction.opcode;
+			return cycles;
+		}
+
+		if ( instruction.operation != Operation.LD_VX_DT || !isTimerPollLoop( emulator, programCounter ) ) {
+			return 0;
+		}
+
+		/* Run one pass of the loop in our heads, if the skip fires we are leaving the loop and there is nothing to skip */
+		Instruction test = peek( emulator, programCounter + 2 );
+		byte polled = (byte) emulator.delayTimer;
+		boolean skips;
+		if ( test.operation == Operation.SE_VX_KK ) {
+			skips = polled == (test.kk & 0xFF);
+		} else {
+			skips = polled != test.kk;
+		}
+		if ( skips ) {
+			return 0;
+		}
+
+		int passes = cycles / TIMER_POLL_LOOP_LENGTH;
+		if ( passes == 0 ) {
+			return 0;
+		}
+		emulator.vRegisters[instruction.x] = polled;
+		emulator.opcode = peek( emulator, programCounter + 4 ).opcode;
+		return passes * TIMER_POLL_LOOP_LENGTH;
+	}
+
+	/*
+	Fx07 at top, then 3xkk or 4xkk testing the same register, then a jump back to top
+	 */
+	private static boolean isTimerPollLoop( Emulator emulator, int top ) {
+		Instruction load = peek( emulator, top );
+		if ( load == null || load.operation != Operation.LD_VX_DT ) {
+			return false;
+		}
+		Instruction test = peek( emulator, top + 2 );
+		if ( test == null || (test.operation != Operation.SE_VX_KK && test.operation != Operation.SNE_VX_KK) || test.x != load.x ) {
+			return false;
+		}
+		Instruction jump = peek( emulator, top + 4 );
+		return jump != null && jump.operation == Operation.JP && jump.nnn == top;
+	}
+
+	private static boolean anyKeyDown( Emulator emulator ) {
+		byte[] keys = emulator.keys;
+		for ( int i = 0; i < keys.length; i++ ) {
+			if ( keys[i] != 0 ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	The instruction at the address, or null if there isn't a valid one there
+	 */
+	private static Instruction peek( Emulator emulator, int address ) {
+		if ( address < 0 || address + 1 >= emulator.memory.length ) {
+			return null;
+		}
+		int opcode = emulator.readOpcode( address );
+		Instruction instruction = decodedOpcodes[opcode];
+		if ( instruction == null && !unknownOpcodes[opcode] ) {
+			try {
+				instruction = Emulator.decodeOpcode( opcode );
+				decodedOpcodes[opcode] = instruction;
+			} catch ( Exception e ) {
+				unknownOpcodes[opcode] = true;
+			}
+		}
+		return instruction;
+	}
+
+}
@@ -0,0 +1,148 @@
+package com.codedchai.chip8;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+Records everything from outside the machine that changes what it does, so InputReplay can play a session back exactly.
+
+Execution itself is deterministic once the random number generator's state is known, so all we need is the starting state
+(a SaveState, which includes the generator) and every key press, key release and timer tick stamped with the cycle it
+happened on. Events are appended to the file as they happen:
+
+	header:	int magic, short version, SaveState of the machine when recording started
+	event:	varint cycles since the previous event, byte code
+	codes:	0x00 - 0x0F key released, 0x10 - 0x1F key pressed, TIMER_TICK, END (written by close, nothing follows it)
+
+Most events are a couple of cycles to a few thousand apart, so the usual event is two or three bytes. A timer tick every
+1/60 of a second makes up the bulk of a recording, roughly 7 KB a minute.
+
+Inputs are stamped with the emulator's cycle count, so they need to reach the emulator between steps, from the thread that
+runs it, for the stamp to be exact.
+ */
+public class InputRecorder implements Closeable {
+
+	/* "C8IN" */
+	static final int MAGIC = 0x4338494E;
+	/* The header holds a SaveState, so this has to be bumped whenever SaveState's layout or size changes. 2 since SaveState 2 */
+	static final short VERSION = 2;
+
+	static final int KEY_PRESSED = 0x10;
+	static final int TIMER_TICK = 0x20;
+	static final int END = 0x21;
+
+	/* Events are collected here and written out whenever it fills up */
+	private static final int BUFFER_SIZE = 8192;
+	/* The longest an event can be, a 64 bit varint plus the code */
+	private static final int MAX_EVENT_SIZE = 11;
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect( BUFFER_SIZE );
+
+	private long lastCycle;
+	private long eventCount;
+	private IOException error;
+	private boolean closed;
+
+	/*
+	Start a new recording of the emulator at path, replacing anything that is already there. Recording starts right away, the
+	emulator reports its inputs to the recorder until the recorder is closed
+	 */
+	public static InputRecorder start( Emulator emulator, Path path ) throws IOException {
+		InputRecorder recorder = new InputRecorder( path, emulator );
+		emulator.setInputRecorder( recorder );
+		return recorder;
+	}
+
+	private InputRecorder( Path path, Emulator emulator ) throws IOException {
+		channel = FileChannel.open( path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING );
+
+		ByteBuffer header = ByteBuffer.allocate( 4 + 2 + SaveState.SIZE );
+		header.putInt( MAGIC );
+		header.putShort( VERSION );
+		emulator.saveState( header );
+		header.flip();
+		while ( header.hasRemaining() ) {
+			channel.write( header );
+		}
+
+		lastCycle = emulator.getCycleCount();
+	}
+
+	void recordKey( long cycle, int key, boolean pressed ) {
+		record( cycle, pressed ? KEY_PRESSED | key : key );
+	}
+
+	void recordTimerTick( long cycle ) {
+		record( cycle, TIMER_TICK );
+	}
+
+	private void record( long cycle, int code ) {
+		if ( closed ) {
+			return;
+		}
+		if ( buffer.remaining() < MAX_EVENT_SIZE ) {
+			flush();
+		}
+
+		long delta = cycle - lastCycle;
+		while ( (delta & ~0x7FL) != 0 ) {
+			buffer.put( (byte) ((delta & 0x7F) | 0x80) );
+			delta >>>= 7;
+		}
+		buffer.put( (byte) delta );
+		buffer.put( (byte) code );
+
+		lastCycle = cycle;
+		eventCount++;
+	}
+
+	private void flush() {
+		buffer.flip();
+		try {
+			while ( buffer.hasRemaining() ) {
+				channel.write( buffer );
+			}
+		} catch ( IOException e ) {
+			/* The emulator can't do anything about it mid cycle, hang on to it and report it from close() */
+			if ( error == null ) {
+				error = e;
+			}
+		}
+		buffer.clear();
+	}
+
+	public long getEventCount() {
+		return eventCount;
+	}
+
+	/*
+	Stop recording and mark where the session ended. Pass the emulator that was being recorded so the end is stamped with its
+	final cycle count, any write that failed along the way is thrown from here
+	 */
+	public void close( Emulator emulator ) throws IOException {
+		if ( emulator.getInputRecorder() == this ) {
+			emulator.setInputRecorder( null );
+		}
+		record( emulator.getCycleCount(), END );
+		close();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if ( closed ) {
+			return;
+		}
+		flush();
+		closed = true;
+		channel.close();
+		if ( error != null ) {
+			throw error;
+		}
+	}
+
+}
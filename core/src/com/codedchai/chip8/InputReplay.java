@@ -0,0 +1,172 @@
+package com.codedchai.chip8;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/*
+Plays back a session written by InputRecorder.
+
+The machine is put back into the state it was in when recording started, then it runs flat out from one recorded event to
+the next, applying each key change and timer tick at exactly the cycle it originally happened on. Nothing is throttled or
+rendered, so a half hour session plays back in a second or two and always ends in exactly the same state, which makes
+recordings useful both for chasing down a bug and as regression checks.
+
+A recording that was cut short, say because the emulator crashed, plays back up to the last event that was fully written.
+ */
+public class InputReplay {
+
+	private final ByteBuffer startState;
+	private final ByteBuffer events;
+
+	/* What the last replay went through */
+	private long eventsReplayed;
+	private long timerTicksReplayed;
+
+	public InputReplay( Path path ) throws IOException {
+		ByteBuffer recording;
+		try ( FileChannel channel = FileChannel.open( path, StandardOpenOption.READ ) ) {
+			if ( channel.size() < 4 + 2 ) {
+				throw new IllegalArgumentException( path + " is " + channel.size() + " bytes, too small to be an input recording" );
+			}
+			recording = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+		}
+
+		int magic = recording.getInt();
+		if ( magic != InputRecorder.MAGIC ) {
+			throw new IllegalArgumentException( "Not an input recording, magic number is " + Integer.toHexString( magic ) );
+		}
+		short version = recording.getShort();
+		if ( version != InputRecorder.VERSION ) {
+			throw new IllegalArgumentException( "Input recording is version " + version + " but only version " + InputRecorder.VERSION + " is supported" );
+		}
+		/* Only checked once we know the version, a recording from another version holds a save state of another size */
+		if ( recording.remaining() < SaveState.SIZE ) {
+			throw new IllegalArgumentException( path + " is " + recording.capacity() + " bytes, too small to be an input recording" );
+		}
+
+		startState = recording.slice();
+		startState.limit( SaveState.SIZE );
+		recording.position( recording.position() + SaveState.SIZE );
+		events = recording.slice();
+	}
+
+	/*
+	A new emulator in the state it was in when recording started
+	 */
+	public Emulator createEmulator() {
+		Emulator emulator = new Emulator();
+		emulator.loadState( startState.duplicate() );
+		return emulator;
+	}
+
+	/*
+	Reset the emulator to the start of the recording and replay all of it. Returns the number of cycles run
+	 */
+	public long replay( Emulator emulator ) throws Exception {
+		return replay( emulator, Long.MAX_VALUE );
+	}
+
+	/*
+	Reset the emulator to the start of the recording and replay it up to the given cycle count, or the end of the recording if
+	that comes first. Returns the number of cycles run
+	 */
+	public long replay( Emulator emulator, long stopCycle ) throws Exception {
+		emulator.loadState( startState.duplicate() );
+		long startCycle = emulator.getCycleCount();
+
+		eventsReplayed = 0;
+		timerTicksReplayed = 0;
+
+		ByteBuffer input = events.duplicate();
+		while ( input.hasRemaining() ) {
+			long delta = readVarint( input );
+			if ( delta < 0 || !input.hasRemaining() ) {
+				/* The recording stops part way through this event */
+				break;
+			}
+			int code = input.get() & 0xFF;
+
+			long eventCycle = emulator.getCycleCount() + delta;
+			if ( eventCycle > stopCycle ) {
+				runTo( emulator, stopCycle );
+				break;
+			}
+			runTo( emulator, eventCycle );
+
+			if ( code == InputRecorder.END ) {
+				break;
+			} else if ( code == InputRecorder.TIMER_TICK ) {
+				emulator.tickTimers();
+				emulator.publishFrame();
+				timerTicksReplayed++;
+			} else {
+				emulator.setKey( code & 0xF, (code & InputRecorder.KEY_PRESSED) != 0 );
+			}
+			eventsReplayed++;
+		}
+
+		return emulator.getCycleCount() - startCycle;
+	}
+
+	private static void runTo( Emulator emulator, long cycle ) throws Exception {
+		long remaining = cycle - emulator.getCycleCount();
+		while ( remaining > 0 ) {
+			int cycles = (int) Math.min( remaining, Integer.MAX_VALUE );
+			emulator.step( cycles );
+			remaining -= cycles;
+		}
+	}
+
+	/*
+	-1 if the buffer runs out before the varint ends
+	 */
+	private static long readVarint( ByteBuffer buffer ) {
+		long value = 0;
+		for ( int shift = 0; buffer.hasRemaining() && shift < 64; shift += 7 ) {
+			byte b = buffer.get();
+			value |= (long) (b & 0x7F) << shift;
+			if ( b >= 0 ) {
+				return value;
+			}
+		}
+		return -1;
+	}
+
+	public long getEventsReplayed() {
+		return eventsReplayed;
+	}
+
+	/* Each timer tick is 1/TIMER_FREQUENCY of a second of the original session */
+	public long getTimerTicksReplayed() {
+		return timerTicksReplayed;
+	}
+
+	/*
+	Replay a recording and print how long it took along with a hash of the final state, so two runs or two builds can be
+	compared. Pass a cycle count after the path to stop there instead of at the end
+	 */
+	public static void main( String[] args ) throws Exception {
+		InputReplay replay = new InputReplay( Paths.get( args[0] ) );
+		long stopCycle = args.length > 1 ? Long.parseLong( args[1] ) : Long.MAX_VALUE;
+
+		Emulator emulator = replay.createEmulator();
+		long start = System.nanoTime();
+		long cycles = replay.replay( emulator, stopCycle );
+		long elapsedNanos = System.nanoTime() - start;
+
+		ByteBuffer state = ByteBuffer.allocate( SaveState.SIZE );
+		emulator.saveState( state );
+		state.flip();
+
+		double sessionSeconds = replay.getTimerTicksReplayed() / (double) Emulator.TIMER_FREQUENCY;
+		System.out.println( replay.getEventsReplayed() + " events, " + cycles + " cycles, " + Math.round( sessionSeconds ) + " s of session replayed in "
+				+ TimeUnit.NANOSECONDS.toMillis( elapsedNanos ) + " ms" );
+		System.out.println( "ended at cycle " + emulator.getCycleCount() + ", pc " + Integer.toHexString( emulator.getProgramCounter() ) + ", state sha1 " + RomCatalog.hash( state ) );
+	}
+
+}
@@ -0,0 +1,27 @@
+package com.codedchai.chip8;
+
+/*
+A decoded opcode. Every operand is pulled out of the opcode once when the instruction is decoded, so the handlers never have
+to mask and shift the opcode again while executing
+ */
+final class Instruction {
+
+	final int opcode;
+	final Operation operation;
+
+	/* The register indexes, nibble, byte and address that are packed into the opcode */
+	final byte x, y, n, kk;
+	final short nnn;
+
+	Instruction( int opcode, Operation operation ) {
+		this.opcode = opcode;
+		this.operation = operation;
+
+		x = (byte) ((opcode & 0x0F00) >> 8);
+		y = (byte) ((opcode & 0x00F0) >> 4);
+		n = (byte) (opcode & 0x000F);
+		kk = (byte) (opcode & 0x00FF);
+		nnn = (short) (opcode & 0x0FFF);
+	}
+
+}
@@ -0,0 +1,15 @@
+package com.codedchai.chip8;
+
+/*
+The plain interpreter, every cycle fetches the decoded instruction at the program counter and executes it
+ */
+public class InterpreterEngine implements ExecutionEngine {
+
+	@Override
+	public void execute( Emulator emulator, int cycles ) throws Exception {
+		for ( int i = 0; i < cycles; i++ ) {
+			emulator.emulateCycle();
+		}
+	}
+
+}
@@ -0,0 +1,82 @@
+package com.codedchai.chip8;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Carries key presses and releases from the thread that receives them (the libGDX render thread) over to the emulator thread
+without locks or allocation.
+
+It is a single producer, single consumer ring. The producer writes an event into the next free slot and then publishes it by
+moving the write index, the emulator thread drains everything up to the write index at the start of every step. Keys only
+ever change in between steps, so within a step Ex9E, ExA1 and Fx0A all see the same keypad, and the cycle an input takes
+effect on is the same one an InputRecorder stamps it with.
+
+Every event carries the System.nanoTime() it was received at, so we can tell how long it took to reach the screen, see
+FrameExchange.getInputLatency().
+ */
+public final class KeyEventQueue {
+
+	/* Must be a power of two. Far more than anyone can press between two steps */
+	private static final int CAPACITY = 256;
+	private static final int PRESSED = 0x10;
+
+	private final byte[] codes = new byte[CAPACITY];
+	private final long[] receivedNanos = new long[CAPACITY];
+
+	/* Written by the producer, read by the emulator thread */
+	private final AtomicLong writeIndex = new AtomicLong();
+	/* Written by the emulator thread, read by the producer */
+	private final AtomicLong readIndex = new AtomicLong();
+
+	/* Only touched by the producer */
+	private long nextWriteIndex;
+	private long knownReadIndex;
+	private long droppedEvents;
+
+	/* Only touched by the emulator thread */
+	private long nextReadIndex;
+
+	/*
+	Producer only. Queue a key change, returns false if it was dropped because the emulator thread is a whole ring behind
+	 */
+	public boolean offer( int key, boolean pressed, long nanos ) {
+		if ( nextWriteIndex - knownReadIndex >= CAPACITY ) {
+			knownReadIndex = readIndex.get();
+			if ( nextWriteIndex - knownReadIndex >= CAPACITY ) {
+				droppedEvents++;
+				return false;
+			}
+		}
+
+		int slot = (int) nextWriteIndex & (CAPACITY - 1);
+		codes[slot] = (byte) (pressed ? PRESSED | key : key);
+		receivedNanos[slot] = nanos;
+		writeIndex.lazySet( ++nextWriteIndex );
+		return true;
+	}
+
+	/*
+	Emulator thread only. Apply every queued key change to the emulator in the order they arrived, returns the time the oldest
+	one was received or 0 if there was nothing to apply
+	 */
+	long drain( Emulator emulator ) {
+		long available = writeIndex.get();
+		if ( nextReadIndex == available ) {
+			return 0;
+		}
+
+		long oldestNanos = receivedNanos[(int) nextReadIndex & (CAPACITY - 1)];
+		for ( ; nextReadIndex < available; nextReadIndex++ ) {
+			int code = codes[(int) nextReadIndex & (CAPACITY - 1)];
+			emulator.setKey( code & 0xF, (code & PRESSED) != 0 );
+		}
+		readIndex.lazySet( nextReadIndex );
+		return oldestNanos;
+	}
+
+	/* Events thrown away because the queue was full */
+	public long getDroppedEvents() {
+		return droppedEvents;
+	}
+
+}
@@ -0,0 +1,76 @@
+package com.codedchai.chip8;
+
+import com.badlogic.gdx.Input;
+import com.badlogic.gdx.InputAdapter;
+
+import java.util.Arrays;
+
+/*
+Turns libGDX key events into presses and releases on the 16 key keypad, using the usual layout of the left hand side of a
+QWERTY keyboard:
+
+	1 2 3 C		1 2 3 4
+	4 5 6 D		Q W E R
+	7 8 9 E		A S D F
+	A 0 B F		Z X C V
+
+Events are stamped and put on the emulator's KeyEventQueue, the emulator thread picks them up at the start of its next step.
+libGDX delivers input on the render thread, which is the queue's one producer.
+ */
+public class KeypadInputProcessor extends InputAdapter {
+
+	/* libGDX key codes all fit below this */
+	private static final int KEYCODE_COUNT = 256;
+	private static final int NOT_MAPPED = -1;
+
+	private final KeyEventQueue keyEvents;
+	private final int[] keypadKeys = new int[KEYCODE_COUNT];
+
+	public KeypadInputProcessor( KeyEventQueue keyEvents ) {
+		this.keyEvents = keyEvents;
+
+		Arrays.fill( keypadKeys, NOT_MAPPED );
+		map( Input.Keys.NUM_1, 0x1 );
+		map( Input.Keys.NUM_2, 0x2 );
+		map( Input.Keys.NUM_3, 0x3 );
+		map( Input.Keys.NUM_4, 0xC );
+		map( Input.Keys.Q, 0x4 );
+		map( Input.Keys.W, 0x5 );
+		map( Input.Keys.E, 0x6 );
+		map( Input.Keys.R, 0xD );
+		map( Input.Keys.A, 0x7 );
+		map( Input.Keys.S, 0x8 );
+		map( Input.Keys.D, 0x9 );
+		map( Input.Keys.F, 0xE );
+		map( Input.Keys.Z, 0xA );
+		map( Input.Keys.X, 0x0 );
+		map( Input.Keys.C, 0xB );
+		map( Input.Keys.V, 0xF );
+	}
+
+	/*
+	Point a libGDX key code at a keypad key, replacing whatever it was mapped to before
+	 */
+	public void map( int keycode, int keypadKey ) {
+		keypadKeys[keycode] = keypadKey;
+	}
+
+	@Override
+	public boolean keyDown( int keycode ) {
+		return queue( keycode, true );
+	}
+
+	@Override
+	public boolean keyUp( int keycode ) {
+		return queue( keycode, false );
+	}
+
+	private boolean queue( int keycode, boolean pressed ) {
+		if ( keycode < 0 || keycode >= keypadKeys.length || keypadKeys[keycode] == NOT_MAPPED ) {
+			return false;
+		}
+		keyEvents.offer( keypadKeys[keycode], pressed, System.nanoTime() );
+		return true;
+	}
+
+}
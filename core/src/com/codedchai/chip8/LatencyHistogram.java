@@ -0,0 +1,94 @@
+package com.codedchai.chip8;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/*
+Collects latencies into one millisecond buckets, so the mean, worst case and percentiles can be read at any time without
+keeping every sample around. One thread records, any thread can read. Readers sample the counters while they are being
+written, so a read can be a sample or two behind.
+ */
+public final class LatencyHistogram {
+
+	/* One bucket per millisecond, anything slower than this lands in the last one */
+	private static final int BUCKET_COUNT = 250;
+	private static final long NANOS_PER_BUCKET = TimeUnit.MILLISECONDS.toNanos( 1 );
+
+	private final long[] buckets = new long[BUCKET_COUNT];
+	private long count;
+	private long totalNanos;
+	private long maxNanos;
+	private long lastNanos;
+
+	void record( long nanos ) {
+		if ( nanos < 0 ) {
+			nanos = 0;
+		}
+		buckets[(int) Math.min( nanos / NANOS_PER_BUCKET, BUCKET_COUNT - 1 )]++;
+		count++;
+		totalNanos += nanos;
+		if ( nanos > maxNanos ) {
+			maxNanos = nanos;
+		}
+		lastNanos = nanos;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public double getMeanMillis() {
+		long samples = count;
+		return samples == 0 ? 0 : totalNanos / (double) samples / NANOS_PER_BUCKET;
+	}
+
+	public double getMaxMillis() {
+		return maxNanos / (double) NANOS_PER_BUCKET;
+	}
+
+	public double getLastMillis() {
+		return lastNanos / (double) NANOS_PER_BUCKET;
+	}
+
+	/*
+	The latency that the given fraction of samples (0.99 for the 99th percentile) came in under, rounded up to the millisecond
+	 */
+	public double getPercentileMillis( double fraction ) {
+		long[] snapshot = buckets.clone();
+		long samples = 0;
+		for ( long bucket : snapshot ) {
+			samples += bucket;
+		}
+		if ( samples == 0 ) {
+			return 0;
+		}
+
+		long wanted = (long) Math.ceil( samples * fraction );
+		long seen = 0;
+		for ( int bucket = 0; bucket < snapshot.length; bucket++ ) {
+			seen += snapshot[bucket];
+			if ( seen >= wanted ) {
+				return bucket + 1;
+			}
+		}
+		return BUCKET_COUNT;
+	}
+
+	/*
+	Start over. Like the readers this races with the recording thread, at worst a sample that was in flight survives
+	 */
+	public void reset() {
+		Arrays.fill( buckets, 0 );
+		count = 0;
+		totalNanos = 0;
+		maxNanos = 0;
+		lastNanos = 0;
+	}
+
+	@Override
+	public String toString() {
+		return String.format( "%d samples, %.1f ms mean, %.0f ms 50th, %.0f ms 99th percentile, %.1f ms worst", count, getMeanMillis(),
+				getPercentileMillis( 0.5 ), getPercentileMillis( 0.99 ), getMaxMillis() );
+	}
+
+}
@@ -0,0 +1,728 @@
+package com.codedchai.chip8;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/*
+Many CHIP-8 machines stepped together, one cycle at a time, for workloads like reinforcement learning where thousands of
+environments run the same ROM.
+
+Instead of one Emulator object per machine the whole population is stored as a struct of arrays. Every register, program
+counter, timer and stack pointer lives in a flat primitive array indexed by machine, and all the memories, call stacks and
+displays sit one after another in a single array each. Machine m's memory is memory[m * MEMORY_SIZE] onwards, its V registers
+are vRegisters[m * REGISTER_COUNT] onwards, and so on.
+
+Machines running the same ROM spend most of their time at the same address running the same opcode. Every cycle we group the
+live machines by (program counter, opcode), decode each group's opcode once and then run that operation over every machine in
+the group in one tight loop. With N machines and G groups that is G decodes and G switches instead of N.
+
+Machines behave exactly like an Emulator running the interpreter would, quirks and all. Where an Emulator would throw (an
+unknown opcode, a stack overflow, reading outside of memory) the machine is marked as faulted and left alone, the other
+machines carry on. Displays are always 64x32, a machine that runs one of SUPER-CHIP's instructions is faulted too.
+
+Not thread safe. For more throughput run several of these on different threads, each with its own slice of the population.
+ */
+public class LockstepMachines {
+
+	public static final int MEMORY_SIZE = 4096;
+	public static final int REGISTER_COUNT = 16;
+	public static final int KEY_COUNT = 16;
+	public static final int CALL_STACK_SIZE = 48;
+
+	private static final int ROM_START = Emulator.MEMORY_ROM_START_LOCATION;
+	private static final int PROGRAM_COUNTER_START = ROM_START;
+
+	private final int count;
+
+	final byte[] memory;
+	final byte[] vRegisters;
+	final byte[] keys;
+	final short[] callStack;
+	final long[] displayRows;
+	final short[] programCounters;
+	final short[] indexRegisters;
+	final short[] stackPointers;
+	final short[] delayTimers;
+	final short[] soundTimers;
+	final long[] randomStates;
+	final boolean[] drawFlags;
+	/* Why each machine stopped, null while it is still running */
+	private final String[] faults;
+	private int faultedCount;
+
+	private int cyclesPerFrame = Emulator.CPU_FREQUENCY / Emulator.TIMER_FREQUENCY;
+	private long cycleCount;
+
+	/* Every opcode decoded so far, shared by all machines since the decoding only depends on the opcode */
+	private final Instruction[] decodedOpcodes = new Instruction[0x10000];
+	private final boolean[] unknownOpcodes = new boolean[0x10000];
+
+	/* Grouping scratch space, an open addressing table from (pc, opcode) to group plus the machines sorted by group */
+	private final int[] tableKeys;
+	private final int[] tableGroups;
+	private final int tableShift;
+	private final int[] groupKeys;
+	private final int[] groupSlots;
+	private final int[] groupStarts;
+	private final int[] groupSizes;
+	private final int[] machineGroups;
+	private final int[] members;
+	/* True while members is just 0 to count - 1, so the common everyone-in-lockstep case doesn't have to rebuild it */
+	private boolean membersInMachineOrder;
+	private int lastGroupCount;
+
+	/*
+	count machines with the ROM loaded into every one of them. Machine m's random number generator is seeded with seed + m
+	 */
+	public LockstepMachines( int count, ByteBuffer rom, long seed ) {
+		if ( rom.remaining() > Emulator.MAXIMUM_ROM_SIZE ) {
+			throw new IllegalArgumentException( "ROM is too large to fit into Chip-8 RAM. It is " + rom.remaining() + " bytes when the limit is " + Emulator.MAXIMUM_ROM_SIZE );
+		}
+
+		this.count = count;
+		memory = new byte[count * MEMORY_SIZE];
+		vRegisters = new byte[count * REGISTER_COUNT];
+		keys = new byte[count * KEY_COUNT];
+		callStack = new short[count * CALL_STACK_SIZE];
+		displayRows = new long[count * FrameBuffer.HEIGHT];
+		programCounters = new short[count];
+		indexRegisters = new short[count];
+		stackPointers = new short[count];
+		delayTimers = new short[count];
+		soundTimers = new short[count];
+		randomStates = new long[count];
+		drawFlags = new boolean[count];
+		faults = new String[count];
+
+		int tableSize = Integer.highestOneBit( Math.max( count, 1 ) * 2 - 1 ) << 1;
+		tableKeys = new int[tableSize];
+		tableGroups = new int[tableSize];
+		tableShift = Integer.numberOfLeadingZeros( tableSize ) + 1;
+		Arrays.fill( tableGroups, -1 );
+		groupKeys = new int[count];
+		groupSlots = new int[count];
+		groupStarts = new int[count];
+		groupSizes = new int[count];
+		machineGroups = new int[count];
+		members = new int[count];
+
+		for ( int machine = 0; machine < count; machine++ ) {
+			int base = machine * MEMORY_SIZE;
+			for ( int i = 0; i < Emulator.hexadecimalFontSprites.length; i++ ) {
+				memory[base + i] = (byte) Emulator.hexadecimalFontSprites[i];
+			}
+			rom.duplicate().get( memory, base + ROM_START, rom.remaining() );
+			programCounters[machine] = PROGRAM_COUNTER_START;
+			randomStates[machine] = XorShiftRandom.seedState( seed + machine );
+			drawFlags[machine] = true;
+		}
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	/*
+	Run one cycle on every machine that hasn't faulted
+	 */
+	public void step() {
+		int groupCount = groupMachines();
+		lastGroupCount = groupCount;
+
+		for ( int group = 0; group < groupCount; group++ ) {
+			int opcode = groupKeys[group] & 0xFFFF;
+			int start = groupStarts[group];
+			int end = start + groupSizes[group];
+
+			Instruction instruction = decode( opcode );
+			if ( instruction == null ) {
+				for ( int i = start; i < end; i++ ) {
+					fault( members[i], "Unknown opcode: " + Integer.toHexString( opcode ) );
+				}
+				continue;
+			}
+			execute( instruction, start, end );
+		}
+		cycleCount++;
+	}
+
+	public void step( int cycles ) {
+		for ( int cycle = 0; cycle < cycles; cycle++ ) {
+			step();
+		}
+	}
+
+	/*
+	Run whole frames, cyclesPerFrame cycles and then one tick of the timers, the same as Emulator.runFrames
+	 */
+	public void runFrames( int frames ) {
+		for ( int frame = 0; frame < frames; frame++ ) {
+			step( cyclesPerFrame );
+			tickTimers();
+		}
+	}
+
+	public void tickTimers() {
+		for ( int machine = 0; machine < count; machine++ ) {
+			if ( delayTimers[machine] > 0 ) {
+				delayTimers[machine]--;
+			}
+			if ( soundTimers[machine] > 0 ) {
+				soundTimers[machine]--;
+			}
+		}
+	}
+
+	/*
+	Sort the live machines into groups by program counter and opcode. Returns how many groups there are, group g's machines
+	are members[groupStarts[g]] up to members[groupStarts[g] + groupSizes[g]] in machine order
+	 */
+	private int groupMachines() {
+		/* First work out every machine's key, and whether they all share one, which is what happens most of the time */
+		int firstKey = -1;
+		boolean allSame = true;
+		for ( int machine = 0; machine < count; machine++ ) {
+			int key = machineKey( machine );
+			machineGroups[machine] = key;
+			if ( key < 0 ) {
+				allSame = false;
+			} else if ( firstKey < 0 ) {
+				firstKey = key;
+			} else if ( key != firstKey ) {
+				allSame = false;
+			}
+		}
+
+		if ( allSame && count > 0 ) {
+			if ( !membersInMachineOrder ) {
+				for ( int machine = 0; machine < count; machine++ ) {
+					members[machine] = machine;
+				}
+				membersInMachineOrder = true;
+			}
+			groupKeys[0] = firstKey;
+			groupStarts[0] = 0;
+			groupSizes[0] = count;
+			return 1;
+		}
+
+		int mask = tableKeys.length - 1;
+		int groupCount = 0;
+		int lastKey = -1;
+		int lastGroup = -1;
+
+		for ( int machine = 0; machine < count; machine++ ) {
+			int key = machineGroups[machine];
+			if ( key < 0 ) {
+				machineGroups[machine] = -1;
+				continue;
+			}
+
+			/* Neighbouring machines are usually in the same group, so try the one we just found before hashing */
+			int group = lastGroup;
+			if ( key != lastKey ) {
+				int slot = (key * 0x9E3779B1) >>> tableShift;
+				while ( tableGroups[slot] >= 0 && tableKeys[slot] != key ) {
+					slot = (slot + 1) & mask;
+				}
+				if ( tableGroups[slot] < 0 ) {
+					tableKeys[slot] = key;
+					tableGroups[slot] = groupCount;
+					groupKeys[groupCount] = key;
+					groupSlots[groupCount] = slot;
+					groupSizes[groupCount] = 0;
+					groupCount++;
+				}
+				group = tableGroups[slot];
+				lastKey = key;
+				lastGroup = group;
+			}
+
+			machineGroups[machine] = group;
+			groupSizes[group]++;
+		}
+
+		int start = 0;
+		for ( int group = 0; group < groupCount; group++ ) {
+			groupStarts[group] = start;
+			start += groupSizes[group];
+			groupSizes[group] = 0;
+			/* Only clear the slots we used, so grouping costs the same no matter how big the table is */
+			tableGroups[groupSlots[group]] = -1;
+		}
+		for ( int machine = 0; machine < count; machine++ ) {
+			int group = machineGroups[machine];
+			if ( group >= 0 ) {
+				members[groupStarts[group] + groupSizes[group]++] = machine;
+			}
+		}
+		membersInMachineOrder = groupCount == 1 && faultedCount == 0;
+		return groupCount;
+	}
+
+	/*
+	The machine's program counter and the opcode there packed into one int, or -1 if it can't run. The program counter is at
+	most 12 bits and the opcode 16, so both fit
+	 */
+	private int machineKey( int machine ) {
+		if ( faults[machine] != null ) {
+			return -1;
+		}
+
+		int pc = programCounters[machine];
+		if ( pc < 0 || pc + 1 >= MEMORY_SIZE ) {
+			fault( machine, "Program counter out of memory: " + pc );
+			return -1;
+		}
+		int base = machine * MEMORY_SIZE;
+		return (pc << 16) | ((memory[base + pc] & 0xFF) << 8) | (memory[base + pc + 1] & 0xFF);
+	}
+
+	private Instruction decode( int opcode ) {
+		Instruction instruction = decodedOpcodes[opcode];
+		if ( instruction == null && !unknownOpcodes[opcode] ) {
+			try {
+				instruction = Emulator.decodeOpcode( opcode );
+				decodedOpcodes[opcode] = instruction;
+			} catch ( Exception e ) {
+				unknownOpcodes[opcode] = true;
+			}
+		}
+		return instruction;
+	}
+
+	/*
+	Run one instruction on members[start] up to members[end]. Every case does exactly what the matching Emulator handler does,
+	in the same order, so registers that alias (x or y being F) come out the same
+	 */
+	private void execute( Instruction instruction, int start, int end ) {
+		int x = instruction.x;
+		int y = instruction.y;
+		byte kk = instruction.kk;
+		short nnn = instruction.nnn;
+
+		switch ( instruction.operation ) {
+			case NOP:
+				break;
+			case CLS:
+				for ( int i = start; i < end; i++ ) {
+					int machine = members[i];
+					Arrays.fill( displayRows, machine * FrameBuffer.HEIGHT, (machine + 1) * FrameBuffer.HEIGHT, 0 );
+					drawFlags[machine] = true;
+					programCounters[machine] += 2;
+				}
+				break;
+			case RET:
+				for ( int i = start; i < end; i++ ) {
+					int machine = members[i];
+					if ( stackPointers[machine] <= 0 ) {
+						fault( machine, "Return with an empty call stack" );
+						continue;
+					}
+					programCounters[machine] = callStack[machine * CALL_STACK_SIZE + --stackPointers[machine]];
+				}
+				break;
+			case JP:
+				for ( int i = start; i < end; i++ ) {
+					programCounters[members[i]] = nnn;
+				}
+				break;
+			case CALL:
+				for ( int i = start; i < end; i++ ) {
+					int machine = members[i];
+					if ( stackPointers[machine] >= CALL_STACK_SIZE ) {
+						fault( machine, "Call stack overflow" );
+						continue;
+					}
+					callStack[machine * CALL_STACK_SIZE + stackPointers[machine]++] = programCounters[machine];
+					programCounters[machine] = nnn;
+				}
+				break;
+			case SE_VX_KK:
+				for ( int i = start; i < end; i++ ) {
+					int machine = members[i];
+					programCounters[machine] += vRegisters[machine * REGISTER_COUNT + x] == (kk & 0xFF) ? 4 : 2;
+				}
+				break;
+			case SNE_VX_KK:
+				for ( int i = start; i < end; i++ ) {
+					int machine = members[i];
+					programCounters[machine] += vRegisters[machine * REGISTER_COUNT + x] != kk ? 4 : 2;
+				}
+				break;
+			case SE_VX_VY:
+				for ( int i = start; i < end; i++ ) {
+					int machine = members[i];
+					int base = machine * REGISTER_COUNT;
+					programCounters[machine] += vRegisters[base + x] == vRegisters[base + y] ? 4 : 2;
+				}
+				break;
+			case SNE_VX_VY:
+				for ( int i = start; i < end; i++ ) {
+					int machine = members[i];
+					int base = machine * REGISTER_COUNT;
+					programCounters[machine] += vRegisters[base + x] != vRegisters[base + y] ? 4 : 2;
+				}
+				break;
+			case LD_VX_KK:
+				for ( int i = start; i < end; i++ ) {
+					int machine = members[i];
+					vRegisters[machine * REGISTER_COUNT + x] = kk;
+					programCounters[machine] += 2;
+				}
+				break;
+			case ADD_VX_KK:
+				for ( int i = start; i < end; i++ ) {
+					int machine = members[i];
+					int register = machine * REGISTER_COUNT + x;
+					vRegisters[register] = (byte) (vRegisters[register] + kk);
+					programCounters[machine] += 2;
+				}
+				break;
+			case LD_VX_VY:
+				for ( int i = start; i < end; i++ ) {
+					int machine = members[i];
+					int base = machine * REGISTER_COUNT;
+					vRegisters[base + x] = vRegisters[base + y];
+					programCounters[machine] += 2;
+				}
+				break;
+			case OR_VX_VY:
+				for ( int i = start; i < end; i++ ) {
+					int machine = members[i];
+					int base = machine * REGISTER_COUNT;
+					vRegisters[base + x] = (byte) (vRegisters[base + x] | vRegisters[base + y]);
+					programCounters[machine] += 2;
+				}
+				break;
+			case AND_VX_VY:
+				for ( int i = start; i < end; i++ ) {
+					int machine = members[i];
+					int base = machine * REGISTER_COUNT;
+					vRegisters[base + x] = (byte) (vRegisters[base + x] & vRegisters[base + y]);
+					programCounters[machine] += 2;
+				}
+				break;
+			case XOR_VX_VY:
+				for ( int i = start; i < end; i++ ) {
+					int machine = members[i];
+					int base = machine * REGISTER_COUNT;
+					vRegisters[base + x] = (byte) (vRegisters[base + x] ^ vRegisters[base + y]);
+					programCounters[machine] += 2;
+				}
+				break;
+			case ADD_VX_VY:
+				for ( int i = start; i < end; i++ ) {
+					int machine = members[i];
+					int base = machine * REGISTER_COUNT;
+					int sum = vRegisters[base + x] + vRegisters[base + y];
+					if ( sum > 255 ) {
+						vRegisters[base + 0xF] = 1;
+						sum -= 255;
+					} else {
+						vRegisters[base + 0xF] = 0;
+					}
+					vRegisters[base + x] = (byte) sum;
+					programCounters[machine] += 2;
+				}
+				break;
+			case SUB_VX_VY:
+				for ( int i = start; i < end; i++ ) {
+					int machine = members[i];
+					int base = machine * REGISTER_COUNT;
+					vRegisters[base + 0xF] = (byte) (vRegisters[base + x] > vRegisters[base + y] ? 1 : 0);
+					vRegisters[base + x] = (byte) (vRegisters[base + x] - vRegisters[base + y]);
+					programCounters[machine] += 2;
+				}
+				break;
+			case SHR_VX:
+				for ( int i = start; i < end; i++ ) {
+					int machine = members[i];
+					int base = machine * REGISTER_COUNT;
+					vRegisters[base + 0xF] = (byte) (vRegisters[base + x] & 0x1);
+					vRegisters[base + x] >>= 1;
+					programCounters[machine] += 2;
+				}
+				break;
+			case SUBN_VX_VY:
+				for ( int i = start; i < end; i++ ) {
+					int machine = members[i];
+					int base = machine * REGISTER_COUNT;
+					vRegisters[base + 0xF] = (byte) (vRegisters[base + y] > vRegisters[base + x] ? 1 : 0);
+					vRegisters[base + x] = (byte) (vRegisters[base + y] - vRegisters[base + x]);
+					programCounters[machine] += 2;
+				}
+				break;
+			case SHL_VX:
+				for ( int i = start; i < end; i++ ) {
+					int machine = members[i];
+					int base = machine * REGISTER_COUNT;
+					vRegisters[base + 0xF] = (byte) (vRegisters[base + x] >> 7);
+					vRegisters[base + x] <<= 1;
+					programCounters[machine] += 2;
+				}
+				break;
+			case LD_I_NNN:
+				for ( int i = start; i < end; i++ ) {
+					int machine = members[i];
+					indexRegisters[machine] = nnn;
+					programCounters[machine] += 2;
+				}
+				break;
+			case JP_V0_NNN:
+				for ( int i = start; i < end; i++ ) {
+					int machine = members[i];
+					programCounters[machine] = (short) (nnn + vRegisters[machine * REGISTER_COUNT]);
+				}
+				break;
+			case RND_VX_KK:
+				for ( int i = start; i < end; i++ ) {
+					int machine = members[i];
+					int register = machine * REGISTER_COUNT + x;
+					long state = XorShiftRandom.advance( randomStates[machine] );
+					randomStates[machine] = state;
+					vRegisters[register] = (byte) (XorShiftRandom.bounded( state, 256 ) & vRegisters[register]);
+					programCounters[machine] += 2;
+				}
+				break;
+			case DRW_VX_VY_N:
+				for ( int i = start; i < end; i++ ) {
+					drawSprite( members[i], x, y, instruction.n );
+				}
+				break;
+			case SKP_VX:
+				for ( int i = start; i < end; i++ ) {
+					int machine = members[i];
+					int key = vRegisters[machine * REGISTER_COUNT + x];
+					if ( key < 0 || key >= KEY_COUNT ) {
+						fault( machine, "Key out of range: " + key );
+						continue;
+					}
+					programCounters[machine] += keys[machine * KEY_COUNT + key] != 0 ? 4 : 2;
+				}
+				break;
+			case SKNP_VX:
+				for ( int i = start; i < end; i++ ) {
+					int machine = members[i];
+					int key = vRegisters[machine * REGISTER_COUNT + x];
+					if ( key < 0 || key >= KEY_COUNT ) {
+						fault( machine, "Key out of range: " + key );
+						continue;
+					}
+					programCounters[machine] += keys[machine * KEY_COUNT + key] == 0 ? 4 : 2;
+				}
+				break;
+			case LD_VX_DT:
+				for ( int i = start; i < end; i++ ) {
+					int machine = members[i];
+					vRegisters[machine * REGISTER_COUNT + x] = (byte) delayTimers[machine];
+					programCounters[machine] += 2;
+				}
+				break;
+			case LD_VX_K:
+				for ( int i = start; i < end; i++ ) {
+					int machine = members[i];
+					int keyBase = machine * KEY_COUNT;
+					for ( int key = 0; key < KEY_COUNT; key++ ) {
+						if ( keys[keyBase + key] != 0 ) {
+							vRegisters[machine * REGISTER_COUNT + x] = keys[keyBase + key];
+							programCounters[machine] += 2;
+						}
+					}
+				}
+				break;
+			case LD_DT_VX:
+				for ( int i = start; i < end; i++ ) {
+					int machine = members[i];
+					delayTimers[machine] = vRegisters[machine * REGISTER_COUNT + x];
+					programCounters[machine] += 2;
+				}
+				break;
+			case LD_ST_VX:
+				for ( int i = start; i < end; i++ ) {
+					int machine = members[i];
+					soundTimers[machine] = vRegisters[machine * REGISTER_COUNT + x];
+					programCounters[machine] += 2;
+				}
+				break;
+			case ADD_I_VX:
+				for ( int i = start; i < end; i++ ) {
+					int machine = members[i];
+					indexRegisters[machine] += vRegisters[machine * REGISTER_COUNT + x];
+					programCounters[machine] += 2;
+				}
+				break;
+			case LD_F_VX:
+				for ( int i = start; i < end; i++ ) {
+					int machine = members[i];
+					indexRegisters[machine] = (short) (vRegisters[machine * REGISTER_COUNT + x] * 5);
+					programCounters[machine] += 2;
+				}
+				break;
+			case LD_B_VX:
+				for ( int i = start; i < end; i++ ) {
+					int machine = members[i];
+					int address = indexRegisters[machine];
+					if ( address < 0 || address + 2 >= MEMORY_SIZE ) {
+						fault( machine, "BCD write out of memory: " + address );
+						continue;
+					}
+					int value = vRegisters[machine * REGISTER_COUNT + x];
+					int base = machine * MEMORY_SIZE + address;
+					memory[base] = (byte) (value / 100);
+					memory[base + 1] = (byte) ((value / 10) % 10);
+					memory[base + 2] = (byte) (value % 10);
+					programCounters[machine] += 2;
+				}
+				break;
+			case LD_I_VX:
+				for ( int i = start; i < end; i++ ) {
+					int machine = members[i];
+					int address = indexRegisters[machine];
+					if ( address < 0 || address + x >= MEMORY_SIZE ) {
+						fault( machine, "Register store out of memory: " + address );
+						continue;
+					}
+					System.arraycopy( vRegisters, machine * REGISTER_COUNT, memory, machine * MEMORY_SIZE + address, x + 1 );
+					programCounters[machine] += 2;
+				}
+				break;
+			case LD_VX_I:
+				for ( int i = start; i < end; i++ ) {
+					int machine = members[i];
+					int address = indexRegisters[machine];
+					if ( address < 0 || address + x >= MEMORY_SIZE ) {
+						fault( machine, "Register load out of memory: " + address );
+						continue;
+					}
+					System.arraycopy( memory, machine * MEMORY_SIZE + address, vRegisters, machine * REGISTER_COUNT, x + 1 );
+					programCounters[machine] += 2;
+				}
+				break;
+			case SCD:
+			case SCR:
+			case SCL:
+			case EXIT:
+			case LOW:
+			case HIGH:
+				for ( int i = start; i < end; i++ ) {
+					fault( members[i], "SUPER-CHIP instruction " + Integer.toHexString( instruction.opcode ) );
+				}
+				break;
+			default:
+				throw new IllegalStateException( "No lockstep handler for " + instruction.operation );
+		}
+	}
+
+	/*
+	Dxyn for one machine, the same as Emulator.displayVxVyN and FrameBuffer.drawSpriteRow
+	 */
+	private void drawSprite( int machine, int x, int y, int height ) {
+		int address = indexRegisters[machine];
+		if ( height > 0 && (address < 0 || address + height > MEMORY_SIZE) ) {
+			fault( machine, "Sprite read out of memory: " + address );
+			return;
+		}
+
+		int registerBase = machine * REGISTER_COUNT;
+		int memoryBase = machine * MEMORY_SIZE + address;
+		int rowBase = machine * FrameBuffer.HEIGHT;
+
+		vRegisters[registerBase + 0xF] = 0;
+		for ( int yLine = 0; yLine < height; yLine++ ) {
+			long sprite = Long.rotateRight( (memory[memoryBase + yLine] & 0xFFL) << (Long.SIZE - 8), x );
+			int row = rowBase + ((y + yLine) % FrameBuffer.HEIGHT);
+			if ( (displayRows[row] & sprite) != 0 ) {
+				vRegisters[registerBase + 0xF] = 1;
+			}
+			displayRows[row] ^= sprite;
+		}
+		drawFlags[machine] = true;
+		programCounters[machine] += 2;
+	}
+
+	private void fault( int machine, String reason ) {
+		if ( faults[machine] == null ) {
+			faults[machine] = reason;
+			faultedCount++;
+		}
+	}
+
+	public void setKey( int machine, int key, boolean pressed ) {
+		keys[machine * KEY_COUNT + key] = (byte) (pressed ? 1 : 0);
+	}
+
+	/* Unsigned value of register Vx on the machine */
+	public int getRegister( int machine, int register ) {
+		return vRegisters[machine * REGISTER_COUNT + register] & 0xFF;
+	}
+
+	public int getProgramCounter( int machine ) {
+		return programCounters[machine];
+	}
+
+	public int readMemory( int machine, int address ) {
+		return memory[machine * MEMORY_SIZE + address] & 0xFF;
+	}
+
+	/* The pixels in row y of the machine's display, the left most pixel is the most significant bit */
+	public long getDisplayRow( int machine, int y ) {
+		return displayRows[machine * FrameBuffer.HEIGHT + y];
+	}
+
+	public void copyDisplayTo( int machine, FrameBuffer frameBuffer ) {
+		frameBuffer.setResolution( FrameBuffer.WIDTH, FrameBuffer.HEIGHT );
+		System.arraycopy( displayRows, machine * FrameBuffer.HEIGHT, frameBuffer.rows, 0, FrameBuffer.HEIGHT );
+	}
+
+	public boolean isFaulted( int machine ) {
+		return faults[machine] != null;
+	}
+
+	/* Why the machine stopped, or null if it is still running */
+	public String getFault( int machine ) {
+		return faults[machine];
+	}
+
+	public int getFaultedCount() {
+		return faultedCount;
+	}
+
+	/* How many (pc, opcode) groups the last cycle was split into, 1 means every machine was in lockstep */
+	public int getLastGroupCount() {
+		return lastGroupCount;
+	}
+
+	/* Cycles run so far, every live machine runs each one */
+	public long getCycleCount() {
+		return cycleCount;
+	}
+
+	public int getCyclesPerFrame() {
+		return cyclesPerFrame;
+	}
+
+	public void setCyclesPerFrame( int cyclesPerFrame ) {
+		this.cyclesPerFrame = cyclesPerFrame;
+	}
+
+	/*
+	Copy one machine into an Emulator, handy for looking at it up close or carrying on with it on its own
+	 */
+	public void copyTo( int machine, Emulator emulator ) {
+		System.arraycopy( memory, machine * MEMORY_SIZE, emulator.memory, 0, MEMORY_SIZE );
+		System.arraycopy( vRegisters, machine * REGISTER_COUNT, emulator.vRegisters, 0, REGISTER_COUNT );
+		System.arraycopy( keys, machine * KEY_COUNT, emulator.keys, 0, KEY_COUNT );
+		System.arraycopy( callStack, machine * CALL_STACK_SIZE, emulator.callStack, 0, CALL_STACK_SIZE );
+		copyDisplayTo( machine, emulator.getFrameBuffer() );
+		emulator.programCounter = programCounters[machine];
+		emulator.indexRegister = indexRegisters[machine];
+		emulator.stackPointer = stackPointers[machine];
+		emulator.delayTimer = delayTimers[machine];
+		emulator.soundTimer = soundTimers[machine];
+		emulator.random.setState( randomStates[machine] );
+		emulator.drawFlag = drawFlags[machine];
+		emulator.invalidateDecodeCache();
+	}
+
+}
@@ -0,0 +1,339 @@
+package com.codedchai.chip8;
+
+/*
+Every operation our CPU understands. Each decoded instruction keeps a reference to its operation, so executing an instruction
+is a single call instead of walking the opcode switch again
+ */
+enum Operation {
+
+	/* 0000 */
+	NOP {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.nop();
+		}
+	},
+
+	/* 00E0 */
+	CLS {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.cls();
+		}
+	},
+
+	/* 00EE */
+	RET {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.ret();
+		}
+	},
+
+	/* 00Cn, SUPER-CHIP */
+	SCD {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.scrollDown( instruction );
+		}
+	},
+
+	/* 00FB, SUPER-CHIP */
+	SCR {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.scrollRight();
+		}
+	},
+
+	/* 00FC, SUPER-CHIP */
+	SCL {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.scrollLeft();
+		}
+	},
+
+	/* 00FD, SUPER-CHIP */
+	EXIT {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.exit();
+		}
+	},
+
+	/* 00FE, SUPER-CHIP */
+	LOW {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.lowResolution();
+		}
+	},
+
+	/* 00FF, SUPER-CHIP */
+	HIGH {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.highResolution();
+		}
+	},
+
+	/* 1nnn */
+	JP {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.jmp( instruction );
+		}
+	},
+
+	/* 2nnn */
+	CALL {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.call( instruction );
+		}
+	},
+
+	/* 3xkk */
+	SE_VX_KK {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.SEVxIsKK( instruction );
+		}
+	},
+
+	/* 4xkk */
+	SNE_VX_KK {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.SNEVxIsNotKK( instruction );
+		}
+	},
+
+	/* 5xy0 */
+	SE_VX_VY {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.SEVxIsVy( instruction );
+		}
+	},
+
+	/* 6xkk */
+	LD_VX_KK {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.loadKKToVx( instruction );
+		}
+	},
+
+	/* 7xkk */
+	ADD_VX_KK {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.addVxKK( instruction );
+		}
+	},
+
+	/* 8xy0 */
+	LD_VX_VY {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.loadVxVy( instruction );
+		}
+	},
+
+	/* 8xy1 */
+	OR_VX_VY {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.orVxVy( instruction );
+		}
+	},
+
+	/* 8xy2 */
+	AND_VX_VY {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.andVxVy( instruction );
+		}
+	},
+
+	/* 8xy3 */
+	XOR_VX_VY {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.xorVxVy( instruction );
+		}
+	},
+
+	/* 8xy4 */
+	ADD_VX_VY {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.addVxVy( instruction );
+		}
+	},
+
+	/* 8xy5 */
+	SUB_VX_VY {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.subVxVy( instruction );
+		}
+	},
+
+	/* 8xy6 */
+	SHR_VX {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.shiftRightVx( instruction );
+		}
+	},
+
+	/* 8xy7 */
+	SUBN_VX_VY {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.subnVxVy( instruction );
+		}
+	},
+
+	/* 8xyE */
+	SHL_VX {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.shiftLeftVx( instruction );
+		}
+	},
+
+	/* 9xy0 */
+	SNE_VX_VY {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.SNEVxIsNotVy( instruction );
+		}
+	},
+
+	/* Annn */
+	LD_I_NNN {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.loadINNN( instruction );
+		}
+	},
+
+	/* Bnnn */
+	JP_V0_NNN {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.jumpNNNV0( instruction );
+		}
+	},
+
+	/* Cxkk */
+	RND_VX_KK {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.randomVxKK( instruction );
+		}
+	},
+
+	/* Dxyn */
+	DRW_VX_VY_N {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.displayVxVyN( instruction );
+		}
+	},
+
+	/* Ex9E */
+	SKP_VX {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.skipKeyPressed( instruction );
+		}
+	},
+
+	/* ExA1 */
+	SKNP_VX {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.skipKeyReleased( instruction );
+		}
+	},
+
+	/* Fx07 */
+	LD_VX_DT {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.loadVxDisplayTimer( instruction );
+		}
+	},
+
+	/* Fx0A */
+	LD_VX_K {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.loadKeyPress( instruction );
+		}
+	},
+
+	/* Fx15 */
+	LD_DT_VX {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.loadDelayTimer( instruction );
+		}
+	},
+
+	/* Fx18 */
+	LD_ST_VX {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.loadSoundTimer( instruction );
+		}
+	},
+
+	/* Fx1E */
+	ADD_I_VX {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.addIVx( instruction );
+		}
+	},
+
+	/* Fx29 */
+	LD_F_VX {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.setFontLocationInI( instruction );
+		}
+	},
+
+	/* Fx33 */
+	LD_B_VX {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.setBCD( instruction );
+		}
+	},
+
+	/* Fx55 */
+	LD_I_VX {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.storeRegisters( instruction );
+		}
+	},
+
+	/* Fx65 */
+	LD_VX_I {
+		@Override
+		void execute( Emulator emulator, Instruction instruction ) {
+			emulator.loadRegisters( instruction );
+		}
+	};
+
+	abstract void execute( Emulator emulator, Instruction instruction );
+
+}
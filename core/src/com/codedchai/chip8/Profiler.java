@@ -0,0 +1,364 @@
+package com.codedchai.chip8;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/*
+Counts where an emulator spends its time: how often each opcode family runs, which addresses run the most instructions, how
+deep the call stack is while they do, and how many instructions, frames and draws we get through per second.
+
+Like the Tracer it is off until someone turns it on, and while it is off the only cost in the hot path is reading one
+volatile boolean. Once it is on the emulator thread bumps plain counters in primitive arrays, nothing is locked, boxed or
+allocated. Readers such as JMX or getReport() sample those arrays while the emulator keeps running, so a sample can be a count
+or two behind but it never slows the emulator down. Only the emulator thread writes, give each emulator its own profiler.
+
+Register the profiler with JMX and it can be switched on and read from JConsole or VisualVM in a running application, without
+attaching a profiler or restarting anything.
+
+While profiling the block compiling engine interprets every cycle, so the counts cover exactly what ran.
+ */
+public class Profiler implements ProfilerMBean {
+
+	/* How many addresses make it into the report */
+	private static final int HOT_ADDRESS_COUNT = 20;
+	/* The rates are only recalculated when at least this much time has passed, so every reader sees a useful window */
+	private static final long RATE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos( 1 );
+
+	private static final Operation[] OPERATIONS = Operation.values();
+	private static final int DRAW = Operation.DRW_VX_VY_N.ordinal();
+	/* Reported for a machine nothing is rendering, which has no input latency to measure */
+	private static final LatencyHistogram NO_INPUT_LATENCY = new LatencyHistogram();
+
+	private final Emulator emulator;
+
+	private volatile boolean enabled;
+
+	/* Allocated the first time profiling is turned on, an emulator that is never profiled pays nothing for them */
+	private long[] operationCounts;
+	private long[] addressCounts;
+	/* How many instructions ran at each depth of the call stack */
+	private long[] callDepthCounts;
+
+	/* Only written by the emulator thread */
+	private long instructionCount;
+	private long frameCount;
+	private long drawnFrameCount;
+	private long drawsAtLastFrame;
+	private long maxDrawsPerFrame;
+	private int maxCallDepth;
+
+	/* The last time the rates were worked out, and the counts at that time */
+	private long rateSampleNanos;
+	private long rateSampleInstructions;
+	private long rateSampleFrames;
+	private long rateSampleDrawnFrames;
+	private double instructionsPerSecond;
+	private double framesPerSecond;
+	private double drawnFramesPerSecond;
+
+	Profiler( Emulator emulator ) {
+		this.emulator = emulator;
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@Override
+	public synchronized void setEnabled( boolean enabled ) {
+		if ( enabled && operationCounts == null ) {
+			operationCounts = new long[OPERATIONS.length];
+			addressCounts = new long[emulator.memory.length];
+			callDepthCounts = new long[emulator.callStack.length + 1];
+		}
+		if ( enabled && !this.enabled ) {
+			/* The first rates cover the time since profiling was turned on */
+			rateSampleNanos = 0;
+			sampleRates();
+		}
+		this.enabled = enabled;
+	}
+
+	/*
+	Called by the emulator for every instruction it is about to execute while profiling is on
+	 */
+	void countInstruction( int address, Operation operation, int callDepth ) {
+		operationCounts[operation.ordinal()]++;
+		addressCounts[address & 0xFFF]++;
+		if ( callDepth >= 0 && callDepth < callDepthCounts.length ) {
+			callDepthCounts[callDepth]++;
+			if ( callDepth > maxCallDepth ) {
+				maxCallDepth = callDepth;
+			}
+		}
+		instructionCount++;
+	}
+
+	/*
+	Called by the emulator on every tick of the timers while profiling is on, drawn says if anything was drawn since the last
+	frame was published
+	 */
+	void countFrame( boolean drawn ) {
+		long draws = operationCounts[DRAW];
+		long drawsThisFrame = draws - drawsAtLastFrame;
+		drawsAtLastFrame = draws;
+		if ( drawsThisFrame > maxDrawsPerFrame ) {
+			maxDrawsPerFrame = drawsThisFrame;
+		}
+		if ( drawn ) {
+			drawnFrameCount++;
+		}
+		frameCount++;
+	}
+
+	/*
+	Zero every counter. This races with the emulator thread on purpose, at worst a count that was in flight survives the reset
+	 */
+	@Override
+	public synchronized void reset() {
+		if ( operationCounts != null ) {
+			Arrays.fill( operationCounts, 0 );
+			Arrays.fill( addressCounts, 0 );
+			Arrays.fill( callDepthCounts, 0 );
+		}
+		instructionCount = 0;
+		frameCount = 0;
+		drawnFrameCount = 0;
+		drawsAtLastFrame = 0;
+		maxDrawsPerFrame = 0;
+		maxCallDepth = 0;
+		rateSampleNanos = 0;
+		instructionsPerSecond = 0;
+		framesPerSecond = 0;
+		drawnFramesPerSecond = 0;
+		sampleRates();
+	}
+
+	@Override
+	public long getInstructionCount() {
+		return instructionCount;
+	}
+
+	@Override
+	public long getFrameCount() {
+		return frameCount;
+	}
+
+	@Override
+	public double getInstructionsPerSecond() {
+		sampleRates();
+		return instructionsPerSecond;
+	}
+
+	@Override
+	public double getFramesPerSecond() {
+		sampleRates();
+		return framesPerSecond;
+	}
+
+	@Override
+	public double getDrawnFramesPerSecond() {
+		sampleRates();
+		return drawnFramesPerSecond;
+	}
+
+	private synchronized void sampleRates() {
+		long now = System.nanoTime();
+		long elapsed = now - rateSampleNanos;
+		if ( rateSampleNanos != 0 && elapsed < RATE_INTERVAL_NANOS ) {
+			return;
+		}
+
+		long instructions = instructionCount;
+		long frames = frameCount;
+		long drawnFrames = drawnFrameCount;
+		if ( rateSampleNanos != 0 ) {
+			double seconds = elapsed / (double) TimeUnit.SECONDS.toNanos( 1 );
+			instructionsPerSecond = (instructions - rateSampleInstructions) / seconds;
+			framesPerSecond = (frames - rateSampleFrames) / seconds;
+			drawnFramesPerSecond = (drawnFrames - rateSampleDrawnFrames) / seconds;
+		}
+		rateSampleNanos = now;
+		rateSampleInstructions = instructions;
+		rateSampleFrames = frames;
+		rateSampleDrawnFrames = drawnFrames;
+	}
+
+	@Override
+	public double getAverageDrawsPerFrame() {
+		long frames = frameCount;
+		return frames == 0 || operationCounts == null ? 0 : operationCounts[DRAW] / (double) frames;
+	}
+
+	@Override
+	public long getMaxDrawsPerFrame() {
+		return maxDrawsPerFrame;
+	}
+
+	@Override
+	public int getCallDepth() {
+		return emulator.getStackPointer();
+	}
+
+	@Override
+	public int getMaxCallDepth() {
+		return maxCallDepth;
+	}
+
+	@Override
+	public double getInputLatencyMeanMillis() {
+		return inputLatency().getMeanMillis();
+	}
+
+	@Override
+	public double getInputLatency99thPercentileMillis() {
+		return inputLatency().getPercentileMillis( 0.99 );
+	}
+
+	@Override
+	public double getInputLatencyMaxMillis() {
+		return inputLatency().getMaxMillis();
+	}
+
+	@Override
+	public String[] getOpcodeFamilies() {
+		String[] names = new String[OPERATIONS.length];
+		for ( int i = 0; i < OPERATIONS.length; i++ ) {
+			names[i] = OPERATIONS[i].name();
+		}
+		return names;
+	}
+
+	@Override
+	public long[] getOpcodeFamilyCounts() {
+		return operationCounts == null ? new long[OPERATIONS.length] : operationCounts.clone();
+	}
+
+	@Override
+	public String[] getHotAddresses() {
+		if ( addressCounts == null ) {
+			return new String[0];
+		}
+
+		final long[] counts = addressCounts.clone();
+		long total = 0;
+		for ( long count : counts ) {
+			total += count;
+		}
+		Integer[] addresses = new Integer[counts.length];
+		for ( int address = 0; address < addresses.length; address++ ) {
+			addresses[address] = address;
+		}
+		Arrays.sort( addresses, new Comparator < Integer >() {
+			@Override
+			public int compare( Integer a, Integer b ) {
+				return Long.compare( counts[b], counts[a] );
+			}
+		} );
+
+		int hot = 0;
+		while ( hot < HOT_ADDRESS_COUNT && counts[addresses[hot]] > 0 ) {
+			hot++;
+		}
+		String[] lines = new String[hot];
+		for ( int i = 0; i < hot; i++ ) {
+			int address = addresses[i];
+			lines[i] = String.format( "%03X %12d %6.2f%%  %s", address, counts[address], 100.0 * counts[address] / total, disassemble( address ) );
+		}
+		return lines;
+	}
+
+	/*
+	What is in memory at the address right now, which is not necessarily what ran there if the ROM rewrites its code
+	 */
+	private String disassemble( int address ) {
+		if ( address + 1 >= emulator.memory.length ) {
+			return "";
+		}
+		try {
+			return Disassembler.mnemonic( Emulator.decodeOpcode( emulator.readOpcode( address ) ) );
+		} catch ( Exception e ) {
+			return String.format( "DW %04X", emulator.readOpcode( address ) );
+		}
+	}
+
+	@Override
+	public String getReport() {
+		StringBuilder report = new StringBuilder();
+		long instructions = instructionCount;
+		report.append( "Instructions: " ).append( instructions ).append( ", frames: " ).append( frameCount ).append( '\n' );
+		report.append( String.format( "Instructions per second: %.0f, frames per second: %.1f, drawn frames per second: %.1f%n",
+				getInstructionsPerSecond(), getFramesPerSecond(), getDrawnFramesPerSecond() ) );
+		report.append( String.format( "Draws per frame: %.2f average, %d at most%n", getAverageDrawsPerFrame(), maxDrawsPerFrame ) );
+		report.append( "Call depth: " ).append( getCallDepth() ).append( " now, " ).append( maxCallDepth ).append( " at most\n" );
+		report.append( "Input latency: " ).append( inputLatency() ).append( '\n' );
+
+		if ( operationCounts == null ) {
+			return report.toString();
+		}
+
+		report.append( "\nInstructions by call depth\n" );
+		for ( int depth = 0; depth < callDepthCounts.length; depth++ ) {
+			long count = callDepthCounts[depth];
+			if ( count > 0 ) {
+				report.append( String.format( "%3d %12d %6.2f%%%n", depth, count, percentOf( count, instructions ) ) );
+			}
+		}
+
+		report.append( "\nOpcode families\n" );
+		final long[] counts = operationCounts.clone();
+		Integer[] order = new Integer[counts.length];
+		for ( int i = 0; i < order.length; i++ ) {
+			order[i] = i;
+		}
+		Arrays.sort( order, new Comparator < Integer >() {
+			@Override
+			public int compare( Integer a, Integer b ) {
+				return Long.compare( counts[b], counts[a] );
+			}
+		} );
+		for ( int operation : order ) {
+			if ( counts[operation] > 0 ) {
+				report.append( String.format( "%-12s %12d %6.2f%%%n", OPERATIONS[operation].name(), counts[operation], percentOf( counts[operation], instructions ) ) );
+			}
+		}
+
+		report.append( "\nHot addresses\n" );
+		for ( String line : getHotAddresses() ) {
+			report.append( line ).append( '\n' );
+		}
+		return report.toString();
+	}
+
+	private LatencyHistogram inputLatency() {
+		FrameExchange frameExchange = emulator.peekFrameExchange();
+		return frameExchange != null ? frameExchange.getInputLatency() : NO_INPUT_LATENCY;
+	}
+
+	private static double percentOf( long count, long total ) {
+		return total == 0 ? 0 : 100.0 * count / total;
+	}
+
+	/*
+	Publish the profiler on the platform MBean server as com.codedchai.chip8:type=Profiler,name=<name>. Registering does not
+	turn profiling on, set Enabled from the JMX client when you want to start counting
+	 */
+	public void register( String name ) throws JMException {
+		ManagementFactory.getPlatformMBeanServer().registerMBean( this, objectName( name ) );
+	}
+
+	public void unregister( String name ) throws JMException {
+		ManagementFactory.getPlatformMBeanServer().unregisterMBean( objectName( name ) );
+	}
+
+	private static ObjectName objectName( String name ) throws JMException {
+		return new ObjectName( "com.codedchai.chip8:type=Profiler,name=" + ObjectName.quote( name ) );
+	}
+
+}
@@ -0,0 +1,53 @@
+package com.codedchai.chip8;
+
+/*
+What a Profiler shows over JMX, see Profiler.register
+ */
+public interface ProfilerMBean {
+
+	boolean isEnabled();
+
+	void setEnabled( boolean enabled );
+
+	/* Start counting from zero again */
+	void reset();
+
+	long getInstructionCount();
+
+	long getFrameCount();
+
+	/* The rates are measured over the time since they were last asked for, at most once a second */
+	double getInstructionsPerSecond();
+
+	double getFramesPerSecond();
+
+	/* Frames that actually drew something, per second */
+	double getDrawnFramesPerSecond();
+
+	double getAverageDrawsPerFrame();
+
+	long getMaxDrawsPerFrame();
+
+	int getCallDepth();
+
+	int getMaxCallDepth();
+
+	/* Time from a key event being received to the first frame drawn after it reaching the renderer */
+	double getInputLatencyMeanMillis();
+
+	double getInputLatency99thPercentileMillis();
+
+	double getInputLatencyMaxMillis();
+
+	/* The name of every opcode family and how many times it ran, the two arrays line up */
+	String[] getOpcodeFamilies();
+
+	long[] getOpcodeFamilyCounts();
+
+	/* The addresses that ran the most instructions, busiest first, with their share and disassembly */
+	String[] getHotAddresses();
+
+	/* Everything above as a plain text report */
+	String getReport();
+
+}
@@ -1,44 +1,70 @@
 package com.codedchai.chip8;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.file.Files;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.file.StandardOpenOption;
 
+/*
+Getting ROMs off the disk. The size is checked from the file's metadata before anything is read, and the contents go
+straight into a ByteBuffer (or the emulator's memory) without passing through any intermediate copies
+ */
 public class ROM {
 
-	private static final int MAXIMUM_ROM_SIZE = 3584;
+	private static final int MAXIMUM_ROM_SIZE = Emulator.MAXIMUM_ROM_SIZE;
 
+	/*
+	Disassemble a ROM, pass --dot after the path to get the control flow graph instead of the listing
+	 */
 	public static void main( String[] args ) throws Exception {
-		ROM disassembler = new ROM();
+		Path romPath = Paths.get( args[0] );
+		ByteBuffer rom = loadROM( romPath );
+		Disassembler disassembler = new Disassembler( rom );
 
-		System.out.println( args[0] );
-
-		Path tetrisRom = Paths.get( args[0] );
+		if ( args.length > 1 && args[1].equals( "--dot" ) ) {
+			System.out.print( disassembler.toDot() );
+			return;
+		}
 
-		disassembler.loadROM( tetrisRom );
+		System.out.println( "; " + args[0] );
+		System.out.println( "; " + rom.remaining() + " bytes, sha1 " + RomCatalog.hash( rom ) );
+		System.out.println( "; " + disassembler.getBasicBlocks().size() + " basic blocks, " + disassembler.getSubroutines().size() + " subroutines" );
+		System.out.print( disassembler.toListing() );
 	}
 
-	public static List < Byte > loadROM( Path filePath ) throws Exception {
-		List < Byte > bytes = new ArrayList <>();
-
-		ByteBuffer byteBuffer = ByteBuffer.wrap( Files.readAllBytes( filePath ) );
-		//byteBuffer.order( ByteOrder.BIG_ENDIAN );
+	/*
+	Map the ROM read only, the buffer covers exactly the ROM's bytes
+	 */
+	public static ByteBuffer loadROM( Path filePath ) throws IOException {
+		try ( FileChannel channel = FileChannel.open( filePath, StandardOpenOption.READ ) ) {
+			return channel.map( FileChannel.MapMode.READ_ONLY, 0, checkSize( filePath, channel.size() ) );
+		}
+	}
 
-		while ( byteBuffer.hasRemaining() ) {
-			Byte currentByte = byteBuffer.get();
-			bytes.add( currentByte );
+	/*
+	Read the ROM straight into the emulator's memory at 0x200
+	 */
+	public static void loadROM( Emulator emulator, Path filePath ) throws IOException {
+		try ( FileChannel channel = FileChannel.open( filePath, StandardOpenOption.READ ) ) {
+			int size = checkSize( filePath, channel.size() );
 
-			System.out.println( String.format( "%02X", (currentByte & 0xFF) ) );
+			ByteBuffer memory = ByteBuffer.wrap( emulator.memory, Emulator.MEMORY_ROM_START_LOCATION, size );
+			while ( memory.hasRemaining() ) {
+				if ( channel.read( memory ) < 0 ) {
+					throw new IOException( "ROM '" + filePath.getFileName() + "' ended after " + memory.position() + " bytes, expected " + size );
+				}
+			}
+			emulator.romLoaded( size );
 		}
+	}
 
-		if ( bytes.size() > MAXIMUM_ROM_SIZE ) {
-			throw new Exception( "ROM '" + filePath.getFileName() + "' is too large to fit into Chip-8 RAM. It is " + bytes.size() + " bytes when the limit is " + MAXIMUM_ROM_SIZE );
+	private static int checkSize( Path filePath, long size ) {
+		if ( size > MAXIMUM_ROM_SIZE ) {
+			throw new IllegalArgumentException( "ROM '" + filePath.getFileName() + "' is too large to fit into Chip-8 RAM. It is " + size + " bytes when the limit is " + MAXIMUM_ROM_SIZE );
 		}
-
-		return bytes;
+		return (int) size;
 	}
 
 }
@@ -0,0 +1,95 @@
+package com.codedchai.chip8;
+
+/*
+Runs an emulator on the render thread instead of a thread of its own. Every rendered frame runs cpuFrequency / refreshRate
+cycles and ticks the timers, so with vsync on the emulator is paced by the display, there is no second thread sharing the
+frame and no sleeping.
+
+Like EmulatorRunner the remainders are carried over from frame to frame, so the CPU still runs exactly cpuFrequency cycles
+and the timers exactly TIMER_FREQUENCY ticks for every refreshRate frames. On a 60 Hz display that is one tick per frame,
+faster displays get a tick every few frames and slower ones get several ticks with the cycles split between them. Nothing is
+caught up if rendering stalls, the machine just pauses with the display.
+
+Every frame is reported to the Java Flight Recorder the same way EmulatorRunner reports its ticks, see FlightRecorderEvents.
+ */
+public class RenderLoopRunner {
+
+	private final Emulator emulator;
+	private final int refreshRate;
+	private final FrameTimeStats frameTimes = new FrameTimeStats();
+
+	private int cpuFrequency = Emulator.CPU_FREQUENCY;
+
+	private long cycleRemainder;
+	private long tickRemainder;
+	private long frames;
+
+	/*
+	refreshRate is how many times a second runFrame() will be called, normally the display's refresh rate
+	 */
+	public RenderLoopRunner( Emulator emulator, int refreshRate ) {
+		if ( refreshRate <= 0 ) {
+			throw new IllegalArgumentException( "Refresh rate must be positive, got " + refreshRate );
+		}
+		this.emulator = emulator;
+		this.refreshRate = refreshRate;
+	}
+
+	/*
+	Call once from every render(), runs one display frame's worth of the machine and publishes the result
+	 */
+	public void runFrame() throws Exception {
+		frameTimes.frame( System.nanoTime() );
+		FrameEvent frameEvent = FlightRecorderEvents.beginFrame();
+		long spriteDrawsBefore = emulator.spriteDrawCount;
+
+		cycleRemainder += cpuFrequency;
+		int cycles = (int) (cycleRemainder / refreshRate);
+		cycleRemainder %= refreshRate;
+
+		tickRemainder += Emulator.TIMER_FREQUENCY;
+		int ticks = (int) (tickRemainder / refreshRate);
+		tickRemainder %= refreshRate;
+
+		if ( ticks == 0 ) {
+			emulator.step( cycles );
+		} else {
+			for ( int tick = 0; tick < ticks; tick++ ) {
+				emulator.step( cycles / ticks + (tick < cycles % ticks ? 1 : 0) );
+				emulator.tickTimers();
+			}
+		}
+		boolean published = emulator.drawFlag;
+		emulator.publishFrame();
+		frames++;
+
+		if ( frameEvent != null ) {
+			FlightRecorderEvents.endFrame( frameEvent, frames, cycles, emulator.spriteDrawCount - spriteDrawsBefore, published, false );
+		}
+	}
+
+	public int getRefreshRate() {
+		return refreshRate;
+	}
+
+	public int getCpuFrequency() {
+		return cpuFrequency;
+	}
+
+	public void setCpuFrequency( int cpuFrequency ) {
+		if ( cpuFrequency <= 0 ) {
+			throw new IllegalArgumentException( "CPU frequency must be positive, got " + cpuFrequency );
+		}
+		this.cpuFrequency = cpuFrequency;
+	}
+
+	public long getFrames() {
+		return frames;
+	}
+
+	/* Time between the starts of successive frames */
+	public FrameTimeStats getFrameTimes() {
+		return frameTimes;
+	}
+
+}
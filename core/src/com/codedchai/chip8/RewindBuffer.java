@@ -0,0 +1,371 @@
+package com.codedchai.chip8;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/*
+History of the machine, one entry per timer tick, that can be stepped back through and seeked around in.
+
+Each entry is the SaveState of that tick XORed with the one before it, with the runs of zeros squeezed out. Between two ticks
+only a handful of bytes actually change, so most entries are a few dozen bytes. Because XOR undoes itself the same delta
+takes us from a tick to the one before it and back again, so stepping one tick in either direction costs one delta.
+Every KEYFRAME_INTERVAL ticks the full state is stored as well, so seeking a long way only has to walk from the nearest
+keyframe instead of from wherever we are now.
+
+Entries live in a byte ring of a fixed size, when a new entry doesn't fit the oldest entries are thrown away. Seeking never
+needs a keyframe that was evicted, we can always walk there from the current position instead. The budget covers the ring and
+the table of where each entry is, the table has room for one entry per TYPICAL_ENTRY_SIZE bytes of ring, so a ROM whose
+entries are smaller than that runs out of table before it runs out of ring and the oldest entries go all the same.
+
+Not thread safe, record and rewind from whichever thread runs the emulator.
+ */
+public class RewindBuffer {
+
+	/* How many ticks apart keyframes are, one a second */
+	public static final int KEYFRAME_INTERVAL = Emulator.TIMER_FREQUENCY;
+	/* Zero runs shorter than this are left inside the literal bytes, they cost more to encode than they save */
+	private static final int MIN_ZERO_RUN = 3;
+	/* About the average entry across the bundled ROMs with keyframes included, used to split the budget between ring and table */
+	private static final int TYPICAL_ENTRY_SIZE = 32;
+	/* An offset, a delta length and a keyframe length per entry */
+	private static final int TABLE_BYTES_PER_ENTRY = 3 * 4;
+
+	private final byte[] ring;
+	/* Per entry, indexed by tick % entries */
+	private final int[] entryOffsets;
+	private final int[] deltaLengths;
+	private final int[] keyframeLengths;
+
+	/* The state at the cursor, and a scratch state for encoding new entries */
+	private final byte[] cursorState = new byte[SaveState.SIZE];
+	private final byte[] recordState = new byte[SaveState.SIZE];
+	private final ByteBuffer cursorBuffer;
+	private final ByteBuffer recordBuffer;
+	private final byte[] encodeBuffer = new byte[(SaveState.SIZE * 2) + 16];
+
+	/* Ticks are numbered from 0 by the order they were recorded in, -1 while nothing is recorded */
+	private long oldestTick;
+	private long newestTick = -1;
+	private long cursorTick = -1;
+
+	/* Where the next entry goes and where the oldest one starts */
+	private int ringHead;
+	private int ringTail;
+	private int usedBytes;
+
+	/*
+	A rewind buffer whose history, the entries and the table of them together, takes at most budgetBytes bytes
+	 */
+	public RewindBuffer( int budgetBytes ) {
+		int maxEntries = budgetBytes / (TYPICAL_ENTRY_SIZE + TABLE_BYTES_PER_ENTRY);
+		int ringBytes = budgetBytes - (maxEntries * TABLE_BYTES_PER_ENTRY);
+		if ( ringBytes < encodeBuffer.length * 2 ) {
+			int minimum = (encodeBuffer.length * 2 * (TYPICAL_ENTRY_SIZE + TABLE_BYTES_PER_ENTRY) / TYPICAL_ENTRY_SIZE) + 1;
+			throw new IllegalArgumentException( "Rewind budget has to be at least " + minimum + " bytes, got " + budgetBytes );
+		}
+		ring = new byte[ringBytes];
+
+		entryOffsets = new int[maxEntries];
+		deltaLengths = new int[maxEntries];
+		keyframeLengths = new int[maxEntries];
+
+		cursorBuffer = ByteBuffer.wrap( cursorState );
+		recordBuffer = ByteBuffer.wrap( recordState );
+	}
+
+	/*
+	Record the emulator's current state as the next tick. If we had stepped back, everything after the cursor is thrown away
+	first, the same way typing after an undo throws away the redo history
+	 */
+	public void record( Emulator emulator ) {
+		recordBuffer.clear();
+		SaveState.write( emulator, recordBuffer );
+
+		if ( cursorTick < newestTick ) {
+			truncateAfterCursor();
+		}
+
+		long tick = newestTick + 1;
+		int deltaLength = encode( recordState, cursorTick < 0 ? null : cursorState, encodeBuffer, 0 );
+		int keyframeLength = 0;
+		if ( tick % KEYFRAME_INTERVAL == 0 ) {
+			keyframeLength = encode( recordState, null, encodeBuffer, deltaLength );
+		}
+		append( tick, deltaLength, keyframeLength );
+
+		System.arraycopy( recordState, 0, cursorState, 0, SaveState.SIZE );
+		newestTick = tick;
+		cursorTick = tick;
+	}
+
+	/*
+	Move back one tick and load that state into the emulator. Returns false if there is no older tick left
+	 */
+	public boolean stepBack( Emulator emulator ) {
+		if ( cursorTick <= oldestTick ) {
+			return false;
+		}
+		applyDelta( cursorTick );
+		cursorTick--;
+		restore( emulator );
+		return true;
+	}
+
+	/*
+	Move forward one tick after stepping back and load that state into the emulator. Returns false if we are at the newest tick
+	 */
+	public boolean stepForward( Emulator emulator ) {
+		if ( cursorTick >= newestTick ) {
+			return false;
+		}
+		cursorTick++;
+		applyDelta( cursorTick );
+		restore( emulator );
+		return true;
+	}
+
+	/*
+	Jump to any tick between getOldestTick() and getNewestTick() and load that state into the emulator. Walks from the cursor
+	or from the nearest keyframe, whichever is fewer deltas away
+	 */
+	public void seek( Emulator emulator, long tick ) {
+		if ( tick < oldestTick || tick > newestTick ) {
+			throw new IllegalArgumentException( "Tick " + tick + " is not in the rewind buffer, it holds " + oldestTick + " to " + newestTick );
+		}
+
+		long distance = Math.abs( tick - cursorTick );
+		long keyframeBefore = tick - (tick % KEYFRAME_INTERVAL);
+		long keyframeAfter = keyframeBefore + KEYFRAME_INTERVAL;
+		if ( keyframeBefore >= oldestTick && tick - keyframeBefore < distance ) {
+			loadKeyframe( keyframeBefore );
+			distance = tick - keyframeBefore;
+		}
+		if ( keyframeAfter <= newestTick && keyframeAfter - tick < distance ) {
+			loadKeyframe( keyframeAfter );
+		}
+
+		while ( cursorTick > tick ) {
+			applyDelta( cursorTick );
+			cursorTick--;
+		}
+		while ( cursorTick < tick ) {
+			cursorTick++;
+			applyDelta( cursorTick );
+		}
+		restore( emulator );
+	}
+
+	public void clear() {
+		oldestTick = 0;
+		newestTick = -1;
+		cursorTick = -1;
+		ringHead = 0;
+		ringTail = 0;
+		usedBytes = 0;
+	}
+
+	public long getOldestTick() {
+		return oldestTick;
+	}
+
+	public long getNewestTick() {
+		return newestTick;
+	}
+
+	public long getCursorTick() {
+		return cursorTick;
+	}
+
+	/* How many ticks of history we currently hold */
+	public long getTickCount() {
+		return newestTick - oldestTick + 1;
+	}
+
+	/* How many bytes the stored entries take up, not counting space skipped at the end of the ring */
+	public int getUsedBytes() {
+		return usedBytes;
+	}
+
+	/* The ring and the table of entries together */
+	public int getBudgetBytes() {
+		return ring.length + (entryOffsets.length * TABLE_BYTES_PER_ENTRY);
+	}
+
+	private void restore( Emulator emulator ) {
+		cursorBuffer.clear();
+		SaveState.read( emulator, cursorBuffer );
+	}
+
+	private void loadKeyframe( long tick ) {
+		int entry = entryIndex( tick );
+		Arrays.fill( cursorState, (byte) 0 );
+		decode( ring, entryOffsets[entry] + deltaLengths[entry], keyframeLengths[entry], cursorState );
+		cursorTick = tick;
+	}
+
+	private void applyDelta( long tick ) {
+		int entry = entryIndex( tick );
+		decode( ring, entryOffsets[entry], deltaLengths[entry], cursorState );
+	}
+
+	private int entryIndex( long tick ) {
+		return (int) (tick % entryOffsets.length);
+	}
+
+	/*
+	Copy an encoded entry into the ring, evicting the oldest entries until it fits. Entries never wrap around the end of the
+	ring, if one doesn't fit in front of the end it starts over at the beginning
+	 */
+	private void append( long tick, int deltaLength, int keyframeLength ) {
+		int length = deltaLength + keyframeLength;
+		if ( getTickCount() == entryOffsets.length ) {
+			evictOldest();
+		}
+
+		int offset = ringHead;
+		if ( offset + length > ring.length ) {
+			/* The tail end of the ring is skipped, anything still stored there has to go */
+			while ( getTickCount() > 0 && entryOffsets[entryIndex( oldestTick )] >= offset ) {
+				evictOldest();
+			}
+			offset = 0;
+		}
+		while ( getTickCount() > 0 && overlapsOldest( offset, length ) ) {
+			evictOldest();
+		}
+
+		System.arraycopy( encodeBuffer, 0, ring, offset, length );
+		int entry = entryIndex( tick );
+		entryOffsets[entry] = offset;
+		deltaLengths[entry] = deltaLength;
+		keyframeLengths[entry] = keyframeLength;
+		if ( getTickCount() == 0 ) {
+			oldestTick = tick;
+			ringTail = offset;
+		}
+		ringHead = offset + length;
+		usedBytes += length;
+	}
+
+	private boolean overlapsOldest( int offset, int length ) {
+		return ringTail >= offset && ringTail < offset + length;
+	}
+
+	private void evictOldest() {
+		int entry = entryIndex( oldestTick );
+		int length = deltaLengths[entry] + keyframeLengths[entry];
+		usedBytes -= length;
+		oldestTick++;
+
+		if ( oldestTick > newestTick ) {
+			ringTail = ringHead;
+			return;
+		}
+		ringTail = entryOffsets[entryIndex( oldestTick )];
+		if ( cursorTick < oldestTick ) {
+			cursorTick = oldestTick;
+		}
+	}
+
+	private void truncateAfterCursor() {
+		int entry = entryIndex( cursorTick );
+		int end = entryOffsets[entry] + deltaLengths[entry] + keyframeLengths[entry];
+		for ( long tick = newestTick; tick > cursorTick; tick-- ) {
+			int dropped = entryIndex( tick );
+			usedBytes -= deltaLengths[dropped] + keyframeLengths[dropped];
+		}
+		newestTick = cursorTick;
+		ringHead = end;
+	}
+
+	/*
+	XOR state against previous (or against nothing when previous is null) and write it out as repeated
+	(zero run length, literal length, literal bytes) with both lengths as varints. Returns how many bytes were written
+	 */
+	static int encode( byte[] state, byte[] previous, byte[] out, int outOffset ) {
+		int position = outOffset;
+		int index = 0;
+		int length = state.length;
+
+		while ( index < length ) {
+			int zeroRunStart = index;
+			while ( index < length && xor( state, previous, index ) == 0 ) {
+				index++;
+			}
+			int zeroRun = index - zeroRunStart;
+			if ( index == length ) {
+				if ( position == outOffset ) {
+					/* Nothing changed at all, still write one empty run so the entry isn't zero bytes long */
+					position = writeVarInt( out, position, zeroRun );
+					position = writeVarInt( out, position, 0 );
+				}
+				break;
+			}
+
+			/* Literal bytes run until we find a zero run long enough to be worth stopping for */
+			int literalStart = index;
+			int zeros = 0;
+			while ( index < length && zeros < MIN_ZERO_RUN ) {
+				zeros = xor( state, previous, index ) == 0 ? zeros + 1 : 0;
+				index++;
+			}
+			if ( zeros == MIN_ZERO_RUN ) {
+				index -= MIN_ZERO_RUN;
+			}
+
+			position = writeVarInt( out, position, zeroRun );
+			position = writeVarInt( out, position, index - literalStart );
+			for ( int i = literalStart; i < index; i++ ) {
+				out[position++] = xor( state, previous, i );
+			}
+		}
+		return position - outOffset;
+	}
+
+	/*
+	XOR an encoded entry onto target
+	 */
+	static void decode( byte[] in, int offset, int length, byte[] target ) {
+		int position = offset;
+		int end = offset + length;
+		int index = 0;
+
+		while ( position < end ) {
+			int zeroRun = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = in[position++];
+				zeroRun |= (b & 0x7F) << shift;
+				shift += 7;
+			} while ( b < 0 );
+
+			int literals = 0;
+			shift = 0;
+			do {
+				b = in[position++];
+				literals |= (b & 0x7F) << shift;
+				shift += 7;
+			} while ( b < 0 );
+
+			index += zeroRun;
+			for ( int i = 0; i < literals; i++ ) {
+				target[index++] ^= in[position++];
+			}
+		}
+	}
+
+	private static byte xor( byte[] state, byte[] previous, int index ) {
+		return previous == null ? state[index] : (byte) (state[index] ^ previous[index]);
+	}
+
+	private static int writeVarInt( byte[] out, int position, int value ) {
+		while ( (value & ~0x7F) != 0 ) {
+			out[position++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out[position++] = (byte) value;
+		return position;
+	}
+
+}
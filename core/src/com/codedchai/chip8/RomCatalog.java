@@ -0,0 +1,242 @@
+package com.codedchai.chip8;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+Every ROM we know about, indexed by the SHA-1 of its contents so the same game is recognised no matter what the file is called.
+
+Hashing means reading every file, so the results are kept in a small text index on disk. A rescan only reads files whose size
+or modification time changed since the index was written, everything else comes straight out of the index. The index is only
+ever a cache, so a line that was cut short or corrupted is skipped and that file is hashed again, and an index that isn't
+even text any more is ignored completely. ROM contents are
+kept in memory once loaded, a few hundred ROMs is only a megabyte or so, so switching back to a ROM never touches the disk.
+ */
+public class RomCatalog {
+
+	private static final String INDEX_HEADER = "chip8-rom-index 1";
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+	/* A SHA-1 is 20 bytes, two hex digits each */
+	private static final int HASH_LENGTH = 40;
+
+	private final Path indexPath;
+
+	/* Everything found by the last scan, by path */
+	private final Map < Path, Entry > entriesByPath = new LinkedHashMap <>();
+	private final Map < String, Entry > entriesByHash = new HashMap <>();
+	private final Map < String, ByteBuffer > contentsByHash = new HashMap <>();
+
+	/* What the index on disk said, used to skip hashing files that haven't changed */
+	private final Map < Path, Entry > indexedEntries = new HashMap <>();
+
+	public static final class Entry {
+
+		public final String hash;
+		public final Path path;
+		public final long size;
+		public final long lastModified;
+
+		Entry( String hash, Path path, long size, long lastModified ) {
+			this.hash = hash;
+			this.path = path;
+			this.size = size;
+			this.lastModified = lastModified;
+		}
+
+		public String getName() {
+			return path.getFileName().toString();
+		}
+
+		@Override
+		public String toString() {
+			return hash + " " + path;
+		}
+	}
+
+	/*
+	A catalog backed by the index at indexPath, the index is read now if it exists and written by save()
+	 */
+	public RomCatalog( Path indexPath ) throws IOException {
+		this.indexPath = indexPath;
+		if ( Files.isRegularFile( indexPath ) ) {
+			readIndex();
+		}
+	}
+
+	/*
+	Find every ROM in the directories and their subdirectories. Files larger than a ROM can be are skipped
+	 */
+	public void scan( Path... directories ) throws IOException {
+		for ( Path directory : directories ) {
+			if ( !Files.isDirectory( directory ) ) {
+				continue;
+			}
+			Files.walkFileTree( directory, new SimpleFileVisitor < Path >() {
+				@Override
+				public FileVisitResult visitFile( Path file, BasicFileAttributes attributes ) throws IOException {
+					if ( attributes.isRegularFile() && attributes.size() > 0 && attributes.size() <= Emulator.MAXIMUM_ROM_SIZE ) {
+						add( file.toAbsolutePath().normalize(), attributes );
+					}
+					return FileVisitResult.CONTINUE;
+				}
+			} );
+		}
+	}
+
+	/*
+	Write the index so the next catalog can skip hashing anything that hasn't changed
+	 */
+	public void save() throws IOException {
+		Path parent = indexPath.toAbsolutePath().getParent();
+		if ( parent != null ) {
+			Files.createDirectories( parent );
+		}
+
+		try ( BufferedWriter writer = Files.newBufferedWriter( indexPath, StandardCharsets.UTF_8 ) ) {
+			writer.write( INDEX_HEADER );
+			writer.newLine();
+			for ( Entry entry : entriesByPath.values() ) {
+				writer.write( entry.hash + "\t" + entry.size + "\t" + entry.lastModified + "\t" + entry.path );
+				writer.newLine();
+			}
+		}
+	}
+
+	public List < Entry > getEntries() {
+		return Collections.unmodifiableList( new ArrayList <>( entriesByPath.values() ) );
+	}
+
+	/* The first ROM found with these contents, or null */
+	public Entry findByHash( String hash ) {
+		return entriesByHash.get( hash );
+	}
+
+	/* The first ROM found with this file name, or null */
+	public Entry findByName( String name ) {
+		for ( Entry entry : entriesByPath.values() ) {
+			if ( entry.getName().equals( name ) ) {
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	/*
+	The ROM's contents as a read only buffer, ready for Emulator.loadROM. Only the first request for a ROM reads the disk
+	 */
+	public ByteBuffer getContents( Entry entry ) throws IOException {
+		ByteBuffer contents = contentsByHash.get( entry.hash );
+		if ( contents == null ) {
+			contents = ByteBuffer.wrap( Files.readAllBytes( entry.path ) ).asReadOnlyBuffer();
+			contentsByHash.put( entry.hash, contents );
+		}
+		return contents.duplicate();
+	}
+
+	/*
+	SHA-1 of the buffer's remaining bytes as lowercase hex, the buffer's position is left alone
+	 */
+	public static String hash( ByteBuffer contents ) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance( "SHA-1" );
+		} catch ( NoSuchAlgorithmException e ) {
+			/* Every Java platform has to provide SHA-1 */
+			throw new IllegalStateException( e );
+		}
+		digest.update( contents.duplicate() );
+
+		byte[] hash = digest.digest();
+		char[] hex = new char[hash.length * 2];
+		for ( int i = 0; i < hash.length; i++ ) {
+			hex[i * 2] = HEX_DIGITS[(hash[i] >> 4) & 0xF];
+			hex[(i * 2) + 1] = HEX_DIGITS[hash[i] & 0xF];
+		}
+		return new String( hex );
+	}
+
+	private void add( Path file, BasicFileAttributes attributes ) throws IOException {
+		long lastModified = attributes.lastModifiedTime().toMillis();
+
+		Entry entry = indexedEntries.get( file );
+		if ( entry == null || entry.size != attributes.size() || entry.lastModified != lastModified ) {
+			ByteBuffer contents = ROM.loadROM( file );
+			entry = new Entry( hash( contents ), file, attributes.size(), lastModified );
+		}
+
+		entriesByPath.put( file, entry );
+		if ( !entriesByHash.containsKey( entry.hash ) ) {
+			entriesByHash.put( entry.hash, entry );
+		}
+	}
+
+	private void readIndex() throws IOException {
+		try ( BufferedReader reader = Files.newBufferedReader( indexPath, StandardCharsets.UTF_8 ) ) {
+			if ( !INDEX_HEADER.equals( reader.readLine() ) ) {
+				/* Some other version of the index, just rebuild it */
+				return;
+			}
+
+			String line;
+			while ( (line = reader.readLine()) != null ) {
+				Entry entry = parseIndexLine( line );
+				if ( entry != null ) {
+					indexedEntries.put( entry.path, entry );
+				}
+			}
+		} catch ( CharacterCodingException e ) {
+			/* Not text any more, treat the whole index as stale and rebuild it */
+			indexedEntries.clear();
+		}
+	}
+
+	/*
+	One line of the index, or null if it was cut short or corrupted
+	 */
+	private static Entry parseIndexLine( String line ) {
+		String[] fields = line.split( "\t", 4 );
+		if ( fields.length != 4 || !isHash( fields[0] ) ) {
+			return null;
+		}
+		try {
+			Path path = Paths.get( fields[3] );
+			return new Entry( fields[0], path, Long.parseLong( fields[1] ), Long.parseLong( fields[2] ) );
+		} catch ( NumberFormatException | InvalidPathException e ) {
+			return null;
+		}
+	}
+
+	/* Whether the text could have come out of hash() */
+	private static boolean isHash( String text ) {
+		if ( text.length() != HASH_LENGTH ) {
+			return false;
+		}
+		for ( int i = 0; i < text.length(); i++ ) {
+			char digit = text.charAt( i );
+			if ( (digit < '0' || digit > '9') && (digit < 'a' || digit > 'f') ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
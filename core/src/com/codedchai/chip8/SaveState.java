@@ -0,0 +1,148 @@
+package com.codedchai.chip8;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+Snapshots of the complete machine in a fixed size binary format. Every field is written straight into a ByteBuffer, there is
+no object serialization and nothing is allocated, so taking a snapshot is just a few kilobytes of copying and cheap enough
+to do every frame. Restoring copies everything back into the arrays the emulator already has.
+
+Layout, big endian, SIZE bytes in total:
+	int magic, short version,
+	int opcode, short programCounter, indexRegister, stackPointer, delayTimer, soundTimer,
+	long cycleCount, int cyclesPerFrame, byte drawFlag, long random state, byte high resolution,
+	byte[16] vRegisters, byte[16] keys, short[48] callStack, long[128] display rows padded with zeros, byte[4096] memory
+ */
+public final class SaveState {
+
+	/* "C8SS" */
+	public static final int MAGIC = 0x43385353;
+	/* Bump this whenever the layout changes, and InputRecorder.VERSION along with it since input recordings start with one */
+	public static final short VERSION = 2;
+
+	private static final int HEADER_SIZE = 4 + 2;
+	private static final int REGISTERS_SIZE = 4 + (2 * 5) + 8 + 4 + 1 + 8 + 1;
+	private static final int V_REGISTERS_SIZE = 16;
+	private static final int KEYS_SIZE = 16;
+	private static final int CALL_STACK_SIZE = 48;
+	private static final int MEMORY_SIZE = 4096;
+
+	/* How many bytes one snapshot takes */
+	public static final int SIZE = HEADER_SIZE + REGISTERS_SIZE + V_REGISTERS_SIZE + KEYS_SIZE + (CALL_STACK_SIZE * 2)
+			+ (FrameBuffer.MAX_WORDS * 8) + MEMORY_SIZE;
+
+	private SaveState() {
+	}
+
+	/*
+	Write a snapshot at the buffer's position and move the position past it
+	 */
+	static void write( Emulator emulator, ByteBuffer buffer ) {
+		if ( buffer.remaining() < SIZE ) {
+			throw new IllegalArgumentException( "A save state needs " + SIZE + " bytes but the buffer only has " + buffer.remaining() );
+		}
+
+		buffer.putInt( MAGIC );
+		buffer.putShort( VERSION );
+
+		buffer.putInt( emulator.opcode );
+		buffer.putShort( emulator.programCounter );
+		buffer.putShort( emulator.indexRegister );
+		buffer.putShort( emulator.stackPointer );
+		buffer.putShort( emulator.delayTimer );
+		buffer.putShort( emulator.soundTimer );
+		buffer.putLong( emulator.cycleCount );
+		buffer.putInt( emulator.getCyclesPerFrame() );
+		buffer.put( (byte) (emulator.drawFlag ? 1 : 0) );
+		buffer.putLong( emulator.random.getState() );
+		buffer.put( (byte) (emulator.isHighResolution() ? 1 : 0) );
+
+		buffer.put( emulator.vRegisters );
+		buffer.put( emulator.keys );
+		buffer.asShortBuffer().put( emulator.callStack );
+		buffer.position( buffer.position() + (CALL_STACK_SIZE * 2) );
+		long[] rows = emulator.getFrameBuffer().rows;
+		buffer.asLongBuffer().put( rows );
+		int displayEnd = buffer.position() + (FrameBuffer.MAX_WORDS * 8);
+		buffer.position( buffer.position() + (rows.length * 8) );
+		while ( buffer.position() < displayEnd ) {
+			buffer.putLong( 0 );
+		}
+		buffer.put( emulator.memory );
+	}
+
+	/*
+	Restore a snapshot from the buffer's position and move the position past it
+	 */
+	static void read( Emulator emulator, ByteBuffer buffer ) {
+		if ( buffer.remaining() < SIZE ) {
+			throw new IllegalArgumentException( "A save state needs " + SIZE + " bytes but the buffer only has " + buffer.remaining() );
+		}
+
+		int magic = buffer.getInt();
+		if ( magic != MAGIC ) {
+			throw new IllegalArgumentException( "Not a save state, magic number is " + Integer.toHexString( magic ) );
+		}
+		short version = buffer.getShort();
+		if ( version != VERSION ) {
+			throw new IllegalArgumentException( "Save state is version " + version + " but only version " + VERSION + " is supported" );
+		}
+
+		emulator.opcode = buffer.getInt();
+		emulator.programCounter = buffer.getShort();
+		emulator.indexRegister = buffer.getShort();
+		emulator.stackPointer = buffer.getShort();
+		emulator.delayTimer = buffer.getShort();
+		emulator.soundTimer = buffer.getShort();
+		emulator.cycleCount = buffer.getLong();
+		emulator.setCyclesPerFrame( buffer.getInt() );
+		emulator.drawFlag = buffer.get() != 0;
+		emulator.random.setState( buffer.getLong() );
+		if ( buffer.get() != 0 ) {
+			emulator.getFrameBuffer().setResolution( FrameBuffer.HIRES_WIDTH, FrameBuffer.HIRES_HEIGHT );
+		} else {
+			emulator.getFrameBuffer().setResolution( FrameBuffer.WIDTH, FrameBuffer.HEIGHT );
+		}
+
+		buffer.get( emulator.vRegisters );
+		buffer.get( emulator.keys );
+		buffer.asShortBuffer().get( emulator.callStack );
+		buffer.position( buffer.position() + (CALL_STACK_SIZE * 2) );
+		buffer.asLongBuffer().get( emulator.getFrameBuffer().rows );
+		buffer.position( buffer.position() + (FrameBuffer.MAX_WORDS * 8) );
+		buffer.get( emulator.memory );
+
+		emulator.invalidateDecodeCache();
+	}
+
+	/*
+	Write a snapshot to a file through a memory mapping, the file is created or replaced. It has reached the disk by the time
+	this returns
+	 */
+	public static void save( Emulator emulator, Path path ) throws IOException {
+		try ( FileChannel channel = FileChannel.open( path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING ) ) {
+			MappedByteBuffer buffer = channel.map( FileChannel.MapMode.READ_WRITE, 0, SIZE );
+			write( emulator, buffer );
+			buffer.force();
+		}
+	}
+
+	/*
+	Restore a snapshot from a file through a memory mapping
+	 */
+	public static void load( Emulator emulator, Path path ) throws IOException {
+		try ( FileChannel channel = FileChannel.open( path, StandardOpenOption.READ ) ) {
+			if ( channel.size() < SIZE ) {
+				throw new IllegalArgumentException( path + " is " + channel.size() + " bytes, too small to be a save state" );
+			}
+			read( emulator, channel.map( FileChannel.MapMode.READ_ONLY, 0, SIZE ) );
+		}
+	}
+
+}
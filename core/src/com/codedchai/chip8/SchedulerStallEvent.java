@@ -0,0 +1,34 @@
+package com.codedchai.chip8;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/*
+The EmulatorRunner woke up late, or had to run ticks back to back to catch up. The event's duration is the time spent catching
+up. Only ever touched through FlightRecorderEvents
+ */
+@Name( "com.codedchai.chip8.SchedulerStall" )
+@Label( "Scheduler Stall" )
+@Category( "Chip-8" )
+@Description( "The emulator thread overslept or fell behind real time" )
+@StackTrace( false )
+class SchedulerStallEvent extends jdk.jfr.Event {
+
+	@Label( "Oversleep" )
+	@Description( "How long after the next tick was due the runner got around to it, from oversleeping or a slow tick" )
+	@Timespan( Timespan.NANOSECONDS )
+	long oversleep;
+
+	@Label( "Catch Up Ticks" )
+	@Description( "Ticks run back to back after the first one" )
+	long catchUpTicks;
+
+	@Label( "Dropped Ticks" )
+	@Description( "Ticks given up on because we were too far behind" )
+	long droppedTicks;
+
+}
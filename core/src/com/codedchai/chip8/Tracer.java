@@ -0,0 +1,206 @@
+package com.codedchai.chip8;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+Leveled tracing for the emulator. While the level is OFF the only cost in the hot path is reading one volatile int, nothing is
+formatted, concatenated or boxed. Once tracing is turned on every event is packed into a single long and written into a
+preallocated ring buffer, and a background thread turns the records into text whenever it gets around to it. Turning tracing
+back off lets that thread finish what is in the ring and exit, it is started again the next time tracing is turned on.
+
+A tracer only supports one emulator thread writing to it, give each emulator its own tracer.
+ */
+public class Tracer {
+
+	public enum Level {
+		/* Nothing is recorded */
+		OFF,
+		/* Screen clears, jumps, calls, returns and the other events that used to be logged */
+		INFO,
+		/* Every single opcode that is executed */
+		DEBUG
+	}
+
+	/* The events we can record, these go into the top byte of a record */
+	static final int EXECUTE_OPCODE = 0;
+	static final int CLEAR_SCREEN = 1;
+	static final int RETURN = 2;
+	static final int JUMP = 3;
+	static final int CALL = 4;
+	static final int SKIP_VX_IS_KK = 5;
+	static final int ADD_VX_KK = 6;
+	static final int ADD_I_VX = 7;
+	static final int SET_BCD = 8;
+
+	/* How many records fit in the ring before the writer has to catch up, must be a power of two */
+	private static final int RING_CAPACITY = 1 << 16;
+	/* How long the writer thread waits when there is nothing to format */
+	private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos( 5 );
+
+	private static final int INFO_LEVEL = Level.INFO.ordinal();
+	private static final int DEBUG_LEVEL = Level.DEBUG.ordinal();
+
+	private final PrintStream out;
+
+	private volatile int level;
+
+	/* Allocated the first time tracing is turned on, so an emulator that never traces pays nothing for it */
+	private long[] records;
+	/* Only running while tracing is on or there are records left to write, guarded by this */
+	private Thread writerThread;
+
+	/* Written by the emulator thread, read by the writer thread */
+	private final AtomicLong writeIndex = new AtomicLong();
+	/* Written by the writer thread, read by the emulator thread */
+	private final AtomicLong readIndex = new AtomicLong();
+
+	/* Only touched by the emulator thread */
+	private long nextWriteIndex;
+	private long knownReadIndex;
+	private long droppedRecords;
+
+	public Tracer() {
+		this( System.out );
+	}
+
+	public Tracer( PrintStream out ) {
+		this.out = out;
+	}
+
+	public synchronized void setLevel( Level level ) {
+		if ( level == Level.OFF ) {
+			this.level = level.ordinal();
+			/* Wake the writer so it notices and exits once the ring is empty */
+			if ( writerThread != null ) {
+				LockSupport.unpark( writerThread );
+			}
+			return;
+		}
+
+		if ( records == null ) {
+			records = new long[RING_CAPACITY];
+		}
+		if ( writerThread == null ) {
+			writerThread = new Thread( new Runnable() {
+				@Override
+				public void run() {
+					writeRecords();
+				}
+			}, "chip8-tracer" );
+			writerThread.setDaemon( true );
+			writerThread.start();
+		}
+		/* Last, the emulator thread reads the level without the lock and records into the ring as soon as it sees it on */
+		this.level = level.ordinal();
+	}
+
+	public Level getLevel() {
+		return Level.values()[level];
+	}
+
+	boolean isInfoEnabled() {
+		return level >= INFO_LEVEL;
+	}
+
+	boolean isDebugEnabled() {
+		return level >= DEBUG_LEVEL;
+	}
+
+	/* Records that were thrown away because the writer thread had fallen a whole ring behind */
+	public long getDroppedRecords() {
+		return droppedRecords;
+	}
+
+	/*
+	Emulator thread only. Pack an event into the ring, if the ring is full the record is dropped rather than making the
+	emulator wait. Only call this after checking the level, the ring doesn't exist until tracing is turned on
+	 */
+	void record( int event, int programCounter, int opcode, int argument ) {
+		if ( nextWriteIndex - knownReadIndex >= RING_CAPACITY ) {
+			knownReadIndex = readIndex.get();
+			if ( nextWriteIndex - knownReadIndex >= RING_CAPACITY ) {
+				droppedRecords++;
+				return;
+			}
+		}
+
+		records[(int) nextWriteIndex & (RING_CAPACITY - 1)] = ((long) event << 56)
+				| ((long) (programCounter & 0xFFFF) << 40)
+				| ((long) (opcode & 0xFFFF) << 24)
+				| (argument & 0xFFFFFF);
+		writeIndex.lazySet( ++nextWriteIndex );
+	}
+
+	private void writeRecords() {
+		StringBuilder line = new StringBuilder( 64 );
+		long read = readIndex.get();
+
+		while ( true ) {
+			long available = writeIndex.get();
+			if ( read == available ) {
+				out.flush();
+				synchronized ( this ) {
+					/* Checked under the lock so setLevel can't miss us leaving and leave tracing on without a writer */
+					if ( level == Level.OFF.ordinal() && writeIndex.get() == read ) {
+						writerThread = null;
+						return;
+					}
+				}
+				LockSupport.parkNanos( IDLE_PARK_NANOS );
+				continue;
+			}
+
+			for ( ; read < available; read++ ) {
+				line.setLength( 0 );
+				format( records[(int) read & (RING_CAPACITY - 1)], line );
+				out.println( line );
+			}
+			readIndex.lazySet( read );
+		}
+	}
+
+	private static void format( long record, StringBuilder line ) {
+		int event = (int) (record >>> 56);
+		int programCounter = (int) (record >>> 40) & 0xFFFF;
+		int opcode = (int) (record >>> 24) & 0xFFFF;
+		int argument = (int) record & 0xFFFFFF;
+
+		line.append( '[' ).append( Integer.toHexString( programCounter ) ).append( "] " );
+
+		switch ( event ) {
+			case EXECUTE_OPCODE:
+				line.append( "Executing opcode: " ).append( Integer.toHexString( opcode ) );
+				break;
+			case CLEAR_SCREEN:
+				line.append( "Clear screen" );
+				break;
+			case RETURN:
+				line.append( "Return from subroutine" );
+				break;
+			case JUMP:
+				line.append( "Jump to " ).append( Integer.toHexString( argument ) );
+				break;
+			case CALL:
+				line.append( "Call address " ).append( Integer.toHexString( argument ) );
+				break;
+			case SKIP_VX_IS_KK:
+				line.append( "Skip Vx is KK" );
+				break;
+			case ADD_VX_KK:
+				line.append( "Add Vx KK" );
+				break;
+			case ADD_I_VX:
+				line.append( "Add I Vx" );
+				break;
+			case SET_BCD:
+				line.append( "Set binary coded decimal" );
+				break;
+			default:
+				line.append( "Unknown event " ).append( event ).append( " opcode " ).append( Integer.toHexString( opcode ) );
+		}
+	}
+
+}
@@ -0,0 +1,66 @@
+package com.codedchai.chip8;
+
+/*
+A tiny xorshift64* random number generator. java.util.Random can't hand out its seed, this one keeps its whole state in a
+single long so a save state can capture it and pick up exactly the same sequence of numbers after a restore.
+ */
+public final class XorShiftRandom {
+
+	private static final long MULTIPLIER = 0x2545F4914F6CDD1DL;
+
+	private long state;
+
+	public XorShiftRandom() {
+		this( System.nanoTime() );
+	}
+
+	public XorShiftRandom( long seed ) {
+		setState( seed );
+	}
+
+	public long nextLong() {
+		state = advance( state );
+		return state * MULTIPLIER;
+	}
+
+	/*
+	A number from 0 up to, but not including, bound
+	 */
+	public int nextInt( int bound ) {
+		state = advance( state );
+		return bounded( state, bound );
+	}
+
+	/*
+	The state after this one. Split out so generators kept as plain longs, like LockstepMachines has, give the same numbers
+	 */
+	static long advance( long state ) {
+		state ^= state >>> 12;
+		state ^= state << 25;
+		state ^= state >>> 27;
+		return state;
+	}
+
+	/*
+	What nextInt( bound ) returns once the generator has advanced to this state
+	 */
+	static int bounded( long state, int bound ) {
+		return (int) (((state * MULTIPLIER) >>> 33) % bound);
+	}
+
+	public long getState() {
+		return state;
+	}
+
+	/*
+	Xorshift gets stuck on a state of 0, so 0 is swapped for a fixed non zero state
+	 */
+	public void setState( long state ) {
+		this.state = seedState( state );
+	}
+
+	static long seedState( long state ) {
+		return state != 0 ? state : MULTIPLIER;
+	}
+
+}
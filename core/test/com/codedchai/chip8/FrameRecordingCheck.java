@@ -0,0 +1,193 @@
+package com.codedchai.chip8;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+/*
+Frame recording round trip check: every ROM in a directory is recorded with a FrameRecorder for RECORD_FRAMES frames with the
+golden frames' seed and scripted keys, keeping a copy of every display the recorder stored. The recording is then read back
+three ways
+
+	closed				the file as the recorder closed it, read through its index
+	never closed		the same file cut off where the index starts, so the index has to be rebuilt by scanning it
+	cut short			cut off one byte earlier, inside the last frame, which has to be left out
+
+and each time next() from the first frame to the last and SEEK_COUNT random seeks have to give back every display and cycle
+count that was recorded. The last frame seeked to is also exported as a PNG, which has to decode to the same pixels.
+
+	java com.codedchai.chip8.FrameRecordingCheck <rom directory>
+
+The exit status is 1 if anything didn't match.
+ */
+public class FrameRecordingCheck {
+
+	static final int RECORD_FRAMES = 1800;
+	static final int SEEK_COUNT = 100;
+	static final int PNG_SCALE = 2;
+
+	/*
+	Record one ROM and read it back, adding anything that went wrong to failures
+	 */
+	static void check( String name, ByteBuffer rom, Path directory, List < String > failures ) throws IOException {
+		Path closed = directory.resolve( name + ".c8fr" );
+		Emulator emulator = new Emulator( rom.duplicate() );
+		emulator.setRandomSeed( GoldenFrames.RANDOM_SEED );
+		FrameRecorder recorder = FrameRecorder.start( emulator, closed );
+
+		List < FrameBuffer > frames = new ArrayList <>();
+		List < Long > cycles = new ArrayList <>();
+		for ( int frame = 0; frame < RECORD_FRAMES; frame++ ) {
+			GoldenFrames.pressScriptedKey( emulator, frame );
+			try {
+				emulator.step( emulator.getCyclesPerFrame() );
+			} catch ( Exception e ) {
+				/* Crashed, check whatever got recorded */
+				break;
+			}
+			emulator.tickTimers();
+			int recorded = recorder.getFrameCount();
+			emulator.publishFrame();
+			if ( recorder.getFrameCount() != recorded ) {
+				FrameBuffer copy = new FrameBuffer();
+				copy.copyFrom( emulator.getFrameBuffer() );
+				frames.add( copy );
+				cycles.add( emulator.getCycleCount() );
+			}
+		}
+		recorder.close( emulator );
+
+		/* The trailer says where the index starts, everything before it is what an unclosed recorder would have left behind */
+		byte[] bytes = Files.readAllBytes( closed );
+		int indexPosition = (int) ByteBuffer.wrap( bytes ).getLong( bytes.length - FrameRecorder.TRAILER_SIZE );
+		Path neverClosed = directory.resolve( name + "-never-closed.c8fr" );
+		Path cutShort = directory.resolve( name + "-cut-short.c8fr" );
+		writePrefix( neverClosed, bytes, indexPosition );
+		writePrefix( cutShort, bytes, Math.max( indexPosition - 1, FrameRecorder.HEADER_SIZE ) );
+
+		if ( !compare( name + " closed", new FrameRecording( closed ), frames, cycles, frames.size(), directory, failures )
+				|| !compare( name + " never closed", new FrameRecording( neverClosed ), frames, cycles, frames.size(), directory, failures ) ) {
+			return;
+		}
+		if ( !frames.isEmpty() ) {
+			compare( name + " cut short", new FrameRecording( cutShort ), frames, cycles, frames.size() - 1, directory, failures );
+		}
+	}
+
+	/*
+	Read every frame in order and at random and check them against what was recorded, returns false on the first mismatch
+	 */
+	private static boolean compare( String what, FrameRecording recording, List < FrameBuffer > frames, List < Long > cycles, int frameCount,
+			Path directory, List < String > failures ) throws IOException {
+		if ( recording.getFrameCount() != frameCount ) {
+			failures.add( what + ": holds " + recording.getFrameCount() + " frames, expected " + frameCount );
+			return false;
+		}
+		if ( frameCount == 0 ) {
+			return true;
+		}
+
+		FrameBuffer read = new FrameBuffer();
+		recording.seek( 0 );
+		do {
+			if ( !matches( what + " reading in order", recording, read, frames, cycles, failures ) ) {
+				return false;
+			}
+		} while ( recording.next() );
+		if ( recording.getFrameNumber() != frameCount - 1 ) {
+			failures.add( what + ": reading in order stopped at frame " + recording.getFrameNumber() + " of " + frameCount );
+			return false;
+		}
+
+		Random random = new Random( GoldenFrames.RANDOM_SEED );
+		for ( int i = 0; i < SEEK_COUNT; i++ ) {
+			recording.seek( random.nextInt( frameCount ) );
+			if ( !matches( what + " seeking", recording, read, frames, cycles, failures ) ) {
+				return false;
+			}
+		}
+
+		Path png = directory.resolve( "frame.png" );
+		recording.writePng( png, PNG_SCALE );
+		BufferedImage image = ImageIO.read( png.toFile() );
+		FrameBuffer expected = frames.get( recording.getFrameNumber() );
+		if ( image == null || image.getWidth() != expected.getWidth() * PNG_SCALE || image.getHeight() != expected.getHeight() * PNG_SCALE ) {
+			failures.add( what + ": frame " + recording.getFrameNumber() + " didn't export as a " + expected.getWidth() * PNG_SCALE + "x"
+					+ expected.getHeight() * PNG_SCALE + " PNG" );
+			return false;
+		}
+		for ( int y = 0; y < image.getHeight(); y++ ) {
+			for ( int x = 0; x < image.getWidth(); x++ ) {
+				boolean white = (image.getRGB( x, y ) & 0xFFFFFF) != 0;
+				if ( white != expected.isPixelSet( x / PNG_SCALE, y / PNG_SCALE ) ) {
+					failures.add( what + ": frame " + recording.getFrameNumber() + " exported as a PNG with the wrong pixel at " + x + ", " + y );
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static boolean matches( String what, FrameRecording recording, FrameBuffer read, List < FrameBuffer > frames, List < Long > cycles,
+			List < String > failures ) {
+		int frame = recording.getFrameNumber();
+		recording.copyTo( read );
+		if ( !read.equals( frames.get( frame ) ) ) {
+			failures.add( what + ": frame " + frame + " isn't the display that was recorded" );
+			return false;
+		}
+		if ( recording.getCycle() != cycles.get( frame ) ) {
+			failures.add( what + ": frame " + frame + " is stamped with cycle " + recording.getCycle() + " instead of " + cycles.get( frame ) );
+			return false;
+		}
+		return true;
+	}
+
+	private static void writePrefix( Path path, byte[] bytes, int length ) throws IOException {
+		try ( FileChannel channel = FileChannel.open( path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING ) ) {
+			ByteBuffer prefix = ByteBuffer.wrap( bytes, 0, length );
+			while ( prefix.hasRemaining() ) {
+				channel.write( prefix );
+			}
+		}
+	}
+
+	public static void main( String[] args ) throws Exception {
+		Map < String, ByteBuffer > roms = GoldenFrames.loadRoms( Paths.get( args[0] ) );
+		List < String > failures = new ArrayList <>();
+		Path directory = Files.createTempDirectory( "chip8-frame-recording" );
+		try {
+			for ( Map.Entry < String, ByteBuffer > rom : roms.entrySet() ) {
+				check( rom.getKey(), rom.getValue(), directory, failures );
+			}
+		} finally {
+			try ( DirectoryStream < Path > files = Files.newDirectoryStream( directory ) ) {
+				for ( Path file : files ) {
+					Files.delete( file );
+				}
+			}
+			Files.delete( directory );
+		}
+
+		for ( String failure : failures ) {
+			System.out.println( failure );
+		}
+		System.out.println( roms.size() + " ROMs recorded for " + RECORD_FRAMES + " frames and read back, " + failures.size() + " failed" );
+		if ( !failures.isEmpty() ) {
+			System.exit( 1 );
+		}
+	}
+
+}
@@ -0,0 +1,170 @@
+package com.codedchai.chip8;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/*
+Render budget check: FrameRenderer has to draw the display with one draw call every frame and upload it to the texture only
+when it changed. An Emulator publishes FRAMES frames without drawing anything and then FRAMES frames with a sprite row drawn
+in each, and every frame is acquired, uploaded and rendered the way Chip8Interpreter does it.
+
+It runs in libGDX's headless backend with a GL20 that does nothing but count calls, so every frame has to issue exactly one
+glDrawElements or glDrawArrays, one glTexSubImage2D or glTexImage2D if the frame changed and none if it didn't, and
+FrameRenderer's own counters have to agree.
+
+	java com.codedchai.chip8.FrameRendererCheck
+
+The exit status is 1 if any frame went over its budget.
+ */
+public class FrameRendererCheck {
+
+	static final int FRAMES = 120;
+
+	/*
+	A GL20 that counts draw calls and texture uploads and otherwise does nothing. Shaders compile and link, and every name and
+	location it hands out is 1, so SpriteBatch and Texture set themselves up as if there was a real context
+	 */
+	static final class CountingGL implements InvocationHandler {
+
+		long drawCalls;
+		long textureUploads;
+
+		@Override
+		public Object invoke( Object proxy, Method method, Object[] args ) {
+			switch ( method.getName() ) {
+				case "glDrawElements":
+				case "glDrawArrays":
+					drawCalls++;
+					return null;
+				case "glTexImage2D":
+				case "glTexSubImage2D":
+					textureUploads++;
+					return null;
+				case "glGetError":
+					return GL20.GL_NO_ERROR;
+				case "glGetShaderiv":
+				case "glGetProgramiv":
+					((IntBuffer) args[2]).put( 0, 1 );
+					return null;
+				default:
+					break;
+			}
+
+			Class < ? > returnType = method.getReturnType();
+			if ( returnType == int.class ) {
+				return 1;
+			} else if ( returnType == boolean.class ) {
+				return true;
+			} else if ( returnType == String.class ) {
+				return "";
+			}
+			return null;
+		}
+	}
+
+	/*
+	Render FRAMES unchanged and FRAMES changed frames, adding every frame that went over its budget to failures. Has to run on
+	the thread that owns the GL context
+	 */
+	static void check( List < String > failures ) {
+		CountingGL counts = new CountingGL();
+		GL20 gl = (GL20) Proxy.newProxyInstance( GL20.class.getClassLoader(), new Class < ? >[] { GL20.class }, counts );
+		Gdx.gl = gl;
+		Gdx.gl20 = gl;
+		Gdx.gl30 = null;
+
+		FrameRenderer frameRenderer = new FrameRenderer();
+		OrthographicCamera camera = new OrthographicCamera( FrameBuffer.WIDTH, FrameBuffer.HEIGHT );
+		Emulator emulator = new Emulator();
+		FrameExchange frameExchange = emulator.getFrameExchange();
+		try {
+			/* The first frame is always handed over, so the rest start from a texture that is already up to date */
+			emulator.publishFrame();
+			renderFrame( frameExchange, frameRenderer, camera );
+
+			for ( int frame = 0; frame < FRAMES * 2; frame++ ) {
+				boolean changed = frame >= FRAMES;
+				if ( changed ) {
+					emulator.getFrameBuffer().drawSpriteRow( frame % FrameBuffer.WIDTH, frame % FrameBuffer.HEIGHT, (byte) 0xFF );
+					emulator.drawFlag = true;
+				}
+				emulator.publishFrame();
+
+				long drawCallsBefore = counts.drawCalls;
+				long uploadsBefore = counts.textureUploads;
+				long rendererUploadsBefore = frameRenderer.getTextureUploads();
+				renderFrame( frameExchange, frameRenderer, camera );
+
+				String what = (changed ? "changed" : "unchanged") + " frame " + frame;
+				long drawCalls = counts.drawCalls - drawCallsBefore;
+				if ( drawCalls != 1 || frameRenderer.getLastFrameDrawCalls() != 1 ) {
+					failures.add( what + ": took " + drawCalls + " GL draw calls, FrameRenderer counted " + frameRenderer.getLastFrameDrawCalls()
+							+ ", expected 1" );
+				}
+				long expectedUploads = changed ? 1 : 0;
+				long uploads = counts.textureUploads - uploadsBefore;
+				long rendererUploads = frameRenderer.getTextureUploads() - rendererUploadsBefore;
+				if ( uploads != expectedUploads || rendererUploads != expectedUploads ) {
+					failures.add( what + ": took " + uploads + " GL texture uploads, FrameRenderer counted " + rendererUploads + ", expected "
+							+ expectedUploads );
+				}
+			}
+		} finally {
+			frameRenderer.dispose();
+		}
+	}
+
+	/*
+	What Chip8Interpreter.render() does with a frame, minus clearing the screen and resizing the viewport
+	 */
+	private static void renderFrame( FrameExchange frameExchange, FrameRenderer frameRenderer, OrthographicCamera camera ) {
+		if ( frameExchange.acquire() ) {
+			frameRenderer.upload( frameExchange.getFrontBuffer() );
+		}
+		frameRenderer.render( camera );
+	}
+
+	public static void main( String[] args ) throws Exception {
+		final List < String > failures = new ArrayList <>();
+		final Throwable[] crash = new Throwable[1];
+		final CountDownLatch done = new CountDownLatch( 1 );
+		new HeadlessApplication( new ApplicationAdapter() {
+
+			@Override
+			public void create() {
+				try {
+					check( failures );
+				} catch ( Throwable e ) {
+					crash[0] = e;
+				} finally {
+					done.countDown();
+					Gdx.app.exit();
+				}
+			}
+		} );
+		done.await();
+
+		if ( crash[0] != null ) {
+			failures.add( "FrameRenderer threw " + crash[0] );
+		}
+		for ( String failure : failures ) {
+			System.out.println( failure );
+		}
+		System.out.println( FRAMES + " unchanged and " + FRAMES + " changed frames rendered, " + failures.size() + " failed" );
+		if ( !failures.isEmpty() ) {
+			System.exit( 1 );
+		}
+	}
+
+}
@@ -0,0 +1,434 @@
+package com.codedchai.chip8;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+/*
+Golden frame regression suite: runs every ROM in a directory without a display and checks the machine still ends up exactly
+where it did when the golden values were recorded.
+
+Every ROM runs for RUN_FRAMES frames with the same seed for Cxkk and the same scripted key presses, so a run is completely
+determined by the ROM and the emulator. Every CHECKPOINT_INTERVAL frames the display (with its resolution) and the rest of
+the machine (registers, timers, stack and memory) are hashed separately, so a failure says whether it was the picture or the
+state underneath that changed first. A ROM that throws records where it did, crashing somewhere else is a regression too.
+
+None of the bundled ROMs use SUPER-CHIP's high resolution, so the built in HIRES_ROM runs alongside them, and the sprite
+drawing no ROM can reach is checked straight against the FrameBuffer.
+
+Each ROM runs once with the plain interpreter and once with the block compiling engine, both have to match the same golden
+values. Every frame is stepped in the runner's slices of getCyclesPerFrame() cycles, and across all ROMs the block
+compiling engine has to run at least MIN_COMPILED_SHARE of its cycles compiled, so slices ending in the middle of blocks
+can't quietly send it back to the interpreter. The runs don't share anything so they all go onto a ForkJoinPool at once and the suite takes as long as its slowest
+ROM.
+
+	java com.codedchai.chip8.GoldenFrames <rom directory> <golden file> [--update]
+
+--update runs the suite and writes whatever it got as the new golden values, for when a change is supposed to change what
+the ROMs do. The engines still have to agree with each other. Otherwise the exit status is 1 if anything didn't match.
+ */
+public class GoldenFrames {
+
+	static final int RUN_FRAMES = 3600;
+	static final int CHECKPOINT_INTERVAL = 300;
+	static final long RANDOM_SEED = 0xC8;
+
+	/* Every KEY_PERIOD_FRAMES frames the next key in the script is held down for KEY_HOLD_FRAMES frames */
+	static final int KEY_PERIOD_FRAMES = 20;
+	static final int KEY_HOLD_FRAMES = 12;
+	/* Start, left, right, up, down and fire in most games, then everything else */
+	static final int[] KEY_SCRIPT = { 0x5, 0x4, 0x4, 0x6, 0x6, 0x5, 0x2, 0x8, 0x1, 0xC, 0x7, 0xA, 0x0, 0xF, 0xB, 0x3, 0x9, 0xD, 0xE };
+
+	/* Version 2 hashes the display's width and height along with its pixels */
+	private static final String GOLDEN_HEADER = "chip8-golden-frames 2";
+	private static final String FAILED = "failed";
+
+	/*
+	Switches to 128x64 and draws a 16x16 sprite at one of four places picked at random, scrolling the display down, left or
+	(twice as often) right in between and waiting two ticks on the delay timer after each one. Dxyn has a known bug that is
+	left alone here: it draws at the register numbers x and y instead of the values in Vx and Vy, so for now a sprite's left
+	edge can only be in the first 16 columns. The golden values record that bug and change once Dxyn is fixed. The table picks
+	Dxy0 with x of 13 to 15 and 5, so sprites land off the word boundary, and the scrolling carries them right
+	across column 64 to the far edge at 120-127 where they drop off. While key 5 is held it drops to low resolution for a font
+	digit and switches straight back, which blanks the display both ways
+	 */
+	static final String HIRES_ROM_NAME = "SCHIP-HIRES";
+	private static final int[] HIRES_ROM = {
+			0x00FF,	/* 200	high resolution */
+			0xA24C,	/* 202	I = the ring */
+			0x6003,	/* 204	V0 = random 0 to 3, the mask goes in the register as well so it works whichever one Cxkk masks with */
+			0xC003,
+			0x8004,	/* 208	V0 * 4, every slot in the table is two instructions */
+			0x8004,
+			0xB20E,	/* 20C	jump into the table */
+			0xDDE0,	/* 20E	draw the ring at 13, 14 */
+			0x121C,
+			0xDE30,	/* 212	at 14, 3 */
+			0x121C,
+			0xDF70,	/* 216	at 15, 7 */
+			0x121C,
+			0xD5A0,	/* 21A	at 5, 10 */
+			0x6203,	/* 21C	V2 = random 0 to 3 */
+			0xC203,
+			0x4200,	/* 220	0 scrolls down 2 */
+			0x00C2,
+			0x4203,	/* 224	3 scrolls left */
+			0x00FC,
+			0x4201,	/* 228	1 and 2 scroll right */
+			0x00FB,
+			0x4202,
+			0x00FB,
+			0x6305,	/* 230	to 242 while key 5 is down */
+			0xE3A1,
+			0x1242,
+			0x6402,	/* 236	wait two ticks */
+			0xF415,
+			0xF407,	/* 23A */
+			0x3400,
+			0x123A,
+			0x1202,	/* 240	again */
+			0x00FE,	/* 242	low resolution */
+			0xF229,	/* 244	I = digit V2 */
+			0xD125,	/* 246	draw it */
+			0x00FF,	/* 248	back to high resolution */
+			0x1236,
+			/* 24C	the ring, 16x16 */
+			0x0FF0, 0x3FFC, 0x700E, 0x6006, 0xC3C3, 0xC663, 0xCC33, 0xCC33, 0xCC33, 0xCC33, 0xC663, 0xC3C3, 0x6006, 0x700E, 0x3FFC,
+			0x0FF0
+	};
+
+	/* Share of all cycles the block compiling engine has to run compiled rather than interpreted */
+	static final double MIN_COMPILED_SHARE = 0.55;
+
+	/* Random sprite rows XORed straight onto a FrameBuffer at each resolution by checkSpriteRows */
+	static final int SPRITE_ROW_DRAWS = 4000;
+
+	/* The engines every ROM is run with */
+	enum Engine {
+		INTERPRETER, BLOCK_COMPILING;
+
+		ExecutionEngine create() {
+			return this == INTERPRETER ? new InterpreterEngine() : new BlockCompilingEngine();
+		}
+	}
+
+	/*
+	Run one ROM with one engine, returns its checkpoint lines in the golden file's format
+	 */
+	static List < String > run( String name, ByteBuffer rom, ExecutionEngine engine ) {
+		Emulator emulator = new Emulator( rom );
+		emulator.setExecutionEngine( engine );
+		emulator.setRandomSeed( RANDOM_SEED );
+
+		/* Big enough for the highest resolution, the ROM can switch to it at any time */
+		ByteBuffer display = ByteBuffer.allocate( 2 + 2 + FrameBuffer.MAX_WORDS * 8 );
+		ByteBuffer machine = ByteBuffer.allocate( 2 * 5 + 4 + 16 + emulator.callStack.length * 2 + emulator.memory.length );
+
+		List < String > checkpoints = new ArrayList <>();
+		try {
+			for ( int frame = 0; frame < RUN_FRAMES; frame++ ) {
+				pressScriptedKey( emulator, frame );
+				emulator.step( emulator.getCyclesPerFrame() );
+				emulator.tickTimers();
+
+				if ( (frame + 1) % CHECKPOINT_INTERVAL == 0 ) {
+					checkpoints.add( name + " " + (frame + 1) + " " + emulator.getCycleCount() + " " + hashDisplay( emulator, display ) + " " + hashMachine( emulator, machine ) );
+				}
+			}
+		} catch ( Throwable e ) {
+			/* Usually the ROM crashing, but anything at all that throws fails this ROM instead of taking the whole suite down */
+			checkpoints.add( name + " " + FAILED + " " + emulator.getCycleCount() + " " + e.getClass().getName() );
+		}
+		return checkpoints;
+	}
+
+	/*
+	Set the key the script holds down or lets go of at the start of the given frame
+	 */
+	static void pressScriptedKey( Emulator emulator, int frame ) {
+		int scriptStep = frame / KEY_PERIOD_FRAMES;
+		int key = KEY_SCRIPT[scriptStep % KEY_SCRIPT.length];
+		emulator.setKey( key, frame % KEY_PERIOD_FRAMES < KEY_HOLD_FRAMES );
+	}
+
+	private static String hashDisplay( Emulator emulator, ByteBuffer display ) {
+		display.clear();
+		display.putShort( (short) emulator.getFrameBuffer().getWidth() );
+		display.putShort( (short) emulator.getFrameBuffer().getHeight() );
+		for ( long row : emulator.getFrameBuffer().rows ) {
+			display.putLong( row );
+		}
+		display.flip();
+		return RomCatalog.hash( display );
+	}
+
+	private static String hashMachine( Emulator emulator, ByteBuffer machine ) {
+		machine.clear();
+		machine.putShort( emulator.programCounter );
+		machine.putShort( emulator.indexRegister );
+		machine.putShort( emulator.stackPointer );
+		machine.putShort( emulator.delayTimer );
+		machine.putShort( emulator.soundTimer );
+		machine.putInt( emulator.opcode );
+		machine.put( emulator.vRegisters );
+		for ( short address : emulator.callStack ) {
+			machine.putShort( address );
+		}
+		machine.put( emulator.memory );
+		machine.flip();
+		return RomCatalog.hash( machine );
+	}
+
+	/*
+	Runs one ROM with one engine on the pool
+	 */
+	private static final class RomTask extends RecursiveTask < List < String > > {
+
+		private static final long serialVersionUID = 1L;
+
+		private final String name;
+		private final ByteBuffer rom;
+		private final ExecutionEngine engine;
+
+		RomTask( String name, ByteBuffer rom, Engine engine ) {
+			this.name = name;
+			this.rom = rom;
+			this.engine = engine.create();
+		}
+
+		@Override
+		protected List < String > compute() {
+			return run( name, rom.duplicate(), engine );
+		}
+	}
+
+	/*
+	Run every ROM with every engine, returns any differences between the engines and the checkpoints by ROM name, taken from
+	the interpreter
+	 */
+	static Map < String, List < String > > runAll( Map < String, ByteBuffer > roms, ForkJoinPool pool, List < String > differences ) {
+		Map < String, RomTask[] > tasks = new TreeMap <>();
+		for ( Map.Entry < String, ByteBuffer > rom : roms.entrySet() ) {
+			RomTask[] engineTasks = new RomTask[Engine.values().length];
+			for ( Engine engine : Engine.values() ) {
+				engineTasks[engine.ordinal()] = new RomTask( rom.getKey(), rom.getValue().asReadOnlyBuffer(), engine );
+				pool.execute( engineTasks[engine.ordinal()] );
+			}
+			tasks.put( rom.getKey(), engineTasks );
+		}
+
+		Map < String, List < String > > results = new TreeMap <>();
+		long compiledCycles = 0;
+		long interpretedCycles = 0;
+		for ( Map.Entry < String, RomTask[] > rom : tasks.entrySet() ) {
+			List < String > expected = rom.getValue()[Engine.INTERPRETER.ordinal()].join();
+			for ( Engine engine : Engine.values() ) {
+				if ( engine == Engine.INTERPRETER ) {
+					continue;
+				}
+				compare( rom.getKey() + " (" + engine + " vs " + Engine.INTERPRETER + ")", expected, rom.getValue()[engine.ordinal()].join(), differences );
+			}
+			results.put( rom.getKey(), expected );
+
+			BlockCompilingEngine blockCompilingEngine = (BlockCompilingEngine) rom.getValue()[Engine.BLOCK_COMPILING.ordinal()].engine;
+			compiledCycles += blockCompilingEngine.getCompiledCycles();
+			interpretedCycles += blockCompilingEngine.getInterpretedCycles();
+		}
+
+		double compiledShare = (double) compiledCycles / Math.max( compiledCycles + interpretedCycles, 1 );
+		if ( compiledShare < MIN_COMPILED_SHARE ) {
+			differences.add( Engine.BLOCK_COMPILING + ": only ran " + Math.round( compiledShare * 100 ) + "% of " + (compiledCycles + interpretedCycles)
+					+ " cycles compiled, expected at least " + Math.round( MIN_COMPILED_SHARE * 100 ) + "%" );
+		}
+		return results;
+	}
+
+	/*
+	While Dxyn still draws at the register numbers instead of their values (see HIRES_ROM) no ROM can draw past column 15, so
+	the parts of FrameBuffer's sprite drawing they never reach, sprites straddling two longs of a hi-res row and wrapping around
+	the right and bottom edges, are checked directly. Random 8 and 16
+	pixel rows are XORed onto a display at random places, past the edges as well, and every pixel and every collision has to
+	match drawing the same row one pixel at a time
+	 */
+	static void checkSpriteRows( List < String > differences ) {
+		Random random = new Random( RANDOM_SEED );
+		int[][] resolutions = { { FrameBuffer.WIDTH, FrameBuffer.HEIGHT }, { FrameBuffer.HIRES_WIDTH, FrameBuffer.HIRES_HEIGHT } };
+		for ( int[] resolution : resolutions ) {
+			int width = resolution[0];
+			int height = resolution[1];
+			FrameBuffer frameBuffer = new FrameBuffer( width, height );
+			int[] expected = new int[width * height];
+			int[] actual = new int[width * height];
+
+			for ( int draw = 0; draw < SPRITE_ROW_DRAWS; draw++ ) {
+				boolean wide = random.nextBoolean();
+				int spriteWidth = wide ? 16 : 8;
+				int spriteRow = random.nextInt( 1 << spriteWidth );
+				int x = random.nextInt( width * 2 );
+				int y = random.nextInt( height * 2 );
+				boolean collision = wide ? frameBuffer.drawWideSpriteRow( x, y, spriteRow ) : frameBuffer.drawSpriteRow( x, y, (byte) spriteRow );
+
+				boolean expectedCollision = false;
+				for ( int pixel = 0; pixel < spriteWidth; pixel++ ) {
+					if ( ((spriteRow >>> (spriteWidth - 1 - pixel)) & 1) != 0 ) {
+						int index = ((x + pixel) % width) + ((y % height) * width);
+						expectedCollision |= expected[index] != 0;
+						expected[index] ^= 1;
+					}
+				}
+
+				frameBuffer.copyTo( actual );
+				if ( collision != expectedCollision || !Arrays.equals( expected, actual ) ) {
+					differences.add( "FrameBuffer " + width + "x" + height + ": drawing a " + spriteWidth + " pixel row " + Integer.toHexString( spriteRow )
+							+ " at " + x + ", " + y + " gave " + (collision != expectedCollision ? "the wrong collision" : "the wrong pixels") );
+					break;
+				}
+			}
+		}
+	}
+
+	/*
+	Add the first checkpoint that doesn't match to differences, later ones almost always follow from it
+	 */
+	private static void compare( String what, List < String > expected, List < String > actual, List < String > differences ) {
+		for ( int i = 0; i < Math.max( expected.size(), actual.size() ); i++ ) {
+			String expectedLine = i < expected.size() ? expected.get( i ) : "nothing";
+			String actualLine = i < actual.size() ? actual.get( i ) : "nothing";
+			if ( !expectedLine.equals( actualLine ) ) {
+				differences.add( what + ": expected " + expectedLine + ", got " + actualLine );
+				return;
+			}
+		}
+	}
+
+	/*
+	Every ROM in the directory plus HIRES_ROM, by name
+	 */
+	static Map < String, ByteBuffer > loadRoms( Path directory ) throws IOException {
+		Map < String, ByteBuffer > roms = new TreeMap <>();
+		ByteBuffer hires = ByteBuffer.allocate( HIRES_ROM.length * 2 );
+		for ( int word : HIRES_ROM ) {
+			hires.putShort( (short) word );
+		}
+		hires.flip();
+		roms.put( HIRES_ROM_NAME, hires.asReadOnlyBuffer() );
+		try ( DirectoryStream < Path > files = Files.newDirectoryStream( directory ) ) {
+			for ( Path file : files ) {
+				if ( Files.isRegularFile( file ) ) {
+					roms.put( file.getFileName().toString(), ROM.loadROM( file ) );
+				}
+			}
+		}
+		return roms;
+	}
+
+	/*
+	The golden file's checkpoint lines by ROM name, empty if there is no golden file yet
+	 */
+	static Map < String, List < String > > readGolden( Path path ) throws IOException {
+		Map < String, List < String > > golden = new TreeMap <>();
+		if ( !Files.exists( path ) ) {
+			return golden;
+		}
+		try ( BufferedReader reader = Files.newBufferedReader( path, StandardCharsets.UTF_8 ) ) {
+			String header = reader.readLine();
+			if ( !GOLDEN_HEADER.equals( header ) ) {
+				throw new IOException( path + " is not a golden frames file, it starts with " + header );
+			}
+			String line;
+			while ( (line = reader.readLine()) != null ) {
+				if ( line.isEmpty() || line.startsWith( "#" ) ) {
+					continue;
+				}
+				String name = line.substring( 0, line.indexOf( ' ' ) );
+				List < String > checkpoints = golden.get( name );
+				if ( checkpoints == null ) {
+					checkpoints = new ArrayList <>();
+					golden.put( name, checkpoints );
+				}
+				checkpoints.add( line );
+			}
+		}
+		return golden;
+	}
+
+	static void writeGolden( Path path, Map < String, List < String > > results ) throws IOException {
+		try ( BufferedWriter writer = Files.newBufferedWriter( path, StandardCharsets.UTF_8 ) ) {
+			writer.write( GOLDEN_HEADER );
+			writer.newLine();
+			writer.write( "# rom, frame, cycle count, display sha1, machine sha1 every " + CHECKPOINT_INTERVAL + " frames, or rom, " + FAILED
+					+ ", cycle count, exception" );
+			writer.newLine();
+			writer.write( "# written by GoldenFrames --update, " + RUN_FRAMES + " frames per rom, seed " + RANDOM_SEED );
+			writer.newLine();
+			for ( List < String > checkpoints : results.values() ) {
+				for ( String checkpoint : checkpoints ) {
+					writer.write( checkpoint );
+					writer.newLine();
+				}
+			}
+		}
+	}
+
+	public static void main( String[] args ) throws Exception {
+		Path romDirectory = Paths.get( args[0] );
+		Path goldenPath = Paths.get( args[1] );
+		boolean update = args.length > 2 && args[2].equals( "--update" );
+
+		Map < String, ByteBuffer > roms = loadRoms( romDirectory );
+		ForkJoinPool pool = new ForkJoinPool();
+		List < String > differences = new ArrayList <>();
+		long start = System.nanoTime();
+		Map < String, List < String > > results = runAll( roms, pool, differences );
+		checkSpriteRows( differences );
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start );
+		pool.shutdown();
+
+		if ( update ) {
+			if ( differences.isEmpty() ) {
+				writeGolden( goldenPath, results );
+				System.out.println( "Golden values for " + roms.size() + " ROMs written to " + goldenPath );
+			}
+		} else {
+			Map < String, List < String > > golden = readGolden( goldenPath );
+			for ( Map.Entry < String, List < String > > result : results.entrySet() ) {
+				List < String > expected = golden.remove( result.getKey() );
+				if ( expected == null ) {
+					differences.add( result.getKey() + ": no golden values, run with --update to add them" );
+				} else {
+					compare( result.getKey(), expected, result.getValue(), differences );
+				}
+			}
+			for ( String missing : golden.keySet() ) {
+				differences.add( missing + ": has golden values but isn't in " + romDirectory );
+			}
+		}
+
+		Collections.sort( differences );
+		for ( String difference : differences ) {
+			System.out.println( difference );
+		}
+		System.out.println( roms.size() + " ROMs x " + Engine.values().length + " engines, " + RUN_FRAMES + " frames each in " + elapsedMillis + " ms, "
+				+ differences.size() + " failed" );
+		if ( !differences.isEmpty() ) {
+			System.exit( 1 );
+		}
+	}
+
+}
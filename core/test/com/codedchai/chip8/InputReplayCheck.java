@@ -0,0 +1,159 @@
+package com.codedchai.chip8;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/*
+Input replay check: every ROM in a directory runs WARM_UP_FRAMES frames, then is recorded with an InputRecorder for
+RECORD_FRAMES frames and replayed with InputReplay, which has to end up in exactly the same state.
+
+The recorded session is run the way the runner would run it rather than the way replay does, which is where replay can go
+wrong: every frame is split into one to MAX_SPLITS steps of random length, so replay, which steps from event to event, splits
+the cycles differently and idle loops get skipped over different stretches. Besides the golden frames' scripted keys a random
+key is pressed or released at a random step boundary every few frames. A full save state is taken before a random step in
+every SNAPSHOT_INTERVAL frames, and replaying up to that cycle has to give it back. A step that throws doesn't count its
+cycles, so a ROM that throws while it is being recorded ends the recording at the start of that step, and the replay has to
+stop there too, in the state the machine was in just before it.
+
+	java com.codedchai.chip8.InputReplayCheck <rom directory>
+
+The exit status is 1 if any replay didn't match.
+ */
+public class InputReplayCheck {
+
+	static final int WARM_UP_FRAMES = 120;
+	static final int RECORD_FRAMES = 1200;
+	static final int SNAPSHOT_INTERVAL = 100;
+	static final int MAX_SPLITS = 3;
+	/* One in this many frames also presses or releases a random key part way through */
+	static final int RANDOM_KEY_FRAMES = 4;
+
+	/*
+	Record and replay one ROM, returns what went wrong or null if the replay matched
+	 */
+	static String check( String name, ByteBuffer rom, Path file ) throws IOException {
+		Emulator emulator = new Emulator( rom.duplicate() );
+		emulator.setRandomSeed( GoldenFrames.RANDOM_SEED );
+		Random random = new Random( GoldenFrames.RANDOM_SEED );
+		try {
+			for ( int frame = 0; frame < WARM_UP_FRAMES; frame++ ) {
+				GoldenFrames.pressScriptedKey( emulator, frame );
+				emulator.step( emulator.getCyclesPerFrame() );
+				emulator.tickTimers();
+				emulator.publishFrame();
+			}
+		} catch ( Exception e ) {
+			/* Crashed before there was anything to record */
+			return null;
+		}
+
+		InputRecorder recorder = InputRecorder.start( emulator, file );
+		List < Long > snapshotCycles = new ArrayList <>();
+		List < byte[] > snapshots = new ArrayList <>();
+		ByteBuffer stepStart = ByteBuffer.allocate( SaveState.SIZE );
+		boolean crashed = false;
+		try {
+			for ( int frame = WARM_UP_FRAMES; frame < WARM_UP_FRAMES + RECORD_FRAMES; frame++ ) {
+				GoldenFrames.pressScriptedKey( emulator, frame );
+				int[] steps = split( emulator.getCyclesPerFrame(), random );
+				int randomKeyStep = frame % RANDOM_KEY_FRAMES == 0 ? random.nextInt( steps.length ) : -1;
+				int snapshotStep = frame % SNAPSHOT_INTERVAL == 0 ? random.nextInt( steps.length ) : -1;
+				for ( int step = 0; step < steps.length; step++ ) {
+					if ( step == randomKeyStep ) {
+						emulator.setKey( random.nextInt( 16 ), random.nextBoolean() );
+					}
+					if ( step == snapshotStep ) {
+						snapshotCycles.add( emulator.getCycleCount() );
+						snapshots.add( snapshot( emulator ) );
+					}
+					stepStart.clear();
+					emulator.saveState( stepStart );
+					emulator.step( steps[step] );
+				}
+				emulator.tickTimers();
+				emulator.publishFrame();
+			}
+		} catch ( Exception e ) {
+			crashed = true;
+		}
+		recorder.close( emulator );
+		byte[] finalState = crashed ? stepStart.array() : snapshot( emulator );
+
+		InputReplay replay = new InputReplay( file );
+		Emulator replayed = replay.createEmulator();
+		try {
+			replay.replay( replayed );
+		} catch ( Exception e ) {
+			return name + ": the replay threw " + e;
+		}
+		if ( !Arrays.equals( snapshot( replayed ), finalState ) ) {
+			return name + ": replaying all " + replay.getEventsReplayed() + " events ended at cycle " + replayed.getCycleCount() + " in a different state than "
+					+ "the recording, which ended at cycle " + emulator.getCycleCount() + (crashed ? " when it threw" : "");
+		}
+
+		for ( int i = 0; i < snapshots.size(); i++ ) {
+			try {
+				replay.replay( replayed, snapshotCycles.get( i ) );
+			} catch ( Exception e ) {
+				return name + ": replaying up to cycle " + snapshotCycles.get( i ) + " threw " + e;
+			}
+			if ( !Arrays.equals( snapshot( replayed ), snapshots.get( i ) ) ) {
+				return name + ": replaying up to cycle " + snapshotCycles.get( i ) + " gave a different state than the recording had there";
+			}
+		}
+		return null;
+	}
+
+	/*
+	cycles as one to MAX_SPLITS steps of random length, none of them empty unless cycles is
+	 */
+	private static int[] split( int cycles, Random random ) {
+		int[] steps = new int[Math.min( 1 + random.nextInt( MAX_SPLITS ), Math.max( cycles, 1 ) )];
+		int left = cycles;
+		for ( int step = 0; step < steps.length - 1; step++ ) {
+			steps[step] = 1 + random.nextInt( left - (steps.length - 1 - step) );
+			left -= steps[step];
+		}
+		steps[steps.length - 1] = left;
+		return steps;
+	}
+
+	private static byte[] snapshot( Emulator emulator ) {
+		ByteBuffer buffer = ByteBuffer.allocate( SaveState.SIZE );
+		emulator.saveState( buffer );
+		return buffer.array();
+	}
+
+	public static void main( String[] args ) throws Exception {
+		Map < String, ByteBuffer > roms = GoldenFrames.loadRoms( Paths.get( args[0] ) );
+		List < String > failures = new ArrayList <>();
+		Path file = Files.createTempFile( "chip8-input-replay", ".c8in" );
+		try {
+			for ( Map.Entry < String, ByteBuffer > rom : roms.entrySet() ) {
+				String failure = check( rom.getKey(), rom.getValue(), file );
+				if ( failure != null ) {
+					failures.add( failure );
+				}
+			}
+		} finally {
+			Files.deleteIfExists( file );
+		}
+
+		for ( String failure : failures ) {
+			System.out.println( failure );
+		}
+		System.out.println( roms.size() + " ROMs recorded for " + RECORD_FRAMES + " frames and replayed, " + failures.size() + " failed" );
+		if ( !failures.isEmpty() ) {
+			System.exit( 1 );
+		}
+	}
+
+}
@@ -0,0 +1,115 @@
+package com.codedchai.chip8;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/*
+Lockstep equivalence check: LockstepMachines has its own copy of every opcode handler, so every ROM in a directory is run on
+MACHINES lockstep machines and on MACHINES interpreted Emulators side by side, and the two have to agree.
+
+Machine m is seeded with RANDOM_SEED + m like the Emulator it is checked against, and plays the golden frames' key script
+KEY_OFFSET_FRAMES * m frames ahead, so the machines split up into different groups the way a real population does. Every
+COMPARE_INTERVAL frames and at the end each machine is copied into an Emulator and has to give exactly the same save state as
+its reference. A machine has to fault in the same frame its reference throws, after that neither is looked at again. So is a
+machine that faults on a SUPER-CHIP instruction, LockstepMachines doesn't run those on purpose.
+
+	java com.codedchai.chip8.LockstepMachinesCheck <rom directory>
+
+The exit status is 1 if any machine didn't match its Emulator.
+ */
+public class LockstepMachinesCheck {
+
+	static final int MACHINES = 16;
+	static final int RUN_FRAMES = 600;
+	static final int COMPARE_INTERVAL = 60;
+	static final int KEY_OFFSET_FRAMES = 7;
+
+	/*
+	Run one ROM both ways, adding anything that didn't match to failures
+	 */
+	static void check( String name, ByteBuffer rom, List < String > failures ) {
+		LockstepMachines machines = new LockstepMachines( MACHINES, rom.duplicate(), GoldenFrames.RANDOM_SEED );
+		Emulator[] references = new Emulator[MACHINES];
+		/* Set once a machine and its reference have stopped, crashed or running SUPER-CHIP */
+		boolean[] stopped = new boolean[MACHINES];
+		for ( int machine = 0; machine < MACHINES; machine++ ) {
+			references[machine] = new Emulator( rom.duplicate() );
+			references[machine].setRandomSeed( GoldenFrames.RANDOM_SEED + machine );
+		}
+		Emulator copy = new Emulator();
+		ByteBuffer expected = ByteBuffer.allocate( SaveState.SIZE );
+		ByteBuffer actual = ByteBuffer.allocate( SaveState.SIZE );
+
+		for ( int frame = 0; frame < RUN_FRAMES; frame++ ) {
+			for ( int machine = 0; machine < MACHINES; machine++ ) {
+				int scriptFrame = frame + machine * KEY_OFFSET_FRAMES;
+				int key = GoldenFrames.KEY_SCRIPT[(scriptFrame / GoldenFrames.KEY_PERIOD_FRAMES) % GoldenFrames.KEY_SCRIPT.length];
+				boolean pressed = scriptFrame % GoldenFrames.KEY_PERIOD_FRAMES < GoldenFrames.KEY_HOLD_FRAMES;
+				GoldenFrames.pressScriptedKey( references[machine], scriptFrame );
+				machines.setKey( machine, key, pressed );
+			}
+
+			machines.runFrames( 1 );
+			for ( int machine = 0; machine < MACHINES; machine++ ) {
+				if ( stopped[machine] ) {
+					continue;
+				}
+				String crash = null;
+				try {
+					references[machine].step( references[machine].getCyclesPerFrame() );
+					references[machine].tickTimers();
+				} catch ( Exception e ) {
+					crash = e.toString();
+				}
+
+				String fault = machines.getFault( machine );
+				if ( fault != null && fault.startsWith( "SUPER-CHIP" ) ) {
+					stopped[machine] = true;
+				} else if ( (crash == null) != (fault == null) ) {
+					failures.add( name + " machine " + machine + ", frame " + frame + ": the Emulator " + (crash == null ? "ran on" : "threw " + crash)
+							+ " but the machine " + (fault == null ? "ran on" : "faulted with " + fault) );
+					return;
+				} else if ( crash != null ) {
+					stopped[machine] = true;
+				} else if ( (frame + 1) % COMPARE_INTERVAL == 0 || frame + 1 == RUN_FRAMES ) {
+					/* Start from the reference so the fields LockstepMachines doesn't keep, like the last opcode, always agree */
+					snapshot( references[machine], expected );
+					expected.flip();
+					copy.loadState( expected );
+					machines.copyTo( machine, copy );
+					snapshot( copy, actual );
+					if ( !Arrays.equals( expected.array(), actual.array() ) ) {
+						failures.add( name + " machine " + machine + ": the machine state is different after " + (frame + 1) + " frames" );
+						return;
+					}
+				}
+			}
+		}
+	}
+
+	private static void snapshot( Emulator emulator, ByteBuffer buffer ) {
+		buffer.clear();
+		emulator.saveState( buffer );
+	}
+
+	public static void main( String[] args ) throws Exception {
+		Map < String, ByteBuffer > roms = GoldenFrames.loadRoms( Paths.get( args[0] ) );
+		List < String > failures = new ArrayList <>();
+		for ( Map.Entry < String, ByteBuffer > rom : roms.entrySet() ) {
+			check( rom.getKey(), rom.getValue(), failures );
+		}
+
+		for ( String failure : failures ) {
+			System.out.println( failure );
+		}
+		System.out.println( roms.size() + " ROMs run on " + MACHINES + " lockstep machines for " + RUN_FRAMES + " frames, " + failures.size() + " failed" );
+		if ( !failures.isEmpty() ) {
+			System.exit( 1 );
+		}
+	}
+
+}
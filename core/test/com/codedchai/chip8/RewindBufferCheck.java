@@ -0,0 +1,214 @@
+package com.codedchai.chip8;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/*
+Rewind buffer check: every ROM in a directory is recorded tick by tick into a RewindBuffer while a full SaveState of every
+tick is kept on the side, then the buffer has to give back exactly those states
+
+	step back			from the newest tick all the way to the oldest, then forward again to the newest
+	seek				to SEEK_COUNT ticks picked at random, far and near, on and off keyframes
+	eviction			with a budget far too small for the run, only the newest ticks are left, every one of them still
+						restores exactly, the history stays inside the budget and the evicted ticks can't be reached
+	truncation			recording after stepping back throws the ticks after the cursor away
+	runner				an EmulatorRunner recording RUNNER_TICKS ticks and then rewinding RUNNER_REWIND_TICKS of them publishes
+						every display it steps back to
+
+	java com.codedchai.chip8.RewindBufferCheck <rom directory>
+
+The exit status is 1 if anything didn't match.
+ */
+public class RewindBufferCheck {
+
+	static final int RECORD_TICKS = 1200;
+	static final int SEEK_COUNT = 200;
+	/* Large enough to hold every tick of every bundled ROM */
+	static final int LARGE_BUDGET = 8 * 1024 * 1024;
+	/* Fewer entries than RECORD_TICKS fit in its table, so every ROM that runs long enough has to evict */
+	static final int SMALL_BUDGET = 32 * 1024;
+	static final int TRUNCATE_TICKS = 10;
+	static final int RUNNER_TICKS = 120;
+	static final int RUNNER_REWIND_TICKS = 60;
+
+	/*
+	Run every check on one ROM, adding anything that went wrong to failures
+	 */
+	static void check( String name, ByteBuffer rom, List < String > failures ) {
+		List < byte[] > states = new ArrayList <>();
+		RewindBuffer large = new RewindBuffer( LARGE_BUDGET );
+		RewindBuffer small = new RewindBuffer( SMALL_BUDGET );
+
+		Emulator emulator = new Emulator( rom.duplicate() );
+		emulator.setRandomSeed( GoldenFrames.RANDOM_SEED );
+		for ( int tick = 0; tick < RECORD_TICKS; tick++ ) {
+			GoldenFrames.pressScriptedKey( emulator, tick );
+			try {
+				emulator.step( emulator.getCyclesPerFrame() );
+			} catch ( Exception e ) {
+				/* Crashed, check whatever history we got */
+				break;
+			}
+			emulator.tickTimers();
+			large.record( emulator );
+			small.record( emulator );
+			states.add( snapshot( emulator ) );
+		}
+		if ( states.isEmpty() ) {
+			return;
+		}
+		long newest = states.size() - 1;
+
+		/* Step back to the start and forward to the end again */
+		Emulator restored = new Emulator();
+		if ( large.getOldestTick() != 0 || large.getNewestTick() != newest ) {
+			failures.add( name + ": holds ticks " + large.getOldestTick() + " to " + large.getNewestTick() + ", expected 0 to " + newest );
+			return;
+		}
+		while ( large.stepBack( restored ) ) {
+			if ( !matches( name + " stepping back", large.getCursorTick(), restored, states, failures ) ) {
+				return;
+			}
+		}
+		if ( large.getCursorTick() != 0 ) {
+			failures.add( name + ": stepping back stopped at tick " + large.getCursorTick() + " instead of 0" );
+			return;
+		}
+		while ( large.stepForward( restored ) ) {
+			if ( !matches( name + " stepping forward", large.getCursorTick(), restored, states, failures ) ) {
+				return;
+			}
+		}
+
+		/* Seek all over the place */
+		Random random = new Random( GoldenFrames.RANDOM_SEED );
+		for ( int i = 0; i < SEEK_COUNT; i++ ) {
+			long tick = random.nextInt( states.size() );
+			large.seek( restored, tick );
+			if ( !matches( name + " seeking", tick, restored, states, failures ) ) {
+				return;
+			}
+		}
+
+		/* Only the newest ticks fit in the small buffer, and they have to be exact */
+		if ( small.getNewestTick() != newest || small.getUsedBytes() > small.getBudgetBytes() || (newest == RECORD_TICKS - 1 && small.getOldestTick() == 0) ) {
+			failures.add( name + ": the small buffer holds up to tick " + small.getNewestTick() + " in " + small.getUsedBytes() + " of "
+					+ small.getBudgetBytes() + " bytes" );
+			return;
+		}
+		for ( long tick = small.getOldestTick(); tick <= newest; tick++ ) {
+			small.seek( restored, tick );
+			if ( !matches( name + " after eviction", tick, restored, states, failures ) ) {
+				return;
+			}
+		}
+		if ( small.getOldestTick() > 0 ) {
+			small.seek( restored, small.getOldestTick() );
+			if ( small.stepBack( restored ) ) {
+				failures.add( name + ": stepped back past the oldest tick left after eviction" );
+				return;
+			}
+			try {
+				small.seek( restored, small.getOldestTick() - 1 );
+				failures.add( name + ": seeking to evicted tick " + (small.getOldestTick() - 1) + " didn't fail" );
+				return;
+			} catch ( IllegalArgumentException expected ) {
+				/* Gone, as it should be */
+			}
+		}
+
+		/* Recording after stepping back drops the ticks that came after */
+		if ( newest >= TRUNCATE_TICKS ) {
+			large.seek( restored, newest - TRUNCATE_TICKS );
+			large.record( restored );
+			if ( large.getNewestTick() != newest - TRUNCATE_TICKS + 1 || large.stepForward( restored ) ) {
+				failures.add( name + ": recording after stepping back left the newest tick at " + large.getNewestTick() );
+				return;
+			}
+			large.stepBack( restored );
+			matches( name + " after truncating", newest - TRUNCATE_TICKS, restored, states, failures );
+		}
+	}
+
+	/*
+	Record through an EmulatorRunner the way the desktop application does, then hold rewind down and check every tick stepped
+	back to reaches the renderer
+	 */
+	static void checkRunner( String name, ByteBuffer rom, List < String > failures ) {
+		Emulator emulator = new Emulator( rom.duplicate() );
+		emulator.setRandomSeed( GoldenFrames.RANDOM_SEED );
+		EmulatorRunner runner = new EmulatorRunner( emulator );
+		runner.setRewindBuffer( new RewindBuffer( LARGE_BUDGET ) );
+		List < FrameBuffer > displays = new ArrayList <>();
+		try {
+			for ( int tick = 0; tick < RUNNER_TICKS; tick++ ) {
+				GoldenFrames.pressScriptedKey( emulator, tick );
+				runner.runTick( emulator.getCyclesPerFrame() );
+				FrameBuffer display = new FrameBuffer();
+				display.copyFrom( emulator.getFrameBuffer() );
+				displays.add( display );
+			}
+		} catch ( Exception e ) {
+			/* Crashed before there was much to rewind, the other checks cover whatever it recorded */
+			return;
+		}
+
+		FrameExchange frameExchange = emulator.getFrameExchange();
+		frameExchange.acquire();
+		runner.setRewinding( true );
+		for ( int rewound = 1; rewound <= RUNNER_REWIND_TICKS; rewound++ ) {
+			try {
+				runner.runTick( emulator.getCyclesPerFrame() );
+			} catch ( Exception e ) {
+				failures.add( name + ": rewinding through the runner threw " + e );
+				return;
+			}
+			int tick = RUNNER_TICKS - 1 - rewound;
+			if ( !frameExchange.acquire() ) {
+				failures.add( name + ": rewinding to tick " + tick + " didn't publish a frame" );
+				return;
+			}
+			if ( !frameExchange.getFrontBuffer().equals( displays.get( tick ) ) ) {
+				failures.add( name + ": rewinding to tick " + tick + " published a different display than the one recorded" );
+				return;
+			}
+		}
+	}
+
+	private static boolean matches( String what, long tick, Emulator restored, List < byte[] > states, List < String > failures ) {
+		if ( !Arrays.equals( snapshot( restored ), states.get( (int) tick ) ) ) {
+			failures.add( what + ": tick " + tick + " didn't restore to the state that was recorded" );
+			return false;
+		}
+		return true;
+	}
+
+	private static byte[] snapshot( Emulator emulator ) {
+		ByteBuffer buffer = ByteBuffer.allocate( SaveState.SIZE );
+		emulator.saveState( buffer );
+		return buffer.array();
+	}
+
+	public static void main( String[] args ) throws Exception {
+		Map < String, ByteBuffer > roms = GoldenFrames.loadRoms( Paths.get( args[0] ) );
+		List < String > failures = new ArrayList <>();
+		for ( Map.Entry < String, ByteBuffer > rom : roms.entrySet() ) {
+			check( rom.getKey(), rom.getValue(), failures );
+			checkRunner( rom.getKey(), rom.getValue(), failures );
+		}
+
+		for ( String failure : failures ) {
+			System.out.println( failure );
+		}
+		System.out.println( roms.size() + " ROMs recorded for " + RECORD_TICKS + " ticks, " + failures.size() + " failed" );
+		if ( !failures.isEmpty() ) {
+			System.exit( 1 );
+		}
+	}
+
+}
@@ -0,0 +1,206 @@
+package com.codedchai.chip8;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ROM catalog round trip check: every ROM in a directory is copied into a scratch directory and catalogued, and the index the
+catalog saves is read back by a new catalog, which has to find every ROM with the same hash without reading it again. The
+index is then damaged the ways a crash or a bad disk would leave it
+
+	cut short			cut off after every one of its bytes in turn
+	corrupt lines		each line in turn with a size that isn't a number, a hash that is too short or a missing field
+	not text			a line of bytes that aren't UTF-8
+
+and each time a new catalog has to open it without throwing and still end up with the right hash for every ROM. Last a ROM is
+rewritten with the same size and modification time, which the index has to cover for, and then touched, which has to get
+it hashed again.
+
+	java com.codedchai.chip8.RomCatalogCheck <rom directory>
+
+The exit status is 1 if any catalog threw or got a hash wrong.
+ */
+public class RomCatalogCheck {
+
+	/*
+	Catalog the ROMs in a scratch directory and read the index back whole and damaged, adding anything that went wrong to
+	failures
+	 */
+	static void check( Map < String, ByteBuffer > roms, Path directory, List < String > failures ) throws IOException {
+		Path romDirectory = directory.resolve( "roms" );
+		Path index = directory.resolve( "index.txt" );
+		Files.createDirectories( romDirectory );
+		Map < Path, String > expected = new HashMap <>();
+		for ( Map.Entry < String, ByteBuffer > rom : roms.entrySet() ) {
+			Path file = romDirectory.resolve( rom.getKey() ).toAbsolutePath().normalize();
+			Files.write( file, bytes( rom.getValue() ) );
+			expected.put( file, RomCatalog.hash( rom.getValue() ) );
+		}
+
+		RomCatalog first = new RomCatalog( index );
+		first.scan( romDirectory );
+		if ( !matches( "the first scan", first, expected, failures ) ) {
+			return;
+		}
+		first.save();
+		byte[] saved = Files.readAllBytes( index );
+		if ( !matches( "reading the index back", rescan( "reading the index back", index, romDirectory, failures ), expected, failures ) ) {
+			return;
+		}
+
+		for ( int length = 0; length < saved.length; length++ ) {
+			Files.write( index, Arrays.copyOf( saved, length ) );
+			String what = "the index cut short at byte " + length;
+			if ( !matches( what, rescan( what, index, romDirectory, failures ), expected, failures ) ) {
+				return;
+			}
+		}
+
+		String[] lines = new String( saved, StandardCharsets.UTF_8 ).split( "\r?\n" );
+		for ( int line = 1; line < lines.length; line++ ) {
+			String[] fields = lines[line].split( "\t", 4 );
+			String[] corruptions = {
+					fields[0] + "\t" + fields[1] + "x\t" + fields[2] + "\t" + fields[3],
+					fields[0].substring( 1 ) + "\t" + fields[1] + "\t" + fields[2] + "\t" + fields[3],
+					fields[0] + "\t" + fields[1] + "\t\t" + fields[3],
+					fields[0] + "\t" + fields[1] + "\t" + fields[3] };
+			for ( int corruption = 0; corruption < corruptions.length; corruption++ ) {
+				String[] corrupted = lines.clone();
+				corrupted[line] = corruptions[corruption];
+				Files.write( index, join( corrupted ).getBytes( StandardCharsets.UTF_8 ) );
+				String what = "the index with line " + line + " corrupted (" + corruptions[corruption] + ")";
+				if ( !matches( what, rescan( what, index, romDirectory, failures ), expected, failures ) ) {
+					return;
+				}
+			}
+		}
+
+		byte[] notText = Arrays.copyOf( saved, saved.length + 3 );
+		notText[saved.length] = (byte) 0xC3;
+		notText[saved.length + 1] = (byte) 0x28;
+		notText[saved.length + 2] = '\n';
+		Files.write( index, notText );
+		if ( !matches( "the index ending in bytes that aren't UTF-8", rescan( "the index ending in bytes that aren't UTF-8", index, romDirectory, failures ),
+				expected, failures ) ) {
+			return;
+		}
+
+		/* The index trusts size and modification time, so new contents behind the same ones keep the old hash until touched */
+		Files.write( index, saved );
+		Path rewritten = expected.keySet().iterator().next();
+		FileTime lastModified = Files.getLastModifiedTime( rewritten );
+		byte[] contents = Files.readAllBytes( rewritten );
+		for ( int i = 0; i < contents.length; i++ ) {
+			contents[i] ^= 0xFF;
+		}
+		Files.write( rewritten, contents );
+		Files.setLastModifiedTime( rewritten, lastModified );
+		if ( !matches( "a ROM rewritten behind the index's back", rescan( "a ROM rewritten behind the index's back", index, romDirectory, failures ),
+				expected, failures ) ) {
+			return;
+		}
+		Files.setLastModifiedTime( rewritten, FileTime.fromMillis( lastModified.toMillis() + 1000 ) );
+		expected.put( rewritten, RomCatalog.hash( ByteBuffer.wrap( contents ) ) );
+		matches( "a rewritten ROM once it was touched", rescan( "a rewritten ROM once it was touched", index, romDirectory, failures ), expected, failures );
+	}
+
+	/*
+	A new catalog on the index, scanned, or null if it threw
+	 */
+	private static RomCatalog rescan( String what, Path index, Path romDirectory, List < String > failures ) {
+		try {
+			RomCatalog catalog = new RomCatalog( index );
+			catalog.scan( romDirectory );
+			return catalog;
+		} catch ( Exception e ) {
+			failures.add( what + ": the catalog threw " + e );
+			return null;
+		}
+	}
+
+	/*
+	Whether the catalog found exactly the expected ROMs with the expected hashes, adds the first mismatch to failures
+	 */
+	private static boolean matches( String what, RomCatalog catalog, Map < Path, String > expected, List < String > failures ) {
+		if ( catalog == null ) {
+			return false;
+		}
+		List < RomCatalog.Entry > entries = catalog.getEntries();
+		if ( entries.size() != expected.size() ) {
+			failures.add( what + ": found " + entries.size() + " ROMs, expected " + expected.size() );
+			return false;
+		}
+		for ( RomCatalog.Entry entry : entries ) {
+			String hash = expected.get( entry.path );
+			if ( !entry.hash.equals( hash ) ) {
+				failures.add( what + ": " + entry.getName() + " has hash " + entry.hash + ", expected " + hash );
+				return false;
+			}
+			RomCatalog.Entry byHash = catalog.findByHash( hash );
+			if ( byHash == null || !byHash.hash.equals( hash ) ) {
+				failures.add( what + ": " + entry.getName() + " can't be found by its hash" );
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static byte[] bytes( ByteBuffer buffer ) {
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.duplicate().get( bytes );
+		return bytes;
+	}
+
+	private static String join( String[] lines ) {
+		StringBuilder text = new StringBuilder();
+		for ( String line : lines ) {
+			text.append( line ).append( '\n' );
+		}
+		return text.toString();
+	}
+
+	public static void main( String[] args ) throws Exception {
+		Map < String, ByteBuffer > roms = GoldenFrames.loadRoms( Paths.get( args[0] ) );
+		List < String > failures = new ArrayList <>();
+		Path directory = Files.createTempDirectory( "chip8-rom-catalog" );
+		try {
+			check( roms, directory, failures );
+		} finally {
+			Files.walkFileTree( directory, new SimpleFileVisitor < Path >() {
+				@Override
+				public FileVisitResult visitFile( Path file, BasicFileAttributes attributes ) throws IOException {
+					Files.delete( file );
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult postVisitDirectory( Path dir, IOException e ) throws IOException {
+					Files.delete( dir );
+					return FileVisitResult.CONTINUE;
+				}
+			} );
+		}
+
+		for ( String failure : failures ) {
+			System.out.println( failure );
+		}
+		System.out.println( roms.size() + " ROMs catalogued and rescanned through whole, cut short and corrupted indexes, " + failures.size() + " failed" );
+		if ( !failures.isEmpty() ) {
+			System.exit( 1 );
+		}
+	}
+
+}
@@ -0,0 +1,126 @@
+package com.codedchai.chip8;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/*
+Save state round trip check: every ROM in a directory is run for SAVE_FRAME frames and saved, once to a file and once into a
+buffer, and each snapshot is restored into a brand new emulator. The original and both copies then run RESUME_FRAMES more
+frames with the same scripted keys as the golden frames, and have to end up with the same display and exactly the same
+machine state, down to the random number generator. A ROM that throws after the save has to throw at the same cycle in every
+copy, one that throws before it has nothing to save and is skipped.
+
+	java com.codedchai.chip8.SaveStateRoundTrip <rom directory>
+
+The exit status is 1 if any ROM didn't come back the way it was saved.
+ */
+public class SaveStateRoundTrip {
+
+	static final int SAVE_FRAME = 600;
+	static final int RESUME_FRAMES = 600;
+
+	/*
+	Save and restore one ROM, returns what went wrong or null if every copy matched
+	 */
+	static String check( String name, ByteBuffer rom, Path file ) throws IOException {
+		Emulator original = new Emulator( rom.duplicate() );
+		original.setRandomSeed( GoldenFrames.RANDOM_SEED );
+		String crash = runFrames( original, 0, SAVE_FRAME );
+		if ( crash != null ) {
+			return null;
+		}
+
+		SaveState.save( original, file );
+		Emulator fromFile = new Emulator();
+		SaveState.load( fromFile, file );
+
+		ByteBuffer buffer = ByteBuffer.allocate( SaveState.SIZE );
+		original.saveState( buffer );
+		buffer.flip();
+		Emulator fromBuffer = new Emulator();
+		fromBuffer.loadState( buffer );
+
+		String originalCrash = runFrames( original, SAVE_FRAME, RESUME_FRAMES );
+		String fileCrash = runFrames( fromFile, SAVE_FRAME, RESUME_FRAMES );
+		String bufferCrash = runFrames( fromBuffer, SAVE_FRAME, RESUME_FRAMES );
+
+		String difference = compare( original, originalCrash, fromFile, fileCrash );
+		if ( difference != null ) {
+			return name + " restored from a file: " + difference;
+		}
+		difference = compare( original, originalCrash, fromBuffer, bufferCrash );
+		if ( difference != null ) {
+			return name + " restored from a buffer: " + difference;
+		}
+		return null;
+	}
+
+	/*
+	Run frames with the scripted keys, returns the exception and cycle if the ROM threw or null if it didn't
+	 */
+	private static String runFrames( Emulator emulator, int firstFrame, int frames ) {
+		for ( int frame = firstFrame; frame < firstFrame + frames; frame++ ) {
+			GoldenFrames.pressScriptedKey( emulator, frame );
+			try {
+				emulator.step( emulator.getCyclesPerFrame() );
+			} catch ( Exception e ) {
+				return e.getClass().getName() + " at cycle " + emulator.getCycleCount();
+			}
+			emulator.tickTimers();
+			emulator.publishFrame();
+		}
+		return null;
+	}
+
+	private static String compare( Emulator expected, String expectedCrash, Emulator actual, String actualCrash ) {
+		if ( expectedCrash == null ? actualCrash != null : !expectedCrash.equals( actualCrash ) ) {
+			return "expected " + (expectedCrash == null ? "no crash" : expectedCrash) + ", got " + (actualCrash == null ? "no crash" : actualCrash);
+		}
+		if ( !expected.getFrameBuffer().equals( actual.getFrameBuffer() ) ) {
+			return "the display is different after " + RESUME_FRAMES + " frames";
+		}
+		if ( !Arrays.equals( snapshot( expected ), snapshot( actual ) ) ) {
+			return "the machine state is different after " + RESUME_FRAMES + " frames, cycle " + expected.getCycleCount() + " vs "
+					+ actual.getCycleCount();
+		}
+		return null;
+	}
+
+	private static byte[] snapshot( Emulator emulator ) {
+		ByteBuffer buffer = ByteBuffer.allocate( SaveState.SIZE );
+		emulator.saveState( buffer );
+		return buffer.array();
+	}
+
+	public static void main( String[] args ) throws Exception {
+		Map < String, ByteBuffer > roms = GoldenFrames.loadRoms( Paths.get( args[0] ) );
+		List < String > failures = new ArrayList <>();
+		Path file = Files.createTempFile( "chip8-round-trip", ".state" );
+		try {
+			for ( Map.Entry < String, ByteBuffer > rom : roms.entrySet() ) {
+				String failure = check( rom.getKey(), rom.getValue(), file );
+				if ( failure != null ) {
+					failures.add( failure );
+				}
+			}
+		} finally {
+			Files.deleteIfExists( file );
+		}
+
+		for ( String failure : failures ) {
+			System.out.println( failure );
+		}
+		System.out.println( roms.size() + " ROMs saved at frame " + SAVE_FRAME + " and resumed for " + RESUME_FRAMES + " frames, " + failures.size() + " failed" );
+		if ( !failures.isEmpty() ) {
+			System.exit( 1 );
+		}
+	}
+
+}
@@ -3,10 +3,28 @@ package com.codedchai.chip8.desktop;
 import com.badlogic.gdx.backends.lwjgl.LwjglApplication;
 import com.badlogic.gdx.backends.lwjgl.LwjglApplicationConfiguration;
 import com.codedchai.chip8.Chip8Interpreter;
+import com.codedchai.chip8.Emulator;
 
+import java.util.Arrays;
+
+/*
+Pass --render-thread to run the emulator inside render() at the display's refresh rate instead of on its own thread
+ */
 public class DesktopLauncher {
 	public static void main (String[] arg) {
 		LwjglApplicationConfiguration config = new LwjglApplicationConfiguration();
-		new LwjglApplication(new Chip8Interpreter(), config);
+		if (Arrays.asList(arg).contains("--render-thread")) {
+			/* The emulator is paced by vsync, so render exactly as often as the display refreshes */
+			int refreshRate = LwjglApplicationConfiguration.getDesktopDisplayMode().refreshRate;
+			if (refreshRate <= 0) {
+				refreshRate = Emulator.TIMER_FREQUENCY;
+			}
+			config.vSyncEnabled = true;
+			config.foregroundFPS = refreshRate;
+			config.backgroundFPS = refreshRate;
+			new LwjglApplication(new Chip8Interpreter(Chip8Interpreter.Threading.RENDER_THREAD, refreshRate), config);
+		} else {
+			new LwjglApplication(new Chip8Interpreter(), config);
+		}
 	}
 }